@@ -0,0 +1,118 @@
+/**
+ * Sisältää ohjelman pääluokan, pelilogiikan sekä pelivalikot.
+ */
+package pomppu.game;
+
+import java.util.Arrays;
+
+/**
+ * Dynaaminen resoluutio. Kerää viimeisimpien framejen piirtoajat rengaspuskuriin ja vertaa niiden
+ * persentiiliä (PERCENTILE) piirtobudjettiin. Mikäli piirtäminen ylittää budjetin, pelimaailman
+ * piirtoresoluutiota pienennetään askeleen verran; mikäli budjetista jää reilusti tilaa, resoluutiota
+ * kasvatetaan. Muutosten välissä odotetaan, kunnes puskuri on täyttynyt uusilla mittauksilla.<br><br>
+ * Pienempi resoluutio ei aina ole halvempi (esim. ohjelmistopiirrossa venytys voi maksaa enemmän kuin se säästää).
+ * Mikäli pienennyksen jälkeinen persentiili ei ole edellistä pienempi, pienennys perutaan, eikä resoluutiota
+ * enää pienennetä sen alle.
+ * @see pomppu.graphics.Canvas#setWorldScale(double)
+ * @author arkivika
+ */
+class AdaptiveResolution {
+
+	static final int SAMPLES = 60;
+	static final double PERCENTILE = 0.9;
+	static final double HEADROOM = 0.6;
+	static final double STEP = 0.125;
+	static final double MIN_SCALE = 0.5;
+
+	private long budget;
+	private long[] samples, sorted;
+	private int count, next;
+	private double scale, floor;
+	private long lastPercentile, beforeStep;
+
+	/**
+	 * Konstruktori, joka alustaa mittauspuskurin.
+	 * @param _budget Yhden framen piirtobudjetti nanosekunteina.
+	 */
+	AdaptiveResolution(long _budget) {
+		budget = _budget;
+		samples = new long[SAMPLES];
+		sorted = new long[SAMPLES];
+		count = next = 0;
+		scale = 1.0;
+		floor = MIN_SCALE;
+		beforeStep = -1;
+	}
+
+	/**
+	 * Lisää yhden framen piirtoajan mittauksiin ja päättää, muutetaanko resoluutiota. Pienennyksen jälkeen
+	 * tarkistetaan, laskiko persentiili, ja perutaan pienennys, mikäli ei.
+	 * @param renderTime Framen piirtämiseen kulunut aika nanosekunteina.
+	 * @return True, mikäli resoluutio muuttui, muuten false.
+	 */
+	boolean sample(long renderTime) {
+
+		samples[next] = renderTime;
+		next = (next+1) % SAMPLES;
+		if (count < SAMPLES)
+			count++;
+
+		if (count < SAMPLES)
+			return false;
+
+		System.arraycopy(samples, 0, sorted, 0, SAMPLES);
+		Arrays.sort(sorted);
+		lastPercentile = sorted[(int)(PERCENTILE * (SAMPLES-1))];
+
+		double newScale = scale;
+		long previous = beforeStep;
+		beforeStep = -1;
+
+		if (previous >= 0 && lastPercentile >= previous) {
+			// Edellinen pienennys ei nopeuttanut piirtämistä, joten se perutaan
+			newScale = Math.min(1.0, scale + STEP);
+			floor = newScale;
+		}
+		else if (lastPercentile > budget) {
+			newScale = Math.max(floor, scale - STEP);
+			if (newScale < scale)
+				beforeStep = lastPercentile;
+		}
+		else if (lastPercentile < budget * HEADROOM)
+			newScale = Math.min(1.0, scale + STEP);
+
+		if (newScale == scale)
+			return false;
+
+		scale = newScale;
+		count = 0;
+		return true;
+	}
+
+	/**
+	 * Palauttaa arvonaan pelimaailman tämänhetkisen piirtoresoluution suhteessa sisäiseen resoluutioon.
+	 * @return Skaalauskerroin.
+	 */
+	double getScale() {
+		return scale;
+	}
+
+	/**
+	 * Palauttaa arvonaan kuvauksen viimeisimmästä muutoksesta ja sen syystä.
+	 * @return Muutoksen kuvaus.
+	 */
+	String describe() {
+		return "Resolution " + Math.round(scale*100) + "% (p" + Math.round(PERCENTILE*100) + " " +
+			   formatMs(lastPercentile) + " ms, budget " + formatMs(budget) + " ms)";
+	}
+
+	/**
+	 * Apumetodi, joka muuntaa nanosekunnit millisekunneiksi yhden desimaalin tarkkuudella.
+	 * @param ns Aika nanosekunteina.
+	 * @return Aika millisekunteina merkkijonona.
+	 */
+	private static String formatMs(long ns) {
+		long tenths = ns / 100000;
+		return (tenths / 10) + "." + (tenths % 10);
+	}
+}
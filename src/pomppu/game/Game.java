@@ -30,6 +30,15 @@ public class Game extends GameState {
 	
 	private double time_left;
 	
+	/**
+	 * Osuus framen kestosta (FRAME_DELAY), jonka piirtäminen saa viedä dynaamisessa resoluutiotilassa.
+	 */
+	static final double RENDER_BUDGET_SHARE = 0.5;
+	
+	private AdaptiveResolution adaptive;
+	
+	private boolean decoupled;
+	
 	/**
 	 * Konstruktori, joka alustaa pelitilan. Kutsuu ensin yliluokkansa (GameState) konstruktoria. Alustaa
 	 * sydämet, kartan, pelaajan sekä ei-pelaajat. Asettaa kameran oikeaan kohtaan ja lataa taustakuvan.
@@ -38,9 +47,23 @@ public class Game extends GameState {
 	 * @param _gui Käytettävä GUI-olio.
 	 * @param _keyboard Käytettävä Keyboard-olio.
 	 * @param _mouse Käytettävä Mouse-olio.
+	 * @param _map Ladattavan kentän nimi (esim. level_1.map).
 	 * @param time_limit Aikaraja kentän läpäisemiseksi (sekuntia).
 	 */	
 	public Game(Camera _cam, GUI _gui, Keyboard _keyboard, Mouse _mouse, String _map, int time_limit) throws IOException {
+		this(_cam, _gui, _keyboard, _mouse, MapFactory.readMap("/resources/maps/" + _map), time_limit);
+	}
+
+	/**
+	 * Konstruktori, joka alustaa pelitilan valmiiksi luetusta kartasta (ks. Loading). Muuten kuten yllä.
+	 * @param _cam Käytettävä camera-olio.
+	 * @param _gui Käytettävä GUI-olio.
+	 * @param _keyboard Käytettävä Keyboard-olio.
+	 * @param _mouse Käytettävä Mouse-olio.
+	 * @param _map Luettu kartta.
+	 * @param time_limit Aikaraja kentän läpäisemiseksi (sekuntia).
+	 */
+	public Game(Camera _cam, GUI _gui, Keyboard _keyboard, Mouse _mouse, Map _map, int time_limit) throws IOException {
 
 		super(_cam, _gui, _keyboard, _mouse);
 
@@ -51,7 +74,7 @@ public class Game extends GameState {
 		for (int i=0; i<5; i++) 
 			hearts[i] = heart_on;
 		
-		map = MapFactory.readMap("/resources/maps/" + _map);
+		map = _map;
 		
 		ArrayList<Animation> playerAnimations = AnimationFactory.getAnimations("/resources/player/player.png", 36, 50, 0.3, true, false);
 
@@ -72,6 +95,26 @@ public class Game extends GameState {
 		time_left = time_limit;
 	}
 	
+	/**
+	 * Aksessori, joka asettaa dynaamisen resoluution päälle tai pois. Päällä ollessaan pelimaailman
+	 * piirtoresoluutiota lasketaan, mikäli piirtäminen ylittää sille varatun osuuden framen kestosta.
+	 * @param enabled True, mikäli dynaaminen resoluutio halutaan päälle, muuten false.
+	 */
+	public void setAdaptiveResolution(boolean enabled) {
+		adaptive = (enabled) ? new AdaptiveResolution((long)(Pomppu.FRAME_DELAY * 1000000L * RENDER_BUDGET_SHARE)) : null;
+	}
+	
+	/**
+	 * Aksessori, joka asettaa erillisen piirtävän säikeen päälle tai pois. Päällä ollessaan peliluuppi ainoastaan
+	 * simuloi ja julkaisee tilannekuvan jokaisen askeleen jälkeen, ja RenderThread piirtää näytön virkistystaajuudella
+	 * interpoloiden tilannekuvien välillä.
+	 * @param enabled True, mikäli piirtäminen halutaan erilliseen säikeeseen, muuten false.
+	 * @see pomppu.mechanics.RenderThread
+	 */
+	public void setDecoupled(boolean enabled) {
+		decoupled = enabled;
+	}
+	
 	/**
 	 * Aksessori, joka laskee pelaajan pisteet suhteessa kuluneeseen aikaan.
 	 * @return Pelaajan lopulliset pisteet.
@@ -101,6 +144,8 @@ public class Game extends GameState {
 		long last_ms, ms, d_ms;
 		last_ms = ms = Pomppu.FRAME_DELAY;
 		d_ms = 0;
+		long latency_total, latency_max, frames;
+		latency_total = latency_max = frames = 0;
 		
 		camera.addStaticObjects(map.getStaticObjects());
 
@@ -110,8 +155,9 @@ public class Game extends GameState {
 
 		camera.addDynamicObject(player.getObject());
 
-		Text score = new Text("Coins: 0 Score: 0", "Arial", 0, 24, Color.white);
-		Text time = new Text("Time left: 0", "Arial", 0, 24, Color.white);
+		BitmapFont hudFont = BitmapFont.getFont("Arial", 0, 24, Color.white);
+		BitmapText score = new BitmapText(hudFont, "Coins: 0 Score: 0");
+		BitmapText time = new BitmapText(hudFont, "Time left: 0");
 		
 		gui.addToSection(score, 0, 0);
 		gui.addToSection(time, 0, 0);
@@ -119,6 +165,24 @@ public class Game extends GameState {
 		for (int i=0; i<5; i++)
 			gui.addToSection(hearts[i], 2, 0);
 		
+		// Dynaamisen resoluution muutokset näytetään vasemmassa alakulmassa
+		final Text resolutionLog = new Text("", "Arial", 0, 16, Color.yellow);
+		if (adaptive != null) {
+			gui.addToSection(resolutionLog, 0, 2);
+			camera.getCanvas().setWorldScale(adaptive.getScale());
+		}
+		
+		// Animaatiot jatkuvat siitä, mihin ne jäivät (esim. valikosta palatessa)
+		AnimationClock.reset();
+		
+		// Erillinen piirtävä säie aloittaa ensimmäisestä tilannekuvasta
+		RenderThread renderer = null;
+		if (decoupled) {
+			renderer = new RenderThread(camera, Pomppu.FRAME_DELAY);
+			renderer.publish(camera.snapshot());
+			renderer.start();
+		}
+		
 		// Peliluuppi. Luokan pihvi! :)
 		
 		Game:
@@ -130,8 +194,34 @@ public class Game extends GameState {
 				if (d_ms > Pomppu.FRAME_DELAY)
 					d_ms = Pomppu.FRAME_DELAY;
 				
-				// Renderöidään pelitila.
-				render();
+				// Edistetään kentän animaatioita ja renderöidään pelitila, mikäli piirtävää säiettä ei ole
+				// (muuten piirtävä säie tekee molemmat)
+				if (renderer == null) {
+					AnimationClock.tick();
+					render();
+				}
+				
+				// Kirjataan, kauanko valmis frame odotti piirtojonossa piirtävää säiettä
+				long latency = camera.getCanvas().getQueueLatency();
+				latency_total += latency;
+				latency_max = Math.max(latency_max, latency);
+				frames++;
+				
+				// Sovitetaan pelimaailman resoluutio piirtobudjettiin. Piirrettävää tilaa muutetaan piirtävässä säikeessä.
+				if (adaptive != null && adaptive.sample(camera.getCanvas().getRenderTime())) {
+					final double worldScale = adaptive.getScale();
+					final String description = adaptive.describe();
+					Runnable change = new Runnable() {
+						public void run() {
+							camera.getCanvas().setWorldScale(worldScale);
+							resolutionLog.updateText(description);
+						}
+					};
+					if (renderer != null)
+						renderer.invokeLater(change);
+					else
+						change.run();
+				}
 							
 				// Huomioidaan HID-laitteilta saatu informaatio
 				if (mouse.moved(m_x, m_y)) {}
@@ -169,25 +259,28 @@ public class Game extends GameState {
 					for ( NonPlayerObject obj : nonplayers ) 
 						obj.update(player.getObject(), nonplayerObjects);
 	
-				// Piirretään sydämet
-				gui.clearSection(2,0);
-				for (int i=0; i<5; i++)
-					if (i<player.getHealth())
-						gui.addToSection(heart_on, 2, 0);
-					else
-						gui.addToSection(heart_off, 2, 0);
+				// Piirretään sydämet (yhtenäisesti, jottei piirtävä säie näe puolikasta osiota)
+				synchronized (gui) {
+					gui.clearSection(2,0);
+					for (int i=0; i<5; i++)
+						if (i<player.getHealth())
+							gui.addToSection(heart_on, 2, 0);
+						else
+							gui.addToSection(heart_off, 2, 0);
+				}
 				
 				// Päivitetään kamera pelaajan kohdalle
 				camera.follow(player.getObject());
 				
+				// Julkaistaan simulaatioaskeleen tulos piirtävälle säikeelle
+				if (renderer != null)
+					renderer.publish(camera.snapshot());
+				
 				// Lasketaan, kauanko pitää nukkua fps:n tasaamiseksi
 				d_ms = System.currentTimeMillis()-last_ms;
 				ms = 60-d_ms;
 	
 				try { Thread.sleep(Pomppu.FRAME_DELAY-d_ms); } catch (Exception e) {}
-				
-				if (ms > 60)
-					System.out.println(ms);
 	
 				if (spaceReleasedTimer > 0)
 					spaceReleasedTimer--;
@@ -196,13 +289,21 @@ public class Game extends GameState {
 				
 				// Päivitetään GUI-informaatio
 				time_left -= (double)(d_ms+Pomppu.FRAME_DELAY)/1000;
-				score.updateText("Coins: " + player.getScore() + " Score: " + calculateScores());
-				time.updateText("Time left: " + (int)time_left);
+				score.clear().append("Coins: ").append(player.getScore()).append(" Score: ").append(calculateScores()).commit();
+				time.clear().append("Time left: ").append((int)time_left).commit();
 			}
 	
+		if (renderer != null)
+			renderer.stopRendering();
+		
 		gui.clearSection(0, 0);
 		gui.clearSection(2, 0);
+		gui.clearSection(0, 2);
 		camera.clearObjects();
+		camera.getCanvas().setWorldScale(1.0);
+
+		if (frames > 0)
+			System.out.println("Draw queue latency: avg " + (latency_total/frames) + " ns, max " + latency_max + " ns per frame (" + frames + " frames)");
 		
 		return retValue;
 	}
@@ -6,6 +6,8 @@ package pomppu.game;
 import pomppu.mechanics.*;
 import pomppu.io.*;
 
+import java.awt.Rectangle;
+
 /**
  * Abstrakti luokka ohjelmassa käytetyille tiloille, joka sisältää tarvittavat kytkökset eri 
  * tilojen tarvitsemiin olioihin.
@@ -13,6 +15,11 @@ import pomppu.io.*;
  */
 public abstract class GameState {
 	
+	/**
+	 * Aika (ms), jonka jälkeen valikkotila piirtää itsensä kokonaan uudelleen, vaikka syötettä ei tulisi.
+	 */
+	static final long IDLE_REFRESH_DELAY = 1000;
+	
 	protected GUI gui;
 	protected Camera camera;
 	protected Keyboard keyboard;
@@ -36,4 +43,39 @@ public abstract class GameState {
 	 */
 	public abstract int doState();
 	
+	/**
+	 * Apumetodi, joka odottaa, kunnes näppäimistöltä tai hiireltä tulee uusi tapahtuma tai IDLE_REFRESH_DELAY umpeutuu.
+	 * @param seen Viimeksi nähty tapahtumien määrä.
+	 * @return Tapahtumien määrä odottamisen jälkeen. Sama kuin seen, mikäli aikaraja umpeutui.
+	 */
+	protected long awaitInput(long seen) {
+		return mouse.getSignal().await(seen, IDLE_REFRESH_DELAY);
+	}
+	
+	/**
+	 * Apumetodi, joka tyhjentää GUI:n ja renderöi valikkotilan menu:n kokonaan.
+	 * @param menu Piirrettävä menu.
+	 */
+	protected void renderMenu(Menu menu) {
+		
+		camera.clearGUI();
+		menu.render();
+		camera.renderGUI();
+	}
+	
+	/**
+	 * Apumetodi, joka piirtää valikkotilan menu:n uudelleen vain, mikäli se on muuttunut. Mikäli vain aktiivinen
+	 * elementti on vaihtunut, ruudulta päivitetään ainoastaan vanhan ja uuden elementin alue.
+	 * @param menu Piirrettävä menu.
+	 */
+	protected void updateMenu(Menu menu) {
+		
+		if (!menu.isChanged())
+			return;
+		
+		Rectangle area = menu.getChangedBounds();
+		menu.render();
+		camera.renderGUI(area);
+	}
+	
 }
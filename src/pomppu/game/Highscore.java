@@ -172,6 +172,7 @@ public class Highscore extends GameState {
 
 		int m_x = 0;
 		int m_y = 0;
+		long seen = mouse.getSignal().getCount();
 
 		for (int i = 0; i < MAX_SCORES; i++) {
 
@@ -187,16 +188,14 @@ public class Highscore extends GameState {
 		menu.addEntry(new Text("Back", "Tahoma", Font.BOLD, 32, Color.RED),
 				new Text("Back", "Tahoma", Font.BOLD, 32, Color.WHITE));
 
-		while (true) {
+		renderMenu(menu);
 
-			render();
+		while (true) {
 
-			try {
-				Thread.sleep(Pomppu.FRAME_DELAY);
-			} 
-			catch (Exception e) { 
-				System.out.println("Thread.sleep failed!"); 
-			}
+			// Odotetaan syötettä; mikäli sitä ei tule, piirretään ruutu varmuuden vuoksi kokonaan uudelleen
+			long events = awaitInput(seen);
+			boolean idle = (events == seen);
+			seen = events;
 
 			if (mouse.moved(m_x, m_y)) {
 
@@ -218,6 +217,11 @@ public class Highscore extends GameState {
 						.size() : MAX_SCORES))
 					break;
 			}
+
+			if (idle)
+				renderMenu(menu);
+			else
+				updateMenu(menu);
 		}
 
 		camera.clearGUI();
@@ -227,15 +231,6 @@ public class Highscore extends GameState {
 		return Pomppu.MAIN_MENU;
 	}
 
-	/**
-	 * Apumetodi, joka päivittää GUI:n sekä renderöi menu:n.
-	 */
-	private void render() {
-
-		camera.clearGUI();
-		menu.render();
-		camera.renderGUI();
-	}
 
 	/**
 	 * Testipäämetodi, jonka avulla varmistutaan siitä, että luokka toimii kuten sen pitäisi. Tulostaa jokaisen testin sekä sen tuloksen.
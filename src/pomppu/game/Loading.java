@@ -0,0 +1,110 @@
+/**
+ * Sisältää ohjelman pääluokan, pelilogiikan sekä pelivalikot.
+ */
+package pomppu.game;
+
+import pomppu.mechanics.*;
+import pomppu.graphics.*;
+import pomppu.io.*;
+
+import java.awt.Color;
+import java.io.IOException;
+
+/**
+ * Latausruutu. Aloittaa kentän resurssien esilatauksen taustasäikeissä ja lukee kartan erillisessä säikeessä.
+ * Latausruutu piirretään uudelleen joka framella, ja se näyttää esilatauksen edistymisen (valmistuneet / kaikki
+ * resurssit), kunnes kartta on luettu. Kartan lukeminen hakee resurssit välimuistien kautta ja odottaa ainoastaan
+ * niitä resursseja, joita se tarvitsee ja jotka ovat vielä latautumassa.
+ * @see pomppu.game.GameState
+ * @see pomppu.graphics.AssetLoader
+ * @author arkivika
+ */
+public class Loading extends GameState {
+
+	private String mapName;
+	private BitmapText status;
+	private Map map;
+	private IOException error;
+
+	/**
+	 * Konstruktori latausruudulle, joka tarvitsee pelitiloille ominaiset parametrit (Camera-olio,
+	 * GUI-olio, Keyboard-olio sekä Mouse-olio).
+	 * @param _cam Käytettävä Camera-olio.
+	 * @param _gui Käytettävä GUI-olio.
+	 * @param _keyboard Käytettävä Keyboard-olio.
+	 * @param _mouse Käytettävä Mouse-olio.
+	 * @param _map Ladattavan kentän nimi (esim. level_1.map).
+	 */
+	public Loading(Camera _cam, GUI _gui, Keyboard _keyboard, Mouse _mouse, String _map) {
+
+		super(_cam, _gui, _keyboard, _mouse);
+
+		mapName = _map;
+		status = new BitmapText(BitmapFont.getFont("Tahoma", 0, 24, Color.white));
+	}
+
+	/**
+	 * Aksessori, joka aloittaa latausruudun. Käynnistää esilatauksen sekä kartan lukemisen ja piirtää latausruutua
+	 * edistymisineen, kunnes kartta on luettu (ks. getMap).
+	 * @return Pomppu.NEW_GAME.
+	 */
+	public int doState() {
+
+		AssetLoader.Progress progress = null;
+
+		try {
+			progress = AssetLoader.preload(MapFactory.getManifest("/resources/maps/" + mapName));
+		}
+		catch (IOException e) {
+			System.out.println("Warning! Couldn't preload assets: " + e);
+		}
+
+		map = null;
+		error = null;
+
+		Thread reader = new Thread("Loading " + mapName) {
+			public void run() {
+				try {
+					map = MapFactory.readMap("/resources/maps/" + mapName);
+				}
+				catch (IOException e) {
+					error = e;
+				}
+			}
+		};
+		reader.start();
+
+		camera.clearGUI();
+		gui.addToSection(status, 1, 1);
+
+		while (reader.isAlive()) {
+
+			status.clear().append("Loading..");
+			if (progress != null)
+				status.append(" ").append(progress.getLoaded()).append("/").append(progress.getTotal());
+			status.commit();
+			camera.renderGUI();
+
+			try { reader.join(Pomppu.FRAME_DELAY); } catch (InterruptedException e) {}
+		}
+
+		gui.clearSection(1, 1);
+
+		return Pomppu.NEW_GAME;
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan viimeksi luetun kartan.
+	 * @return Luettu kartta.
+	 * @throws IOException Heitetään, mikäli kartan lukeminen epäonnistui.
+	 */
+	public Map getMap() throws IOException {
+
+		if (error != null)
+			throw error;
+		if (map == null)
+			throw new IOException("Error! Couldn't read map: " + mapName);
+
+		return map;
+	}
+}
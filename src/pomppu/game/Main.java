@@ -63,12 +63,16 @@ public class Main extends GameState {
 
 		int m_x = 0;
 		int m_y = 0;
+		long seen = mouse.getSignal().getCount();
 		
-		while(true) {
+		renderMenu(menu);
 
-			render();
+		while(true) {
 
-			try { Thread.sleep(Pomppu.FRAME_DELAY); } catch (Exception e) {}
+			// Odotetaan syötettä; mikäli sitä ei tule, piirretään ruutu varmuuden vuoksi kokonaan uudelleen
+			long events = awaitInput(seen);
+			boolean idle = (events == seen);
+			seen = events;
 			
 			if (mouse.moved(m_x, m_y)) {
 				
@@ -100,6 +104,11 @@ public class Main extends GameState {
 				if (menu.select() == 4)
 					break;
 			}
+
+			if (idle)
+				renderMenu(menu);
+			else
+				updateMenu(menu);
 		}
 
 		return Pomppu.SENTINEL;
@@ -112,14 +121,4 @@ public class Main extends GameState {
 	public void setValidResume(boolean _valid) {
 		validResume = _valid;
 	}
-
-	/**
-	 * Apumetodi, joka päivittää GUI:n ja renderöi menu:n.
-	 */
-	private void render() {
-
-		camera.clearGUI();
-		menu.render();
-		camera.renderGUI();
-	}
 }
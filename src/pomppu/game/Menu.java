@@ -5,6 +5,7 @@ package pomppu.game;
 
 import pomppu.mechanics.*;
 
+import java.awt.Rectangle;
 import java.util.ArrayList;
 
 import pomppu.graphics.Drawable;
@@ -22,6 +23,8 @@ public class Menu {
 	private ArrayList<Drawable> title;
 	
 	private int position;
+	private int renderedPosition;
+	private boolean changed;
 	
 	/**
 	 * Konstruktori, joka alustaa valikkotiloissa käytetyt arvot (position) sekä oliot (passiveEntries, activeEntries).
@@ -31,6 +34,8 @@ public class Menu {
 		gui = _gui;
 	
 		position = 0;
+		renderedPosition = -1;
+		changed = true;
 		passiveEntries = new ArrayList<Drawable>();
 		activeEntries = new ArrayList<Drawable>();
 		title = new ArrayList<Drawable>();
@@ -42,6 +47,7 @@ public class Menu {
 	public void clear() {
 		gui.clearSection(1, 1);
 		gui.clearSection(1, 0);
+		changed = true;
 	}
 
 	/**
@@ -50,6 +56,7 @@ public class Menu {
 	public void clearEntries() {
 		activeEntries.clear();
 		passiveEntries.clear();
+		changed = true;
 	}
 
 	/**
@@ -58,6 +65,7 @@ public class Menu {
 	 */
 	public void addTitle(Drawable _title) {
 		title.add(_title);
+		changed = true;
 	}
 
 	/**
@@ -69,6 +77,42 @@ public class Menu {
 	public void addEntry(Drawable active, Drawable passive) {
 		activeEntries.add(active);
 		passiveEntries.add(passive);
+		changed = true;
+	}
+
+	/**
+	 * Aksessori, joka merkitsee koko menun piirrettäväksi uudelleen (esim. kun jonkin elementin teksti on muuttunut).
+	 */
+	public void invalidate() {
+		changed = true;
+	}
+
+	/**
+	 * Aksessori, joka kertoo, onko menu muuttunut viimeisimmän render-kutsun jälkeen.
+	 * @return True, mikäli menu tulee piirtää uudelleen, muuten false.
+	 */
+	public boolean isChanged() {
+		return changed || position != renderedPosition;
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan alueen, joka kattaa viimeksi piirretyn ja tämänhetkisen aktiivisen
+	 * elementin. Kutsutaan ennen render-kutsua.
+	 * @return Muuttunut alue, tai null, mikäli koko menu on piirrettävä uudelleen.
+	 */
+	public Rectangle getChangedBounds() {
+
+		if (changed || renderedPosition == -1)
+			return null;
+
+		Rectangle previous = gui.getElementBounds(1, 1, renderedPosition);
+		Rectangle current = gui.getElementBounds(1, 1, position);
+		if (previous == null || current == null)
+			return null;
+
+		// Aktiivinen ja passiivinen versio voivat olla eri kokoisia, joten alueeseen otetaan molemmat
+		current.add(previous);
+		return current;
 	}
 
 	/**
@@ -88,6 +132,9 @@ public class Menu {
 			else
 				gui.addToSection(passiveEntries.get(i), 1, 1);
 		}
+		
+		renderedPosition = position;
+		changed = false;
 	}
 	
 	/**
@@ -5,9 +5,13 @@ package pomppu.game;
 
 import java.io.IOException;
 
+import pomppu.graphics.BufferedScreen;
+import pomppu.graphics.Canvas;
 import pomppu.graphics.Screen;
+import pomppu.graphics.SurfaceManager;
 import pomppu.mechanics.*;
 import pomppu.io.*;
+import java.awt.Component;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 
@@ -23,16 +27,43 @@ public class Pomppu {
 	
 	/**
 	 * Main-metodi, joka toteuttaa eri pelitilat yksi kerrallaan.
-	 * @param args Komentoriviparametrit. Ei käytössä.
+	 * @param args Komentoriviparametrit. "-active" valitsee aktiivisen renderöinnin (BufferedScreen),
+	 * "-buffers=N" sen puskurien määrän (2-3). Oletuksena käytetään Screen-luokkaa (JPanel). "-adaptive"
+	 * laskee pelimaailman piirtoresoluutiota, mikäli piirtäminen ei mahdu framen aikabudjettiin. "-decoupled"
+	 * piirtää pelitilan erillisessä säikeessä interpoloiden simulaatioaskelten välillä. "-vram=MB" asettaa
+	 * kuvien vram-budjetin (megatavuina).
 	 */
 	public static void main(String[] args) {
 
+		boolean active = false;
+		boolean adaptive = false;
+		boolean decoupled = false;
+		int buffers = BufferedScreen.MAX_BUFFERS;
+
+		for (String arg : args) {
+			if (arg.equals("-active"))
+				active = true;
+			else if (arg.equals("-adaptive"))
+				adaptive = true;
+			else if (arg.equals("-decoupled"))
+				decoupled = true;
+			else if (arg.startsWith("-vram="))
+				try { SurfaceManager.setBudget(Long.parseLong(arg.substring(6)) * 1024 * 1024); } catch (NumberFormatException e) {}
+			else if (arg.startsWith("-buffers="))
+				try { buffers = Integer.parseInt(arg.substring(9)); } catch (NumberFormatException e) {}
+		}
+
 		JFrame frame = new JFrame();
 		
 		// Pelin eri tilat		
 		GameState[] state = new GameState[4];
 
-		Screen screen = new Screen(640, 480, false, "Pomppu 1.0", frame);
+		Canvas screen;
+		if (active)
+			screen = new BufferedScreen(640, 480, false, "Pomppu 1.0", frame, buffers);
+		else
+			screen = new Screen(640, 480, false, "Pomppu 1.0", frame);
+
 		GUI gui = new GUI(screen);
 		
 		// Asetetaan paddin-arvot GUI:lle
@@ -42,19 +73,24 @@ public class Pomppu {
 		Camera camera = new Camera(screen, gui);
 
 		// Luodaan näppäimistö (Keyboard-olio)
+		Component input = screen.getInputComponent();
 		Keyboard keyboard = new Keyboard();
-		frame.addKeyListener(keyboard);
+		input.addKeyListener(keyboard);
 		
 		// Luodaan hiiri (Mouse-olio)
 		Mouse mouse = new Mouse(screen.getInsets());
-		frame.addMouseListener(mouse.getMouseKeys());
-		frame.addMouseMotionListener(mouse.getMouseMotion());
+		input.addMouseListener(mouse.getMouseKeys());
+		input.addMouseMotionListener(mouse.getMouseMotion());
+
+		// Näppäimistö ja hiiri ilmoittavat tapahtumistaan samalle ilmoittimelle
+		mouse.setSignal(keyboard.getSignal());
 
 		// Alustetaan pelitilat
 		Main main = new Main(camera, gui, keyboard, mouse);
 		Game game = null;
 		Highscore highscore = new Highscore(camera, gui, keyboard, mouse, "highscores.scr");
 		Settings settings = new Settings(camera, gui, keyboard, mouse, screen);
+		Loading loading = new Loading(camera, gui, keyboard, mouse, "level_1.map");
 
 		// Asetetaan pelitilat taulukkoon
 		state[MAIN_MENU] = main; 
@@ -85,8 +121,11 @@ public class Pomppu {
 					break;
 					
 				case NEW_GAME: 
+					loading.doState();
 					try {					
-						state[NEW_GAME] = game = new Game(camera, gui, keyboard, mouse, "level_1.map", 500);
+						state[NEW_GAME] = game = new Game(camera, gui, keyboard, mouse, loading.getMap(), 500);
+						game.setAdaptiveResolution(adaptive);
+						game.setDecoupled(decoupled);
 						curState = NEW_GAME;
 					}
 					catch (IOException e) {
@@ -106,7 +145,10 @@ public class Pomppu {
 				case RESUME_GAME: 
 					if (state[NEW_GAME] == null)
 						try {					
-							state[NEW_GAME] = game = new Game(camera, gui, keyboard, mouse, "level_1.map", 500);
+							loading.doState();
+							state[NEW_GAME] = game = new Game(camera, gui, keyboard, mouse, loading.getMap(), 500);
+							game.setAdaptiveResolution(adaptive);
+							game.setDecoupled(decoupled);
 							curState = NEW_GAME;
 						}
 						catch (IOException e) {
@@ -0,0 +1,143 @@
+/**
+ * Sisältää ohjelman pääluokan, pelilogiikan sekä pelivalikot.
+ */
+package pomppu.game;
+
+import pomppu.mechanics.*;
+import pomppu.graphics.*;
+import pomppu.io.*;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Piirtämisen mittaus ilman ikkunaa. Lataa kentän, liikuttaa kameraa kiinteällä nopeudella kentän poikki ja
+ * piirtää jokaisen framen OffscreenScreen-olioon. Animaatioita edistetään kiinteällä aika-askeleella, joten
+ * piirretyt framet ovat samat jokaisella ajokerralla. Toimii myös ilman näyttöä (java.awt.headless=true).
+ * @see pomppu.graphics.OffscreenScreen
+ * @author arkivika
+ */
+public class RenderBenchmark {
+
+	/**
+	 * Kameran liike (pikseliä) framea kohden.
+	 */
+	static final int CAMERA_STEP = 4;
+	
+	static final int WIDTH = 640;
+	static final int HEIGHT = 480;
+
+	/**
+	 * Main-metodi, joka suorittaa mittauksen ja tulostaa tilastot.
+	 * @param args Komentoriviparametrit. "-map=NIMI" valitsee kentän (oletuksena level_1.map), "-frames=N"
+	 * piirrettävien framejen määrän, "-scale=S" pelimaailman piirtoresoluution ja "-dump=HAKEMISTO" tallentaa
+	 * jokaisen framen PNG-kuvaksi annettuun hakemistoon.
+	 */
+	public static void main(String[] args) {
+
+		if (System.getProperty("java.awt.headless") == null)
+			System.setProperty("java.awt.headless", "true");
+
+		String mapName = "level_1.map";
+		int count = 500;
+		double scale = 1.0;
+		File dump = null;
+
+		for (String arg : args) {
+			try {
+				if (arg.startsWith("-map="))
+					mapName = arg.substring(5);
+				else if (arg.startsWith("-frames="))
+					count = Integer.parseInt(arg.substring(8));
+				else if (arg.startsWith("-scale="))
+					scale = Double.parseDouble(arg.substring(7));
+				else if (arg.startsWith("-dump="))
+					dump = new File(arg.substring(6));
+			}
+			catch (NumberFormatException e) {
+				System.out.println("Ignoring invalid argument: " + arg);
+			}
+		}
+
+		Map map;
+		long loadTime = System.nanoTime();
+		try {
+			AssetLoader.preload(MapFactory.getManifest("/resources/maps/" + mapName));
+			map = MapFactory.readMap("/resources/maps/" + mapName);
+		}
+		catch (IOException e) {
+			System.out.println("Error! Couldn't read map: " + e);
+			return;
+		}
+		loadTime = System.nanoTime() - loadTime;
+
+		if (dump != null && !dump.isDirectory() && !dump.mkdirs()) {
+			System.out.println("Error! Couldn't create directory: " + dump);
+			return;
+		}
+
+		OffscreenScreen screen = new OffscreenScreen(WIDTH, HEIGHT);
+		screen.setWorldScale(scale);
+
+		GUI gui = new GUI(screen);
+		gui.setPadding(25);
+
+		Camera camera = new Camera(screen, gui);
+		camera.setBackground("/resources/backgrounds/Background.jpg");
+		camera.addStaticObjects(map.getStaticObjects());
+		for (DynamicObject obj : map.getDynamicObjects())
+			camera.addDynamicObject(obj);
+
+		BitmapText counter = new BitmapText(BitmapFont.getFont("Arial", 0, 24, Color.white), "Frame: 0");
+		gui.addToSection(counter, 0, 0);
+
+		int mapWidth = map.getStaticObjects().get(0).size() * 32;
+		int span = Math.max(1, mapWidth - screen.getWidth());
+
+		for (int i=0; i<count; i++) {
+
+			// Kamera kulkee kentän poikki ja takaisin
+			int pos = (i * CAMERA_STEP) % (2 * span);
+			if (pos > span)
+				pos = 2 * span - pos;
+
+			camera.setPos(pos + screen.getWidth()/2, map.getPlayerStartY());
+			counter.clear().append("Frame: ").append(i).commit();
+
+			AnimationClock.advance(AnimationClock.FRAME_TIME);
+
+			camera.render();
+			camera.renderGUI();
+
+			if (dump != null) {
+				try {
+					screen.saveFrame(new File(dump, String.format("frame_%04d.png", i)));
+				}
+				catch (IOException e) {
+					System.out.println("Error! Couldn't save frame " + i + ": " + e);
+					dump = null;
+				}
+			}
+		}
+
+		System.out.println(mapName + " loaded in " + (loadTime/1000000) + " ms");
+		System.out.println(SpriteCache.getStatistics());
+		System.out.println(mapName + " at " + screen.getWidth() + "x" + screen.getHeight() + ", world scale " + scale + ": " + screen.getStatistics());
+		System.out.println(camera.getStatistics());
+		
+		System.out.println(ImageFactory.getStatistics());
+		System.out.println(AnimationFactory.getStatistics());
+		System.out.print(AnimationFactory.getReport());
+
+		// Vapautetaan kaikki kuvat, jolloin vapauttamattomat pinnat ovat vuotoja
+		camera.dispose();
+		ImageFactory.clear();
+		AnimationFactory.clear();
+		BitmapFont.clear();
+		
+		System.out.println(SurfaceManager.getStatistics());
+		for (String label : SurfaceManager.getUndisposed())
+			System.out.println("Undisposed surface: " + label);
+	}
+}
@@ -18,37 +18,43 @@ import java.awt.*;
 public class Settings extends GameState {
 	
 	private Menu menu;
-	private Screen screen;
+	private pomppu.graphics.Canvas screen;
 	private Dimension dimensions[] = {new Dimension(640,480), 
 									  new Dimension(800,600),
 									  new Dimension(1024,600),
 									  new Dimension(1024,768)};
 
+	private String scalingNames[] = {"Nearest", "Bilinear", "Bicubic"};
+
 	private Text resolution_on, resolution_off;
+	private Text scaling_on, scaling_off;
 	private int size;
 	
 	/**
 	 * Konstruktori Settings-pelitilalle, joka tarvitsee pelitiloille ominaiset parametrit (Camera-olio,
-	 * GUI-olio, Keyboard-olio sekä Mouse-olio). Tarvitsee lisäksi Screen-olion resoluution muuttamiseksi. Kutsuu
+	 * GUI-olio, Keyboard-olio sekä Mouse-olio). Tarvitsee lisäksi Canvas-rajapinnan toteuttavan olion resoluution muuttamiseksi. Kutsuu
 	 * yliluokkansa (GameState) konstruktoria ja alustaa valikoissa käytettävän menu-olion. Lisää lopuksi tilalle 
 	 * ominaiset osat GUI:hin.
 	 * @param _cam Käytettävä Camera-olio.
 	 * @param _gui Käytettävä GUI-olio.
 	 * @param _keyboard Käytettävä Keyboard-olio.
 	 * @param _mouse Käytettävä Mouse-olio.
-	 * @param _screen Käytettävä Screen-olio.
+	 * @param _screen Käytettävä Canvas-rajapinnan toteuttava olio (Screen).
 	 */
-	public Settings(Camera _cam, GUI _gui, Keyboard _keyboard, Mouse _mouse, Screen _screen) {
+	public Settings(Camera _cam, GUI _gui, Keyboard _keyboard, Mouse _mouse, pomppu.graphics.Canvas _screen) {
 
 		super(_cam, _gui, _keyboard, _mouse);
 		menu = new Menu(_gui);
 		
 		resolution_on = new Text("Resolution: 640x480", "Arial", 0, 32, Color.red);
 		resolution_off = new Text("Resolution: 640x480", "Arial", 0, 32, Color.white);
+		scaling_on = new Text("Scaling: " + scalingNames[_screen.getInterpolation()], "Arial", 0, 32, Color.red);
+		scaling_off = new Text("Scaling: " + scalingNames[_screen.getInterpolation()], "Arial", 0, 32, Color.white);
 		
 		menu.addTitle(new Text("Pomppu 1.0", "Tahoma", Font.BOLD, 32, Color.GREEN));
 		menu.addTitle(new Text("Settings", "Tahoma", Font.BOLD, 28, Color.YELLOW));
 		menu.addEntry(resolution_on, resolution_off);
+		menu.addEntry(scaling_on, scaling_off);
 		menu.addEntry(new Text("Back", "Tahoma", Font.BOLD, 32, Color.RED), 
 				  	  new Text("Back", "Tahoma", Font.BOLD, 32, Color.WHITE));
 
@@ -64,12 +70,16 @@ public class Settings extends GameState {
 
 		int m_x = 0;
 		int m_y = 0;
+		long seen = mouse.getSignal().getCount();
+		
+		renderMenu(menu);
 		
 		while(true) {
-				
-			render();
 			
-			try { Thread.sleep(66); } catch (Exception e) {}
+			// Odotetaan syötettä; mikäli sitä ei tule, piirretään ruutu varmuuden vuoksi kokonaan uudelleen
+			long events = awaitInput(seen);
+			boolean idle = (events == seen);
+			seen = events;
 			
 			if (mouse.moved(m_x, m_y)) {
 				
@@ -87,15 +97,31 @@ public class Settings extends GameState {
 						if (size > 3)
 							size = 0;
 						
+					// Peli piirretään aina sisäisessä resoluutiossa, joten vain ikkunan koko ja hiiren skaalaus muuttuvat
 					screen.setSize(dimensions[size]);
+					mouse.setScale(screen.getScaleX(), screen.getScaleY());
+
+					resolution_on.updateText("Resolution: " + dimensions[size].width + "x" + dimensions[size].height);
+					resolution_off.updateText("Resolution: " + dimensions[size].width + "x" + dimensions[size].height);
+					menu.invalidate();
+				}
+
+				if (menu.select() == 1) {
+					screen.setInterpolation((screen.getInterpolation() + 1) % scalingNames.length);
 
-					resolution_on.updateText("Resolution: " + screen.getWidth() + "x" + screen.getHeight());
-					resolution_off.updateText("Resolution: " + screen.getWidth() + "x" + screen.getHeight());
+					scaling_on.updateText("Scaling: " + scalingNames[screen.getInterpolation()]);
+					scaling_off.updateText("Scaling: " + scalingNames[screen.getInterpolation()]);
+					menu.invalidate();
 				}
 
-				if (menu.select() == 1)
+				if (menu.select() == 2)
 					break;
 			}
+
+			if (idle)
+				renderMenu(menu);
+			else
+				updateMenu(menu);
 		}
 	
 		camera.clearGUI();
@@ -103,14 +129,4 @@ public class Settings extends GameState {
 		
 		return Pomppu.MAIN_MENU;
 	}
-	
-	/**
-	 * Apumetodi, joka päivittää GUI:n sekä renderöi menu:n.
-	 */	
-	private void render() {
-	
-		camera.clearGUI();
-		menu.render();
-		camera.renderGUI();	
-	}
-}
\ No newline at end of file
+}
@@ -12,8 +12,11 @@ import java.awt.Graphics2D;
 * Animaatio-luokka. Animaatio on käytännössä sarja Drawable-rajapinnan toteuttavia olioita.
 * Myös Animaatio-luokka itse toteuttaa Drawable-rajapinnan ja se pystytään näinollen
 * piirtämään Canvas-rajapinnan toteuttavan olion (Screen) avulla. Animaatiot tulee luoda
-* AnimationFactory-kirjastoluokan metodien avulla duplikaattien välttämiseksi.
+* AnimationFactory-kirjastoluokan metodien avulla duplikaattien välttämiseksi.<br><br>
+* Piirtäminen ei edistä animaatiota. Kelloon rekisteröityjä (AnimationClock.register) automaattisesti
+* animoituvia animaatioita edistää AnimationClock, muita advanceFrame- ja rewindFrame-kutsut.
 * @author arkivika
+* @see pomppu.graphics.AnimationClock
 * @see pomppu.graphics.AnimationFactory
 * @see pomppu.graphics.Drawable
 * @see pomppu.graphics.Canvas
@@ -54,20 +57,31 @@ public class Animation implements Drawable {
 	 * @param y Animaation y-koordinaatti.
 	 */
 	public void draw(Graphics2D g, int x, int y) {
-
 		frames.get((int)currentFrame).draw(g, x, y);
-	
-		if (autoAnimation) {
-			if (!mirrored) {
-				currentFrame += speed;
-				if (currentFrame >= frames.size())
-					currentFrame = 0; }
-			else {
-				currentFrame -= speed;
-				if (currentFrame < 0)
-					currentFrame = frames.size()-1;
-			}
-		}
+	}
+
+	/**
+	 * Edistää automaattisesti animoituvaa animaatiota annetun framemäärän verran (peilattu animaatio etenee
+	 * taaksepäin). Kutsutaan AnimationClock-kellosta.
+	 * @param elapsed Kulunut aika frameina (FRAME_TIME).
+	 */
+	void tick(double elapsed) {
+
+		int size = frames.size();
+		if (!autoAnimation || size == 0)
+			return;
+
+		double frame = currentFrame + ((mirrored) ? -speed : speed) * elapsed;
+
+		frame %= size;
+		if (frame < 0)
+			frame += size;
+
+		// Hyvin pieni negatiivinen arvo pyöristyy summassa täsmälleen size:ksi
+		if (frame >= size)
+			frame = 0;
+
+		currentFrame = frame;
 	}
 
 	/**
@@ -119,6 +133,15 @@ public class Animation implements Drawable {
 		return (int)currentFrame;
 	}
 
+	/**
+	 * Aksessori, joka palauttaa arvonaan animaation tämänhetkisen framen kuvan, tai null, mikäli animaatiossa ei
+	 * ole frameja. Kuva ei muutu animaation edetessä, joten se voidaan välittää toiselle säikeelle (ks. Snapshot).
+	 * @return Tämänhetkisen framen Image-olio.
+	 */
+	public Image getCurrentFrame() {
+		return (frames == null || frames.size() == 0) ? null : frames.get((int)currentFrame);
+	}
+
 	/**
 	 * Aksessori, jonka avulla voidaan asettaa animaatiolle haluttu frame.
 	 * @param frame Halutun frame indeksi.
@@ -162,6 +185,38 @@ public class Animation implements Drawable {
 			frame.update();
 	}	
 
+	/**
+	 * Aksessori, joka vapauttaa animaation kehysten resurssit (Image.dispose). Kehykset ovat yhteisiä animaation
+	 * kloonien kanssa, joten kutsutaan vain, kun mitään niistä ei enää käytetä (ks. AnimationFactory.clear).
+	 */
+	public void dispose() {
+		for (Image frame : frames)
+			frame.dispose();
+	}
+
+	/**
+	 * Aksessori, joka luovuttaa animaation kehysten vapauttamisen roskienkeruulle (Image.release). Kehyksiä voidaan
+	 * yhä piirtää, kunnes mikään animaatio ei enää viittaa niihin.
+	 */
+	public void release() {
+		for (Image frame : frames)
+			frame.release();
+	}
+
+	/**
+	 * Aksessori, joka vaihtaa animaation toistamaan toisen animaation kehyksiä sen nopeudella ja suunnalla.
+	 * Kehyksiä ei kopioida, vaan ne ovat yhteisiä annetun animaation kanssa, ja animaatio alkaa alusta.
+	 * Automaattisen animoinnin tila säilyy. Näin yksi animaatio toimii objektin omana toistokohtana
+	 * ("kursori") jaetuille animaatioille.
+	 * @param template Animaatio, jonka kehyksiä halutaan toistaa.
+	 */
+	public void select(Animation template) {
+		frames = template.frames;
+		speed = template.speed;
+		mirrored = template.mirrored;
+		currentFrame = 0;
+	}
+
 	/**
 	 * Aksessori, joka palauttaa arvonaan kloonin kyseisestä animaatiosta.
 	 * @return Kloonattu Animation-olio. 
@@ -0,0 +1,99 @@
+/**
+ * Sisältää luokat, jotka ovat vastuussa ikkunan luomisesta sekä kuvien
+ * lataamisesta ja niiden käsittelemisestä. Tämä paketti on käytännössä
+ * wrapperi ohjelmassa käytettävälle grafiikkakirjastolle (Swing).
+ */
+package pomppu.graphics;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Animaatioiden yhteinen kello. Jaetut animaatiot (esim. kentän vesiputoukset) rekisteröidään kelloon, ja
+ * tick-kutsu edistää kaikkia automaattisesti animoituvia rekisteröityjä animaatioita kerran kuluneen ajan mukaan.
+ * Objektien omia toistokohtia ja välimuistin animaatioita ei rekisteröidä, joten tick-kutsun työmäärä riippuu
+ * erillisten jaettujen animaatioiden eikä niiden käyttökertojen määrästä. Näin animaation nopeus ei riipu
+ * siitä, kuinka monta kertaa se piirretään, ja samaa animaatiota voidaan käyttää useassa kohdassa (esim. kaikki
+ * kentän vesiputoukset) samassa vaiheessa ilman kopioita. Animaatiot pidetään heikoin viittauksin, joten
+ * kello ei estä käyttämättömien animaatioiden roskienkeruuta.
+ * @see pomppu.graphics.Animation
+ * @author arkivika
+ */
+public final class AnimationClock {
+
+	/**
+	 * Aika (ns), jota animaation nopeus vastaa: animaatio etenee speed-arvon verran jokaista FRAME_TIME:a kohden.
+	 */
+	public static final long FRAME_TIME = 20000000L;
+
+	/**
+	 * Pisin yksittäisellä tick-kutsulla huomioitava aika (ns), jottei animaatio hyppää esim. valikosta palatessa.
+	 */
+	static final long MAX_ELAPSED = 250000000L;
+
+	private static Map<Animation, Boolean> animations = new WeakHashMap<Animation, Boolean>();
+	private static long lastTick = -1;
+
+	/**
+	 * Estää olioiden luomisen, kaikki metodit ovat staattisia.
+	 */
+	private AnimationClock() {
+	}
+
+	/**
+	 * Aksessori, joka rekisteröi jaetun animaation kelloon, jolloin tick-kutsu edistää sitä. Kutsutaan kerran
+	 * jokaiselle animaatiolle, jota useat objektit piirtävät samassa vaiheessa.
+	 * @param animation Rekisteröitävä animaatio.
+	 */
+	public static synchronized void register(Animation animation) {
+		animations.put(animation, Boolean.TRUE);
+	}
+
+	/**
+	 * Edistää kaikkia automaattisesti animoituvia animaatioita edellisestä tick-kutsusta kuluneen ajan verran.
+	 * Ensimmäinen kutsu (tai kutsu reset-kutsun jälkeen) vain asettaa lähtöajan.
+	 */
+	public static synchronized void tick() {
+
+		long now = System.nanoTime();
+
+		if (lastTick < 0) {
+			lastTick = now;
+			return;
+		}
+
+		long elapsed = Math.min(now - lastTick, MAX_ELAPSED);
+		lastTick = now;
+
+		advance(elapsed);
+	}
+
+	/**
+	 * Edistää kaikkia automaattisesti animoituvia animaatioita annetun ajan verran kellosta riippumatta. Käytetään
+	 * esimerkiksi mittauksissa, joissa framet halutaan piirtää toistettavasti kiinteällä aika-askeleella.
+	 * @param elapsed Kulunut aika (ns).
+	 */
+	public static synchronized void advance(long elapsed) {
+
+		double frames = (double)elapsed / FRAME_TIME;
+
+		for (Animation animation : animations.keySet())
+			animation.tick(frames);
+	}
+
+	/**
+	 * Nollaa kellon lähtöajan, jolloin seuraava tick-kutsu ei edistä animaatioita. Kutsutaan esimerkiksi,
+	 * kun peli jatkuu tauon jälkeen.
+	 */
+	public static synchronized void reset() {
+		lastTick = -1;
+	}
+
+	/**
+	 * Palauttaa arvonaan kelloon rekisteröityjen animaatioiden määrän.
+	 * @return Animaatioiden määrä.
+	 */
+	public static synchronized int size() {
+		return animations.size();
+	}
+}
@@ -7,23 +7,44 @@ package pomppu.graphics;
 
 
 import java.io.IOException;
-import java.net.URL;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.awt.geom.AffineTransform;
+import java.util.concurrent.Callable;
 import java.awt.image.*;
-import javax.imageio.ImageIO;
 
 /**
  * Kirjastoluokka, jonka avulla luodaan animaatio-oliot.
- * Kaksoiskappaleiden välttämiseksi käytetään HashMap-oliota, joka pitää kirjaa ladatuista animaatioista. 
+ * Kaksoiskappaleiden välttämiseksi käytetään välimuistia (AssetCache), joka pitää kirjaa ladatuista animaatioista.
+ * Välimuistin koko rajataan budjettiin kehysten mittojen perusteella, ja pisimpään käyttämättä olleet animaatiotaulut
+ * vapautetaan budjetin ylittyessä.
  * Tarkistaa virheet sisäisesti ja palauttaa arvonaan "dummy"-animaation, mikäli animaation lataaminen epäonnistuu. 
  * @author arkivika
  * @see pomppu.graphics.Animation
  */
 public final class AnimationFactory {
 
-	private static HashMap<String, ArrayList<Animation>> animMap = new HashMap<String, ArrayList<Animation>>();
+	/**
+	 * Animaatiovälimuistin budjetti (tavuina), mikäli sitä ei aseteta erikseen.
+	 */
+	public static final long DEFAULT_BUDGET = 32L * 1024 * 1024;
+
+	private static AssetCache<ArrayList<Animation>> animMap = new AssetCache<ArrayList<Animation>>(DEFAULT_BUDGET) {
+		long sizeOf(ArrayList<Animation> animList) {
+			long size = 0;
+			for (Animation anim : animList)
+				for (Image frame : anim.getFrames())
+					if (!frame.isView())
+						size += 4L * frame.getWidth() * frame.getHeight();
+			return size;
+		}
+		void evicted(ArrayList<Animation> animList) {
+			for (Animation anim : animList)
+				anim.release();
+		}
+		void dispose(ArrayList<Animation> animList) {
+			for (Animation anim : animList)
+				anim.dispose();
+		}
+	};
 	
 	/**
 	 * Sisäinen apumetodi, joka luo animaation animaatiotaulun sisältävästä BufferedImage-oliosta.
@@ -38,27 +59,70 @@ public final class AnimationFactory {
 	 */
 	private static Animation createAnimation(BufferedImage buffer, int width, int height, int row, double speed, boolean mirror, boolean _mirrored) {
 
+		Animation animation = createAnimation(sliceRow(buffer, width, height, row), speed, _mirrored);
+		return (mirror) ? createMirror(animation, speed, _mirrored) : animation;
+	}
+
+	/**
+	 * Sisäinen apumetodi, joka luo animaation valmiiksi pilkotuista kehyksistä.
+	 * @param frames Animaation kehykset.
+	 * @param speed Nopeus, jolla luotua animaatiota toistetaan.
+	 * @param _mirrored True, mikäli animaatio toistetaan päinvastaisessa järjestyksessä. Muuten false.
+	 * @return Animaatio-olio.
+	 */
+	private static Animation createAnimation(BufferedImage[] frames, double speed, boolean _mirrored) {
+
 		ArrayList<Image> drawImages = new ArrayList<Image>();
 
-		if (buffer == null)
-			return new Animation(drawImages, speed, _mirrored);
-		
-		AffineTransform at = AffineTransform.getScaleInstance(-1, 1);
-		at.translate(-width, 0);		
-		AffineTransformOp op = new AffineTransformOp(at, AffineTransformOp.TYPE_NEAREST_NEIGHBOR);
+		for (BufferedImage frame : frames)
+			drawImages.add(new Image(frame, true));
 
-		int numCol = buffer.getWidth() / width;
+		return new Animation(drawImages, speed, _mirrored);
+	}
 
-		for (int i=0; i<numCol; i++) {
-			BufferedImage subImage = buffer.getSubimage(i*width, row*height, width, height);
-			drawImages.add(new Image((mirror) ? op.filter(subImage, null) : subImage));
-		}
+	/**
+	 * Sisäinen apumetodi, joka luo animaatiosta peilikuvan. Peilikuvan kehykset ovat näkymiä alkuperäisiin
+	 * kehyksiin (Image.mirrored), joten ne eivät vie lisää muistia ja peilataan vasta piirrettäessä.
+	 * @param animation Peilattava animaatio.
+	 * @param speed Nopeus, jolla luotua animaatiota toistetaan.
+	 * @param _mirrored True, mikäli animaatio toistetaan päinvastaisessa järjestyksessä. Muuten false.
+	 * @return Peilattu animaatio.
+	 */
+	private static Animation createMirror(Animation animation, double speed, boolean _mirrored) {
+
+		ArrayList<Image> drawImages = new ArrayList<Image>();
+
+		for (Image frame : animation.getFrames())
+			drawImages.add(frame.mirrored());
 
 		return new Animation(drawImages, speed, _mirrored);
 	}
+
+	/**
+	 * Sisäinen apumetodi, joka pilkkoo animaatiotaulun yhden rivin kehyksiksi.
+	 * @param buffer BufferedImage-olio, joka sisältää animaatiotaulun, tai null.
+	 * @param width Yksittäisen animaatiokehyksen leveys.
+	 * @param height Yksittäisen animaatiokehyksen korkeus.
+	 * @param row Animaatiotaulun rivi-indeksi.
+	 * @return Rivin kehykset. Tyhjä taulukko, mikäli buffer on null tai rivi ei mahdu animaatiotauluun.
+	 */
+	private static BufferedImage[] sliceRow(BufferedImage buffer, int width, int height, int row) {
+
+		if (buffer == null || (row+1)*height > buffer.getHeight())
+			return new BufferedImage[0];
+
+		BufferedImage[] frames = new BufferedImage[buffer.getWidth() / width];
+
+		for (int i=0; i<frames.length; i++)
+			frames[i] = buffer.getSubimage(i*width, row*height, width, height);
+
+		return frames;
+	}
 	
 	/**
 	 * Sisäinen apumetodi, joka luo ArrayList-listan Animaatio-olioista. Animaatiot ladataan animaatiotaulusta, joka sijaitsee annetun tiedostopolun päässä.
+	 * Pilkotut kehykset luetaan levyvälimuistista (SpriteCache), mikäli ne ovat ajan tasalla. Peilikuvat ovat
+	 * näkymiä alkuperäisiin kehyksiin, joten niitä ei tallenneta erikseen.
 	 * Tarkistaa virheet sisäisesti ja palauttaa arvonaan tyhjän ArrayList-olion, mikäli animaatiotaulun sisältävää tiedostoa ei löydetä tai sitä ei voida avata.
 	 * @param filepath Tiedostopolku kuvatiedostolle, joka sisältää animaatiotaulun.
 	 * @param width Yksittäisen animaatiokehyksen leveys.
@@ -68,27 +132,29 @@ public final class AnimationFactory {
 	 * @return ArrayList-olion, joka sisältää luodut Animation-oliot. Mikäli lataus epäonnistuu, palautetaan tyhjä ArrayList-olio.
 	 * @see pomppu.graphics.Animation
 	 */
-	private static ArrayList<Animation> createAnimations(String filepath, int width, int height, double speed, boolean mirror, boolean _mirrored) {
+	private static ArrayList<Animation> createAnimations(String filepath, final int width, final int height, double speed, boolean mirror, boolean _mirrored) {
 		
 		ArrayList<Animation> returnList = new ArrayList<Animation>();
 
 		try	 {
 
-			if (filepath == null)
-				throw new IOException("Error! File not found: " + filepath); 
+			BufferedImage[][] rows = SpriteCache.load(filepath, width + "x" + height, new SpriteCache.Decoder() {
+				public BufferedImage[][] decode(BufferedImage buffer) {
 
-			URL url = returnList.getClass().getResource(filepath);
-			if(url == null)
-				throw new IOException("Error! File not found: " + filepath);
+					BufferedImage[][] frames = new BufferedImage[buffer.getHeight() / height][];
 
-			BufferedImage buffer = ImageIO.read(url);
-			
-			int numRow = buffer.getHeight() / height;
-			
-			for (int i=0; i<numRow; i++) {
-				returnList.add(createAnimation(buffer, width, height, i, speed, false, _mirrored));
+					for (int i=0; i<frames.length; i++)
+						frames[i] = sliceRow(buffer, width, height, i);
+
+					return frames;
+				}
+			});
+
+			for (BufferedImage[] frames : rows) {
+				Animation animation = createAnimation(frames, speed, _mirrored);
+				returnList.add(animation);
 				if (mirror)
-					returnList.add(createAnimation(buffer, width, height, i, speed, true, _mirrored));
+					returnList.add(createMirror(animation, speed, _mirrored));
 			}
 		}
 		catch (IOException e) {
@@ -100,8 +166,11 @@ public final class AnimationFactory {
 
 	/**
 	 * Julkinen metodi, joka palauttaa Animation-olioita sisältävän ArrayList-olion. Animaatiot ladataan tiedostosta, johon filepath-parametri viittaa.
-	 * Mikäli animaatio on jo valmiiksi ladattu, se palautetaan suoraan sisäisestä HashMap:istä.
-	 * Mikäli animaatioita ei löydy HashMap:istä, eikä sitä saada ladattua tiedostosta, palautetaan tyhjä ArrayList-olio.
+	 * Välimuisti yksilöi animaatiotaulun tiedostopolun sekä pilkkomisen (kehyksen koko, peilikuvat) perusteella, joten
+	 * samaa tiedostoa voidaan pilkkoa usealla tavalla. Mikäli animaatiotaulu on jo valmiiksi ladattu, palautetaan uudet
+	 * animaatiot, jotka jakavat välimuistin kehykset ja toistavat niitä annetulla nopeudella. Samaa animaatiotaulua
+	 * samanaikaisesti pyytävät säikeet odottavat yhtä latausta.
+	 * Mikäli animaatioita ei löydy välimuistista, eikä sitä saada ladattua tiedostosta, palautetaan tyhjä ArrayList-olio.
 	 * @param filepath Tiedostopolku kuvatiedostolle, joka sisältää animaatiotaulun.
 	 * @param width Yksittäisen animaatiokehyksen leveys.
 	 * @param height Yksittäisen animaatiokehyksen korkeus.
@@ -110,19 +179,95 @@ public final class AnimationFactory {
 	 * @return An ArrayList of Animations. If unsuccessful it returns a dummy ArrayList of Animations of the size 0.
 	 * @see pomppu.graphics.Animation
 	 */
-	public static ArrayList<Animation> getAnimations(String filepath, int width, int height, double speed, boolean mirror, boolean _mirrored) {
-	
-		if(animMap.containsKey(filepath))
-			return cloneAnimations(animMap.get(filepath));
-	  
-		ArrayList<Animation> animations = createAnimations(filepath, width, height, speed, mirror, _mirrored);
-		
-		if (animations != null && animations.size() != 0)
-			animMap.put(filepath, animations);
-			
+	public static ArrayList<Animation> getAnimations(final String filepath, final int width, final int height, final double speed, final boolean mirror, final boolean _mirrored) {
+
+		if (filepath == null)
+			return createAnimations(filepath, width, height, speed, mirror, _mirrored);
+
+		ArrayList<Animation> templates;
+		try {
+			templates = animMap.get(filepath + "|" + width + "x" + height + ((mirror) ? " mirror" : ""), new Callable<ArrayList<Animation>>() {
+				public ArrayList<Animation> call() throws IOException {
+
+					ArrayList<Animation> animations = createAnimations(filepath, width, height, speed, mirror, _mirrored);
+
+					// Epäonnistunutta latausta ei jätetä välimuistiin
+					if (animations.size() == 0)
+						throw new IOException("Error! No animations in: " + filepath);
+
+					return animations;
+				}
+			});
+		}
+		catch (IOException e) {
+			return new ArrayList<Animation>();
+		}
+
+		ArrayList<Animation> animations = new ArrayList<Animation>(templates.size());
+		for (Animation template : templates)
+			animations.add(new Animation(template.getFrames(), speed, _mirrored));
+
 		return animations;
 	}
 	
+	/**
+	 * Tyhjentää ladattujen animaatioiden välimuistin ja vapauttaa niiden kehysten resurssit (Image.dispose).
+	 * Aiemmin palautettuja animaatioita ei tämän jälkeen tule käyttää.
+	 */
+	public static void clear() {
+		animMap.clear();
+	}
+
+	/**
+	 * Aksessori, joka asettaa animaatiovälimuistin budjetin. Mikäli välimuistissa on jo enemmän animaatiotauluja,
+	 * pisimpään käyttämättä olleet vapautetaan.
+	 * @param bytes Budjetti tavuina (> 0).
+	 */
+	public static void setBudget(long bytes) {
+		animMap.setBudget(bytes);
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan välimuistista löytyneiden animaatiopyyntöjen määrän.
+	 * @return Osumien määrä.
+	 */
+	public static long getHits() {
+		return animMap.getHits();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan tiedostosta ladattujen animaatiopyyntöjen määrän.
+	 * @return Ohitusten määrä.
+	 */
+	public static long getMisses() {
+		return animMap.getMisses();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan budjetin vuoksi vapautettujen animaatiotaulujen määrän.
+	 * @return Poistojen määrä.
+	 */
+	public static long getEvictions() {
+		return animMap.getEvictions();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan välimuistin animaatiotaulujen kuvadatan koot. Yhteisiä kehyksiä
+	 * käyttävät peilikuvat eivät kasvata kokoa.
+	 * @return Koot riveittäin ("tiedostopolku|pilkkominen: koko KB").
+	 */
+	public static String getReport() {
+		return animMap.getReport();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan yhteenvedon animaatiovälimuistin käytöstä.
+	 * @return Yhteenveto merkkijonona.
+	 */
+	public static String getStatistics() {
+		return "Animations: " + animMap.getStatistics();
+	}
+
 	/**
 	 * Päivittää transparency-arvot kaikille AnimationFactoryn luomille animaatioille.
 	 */
@@ -304,6 +449,67 @@ public final class AnimationFactory {
 				failedTest("HashMap size invalid (" + animMap.size() + ") (HashMap method)");
 			System.out.println("..OK!");
 			 
+			System.out.println("Testing the mirrored frames...");
+			// Peilikuva on näkymä, joka piirretään peilattuna
+			Image original = testAnim.get(0).getFrames().get(0);
+			Image mirrored = testAnim.get(1).getFrames().get(0);
+			if(!mirrored.isView() || original.isView())
+				failedTest("Mirrored frame is not a view of the original (Mirroring)");
+			System.out.print("..");
+
+			BufferedImage plain = new BufferedImage(32, 50, BufferedImage.TYPE_INT_ARGB);
+			BufferedImage flipped = new BufferedImage(32, 50, BufferedImage.TYPE_INT_ARGB);
+			java.awt.Graphics2D g = plain.createGraphics();
+			original.draw(g, 0, 0);
+			g.dispose();
+			g = flipped.createGraphics();
+			mirrored.draw(g, 0, 0);
+			g.dispose();
+
+			for(int y = 0; y < 50; y++)
+				for(int x = 0; x < 32; x++)
+					if(plain.getRGB(x, y) != flipped.getRGB(31-x, y))
+						failedTest("Mirrored frame not drawn flipped at " + x + "," + y + " (Mirroring)");
+			System.out.println("..OK!");
+
+			System.out.println("Testing the slicing parameters of the cache key...");
+			// Sama tiedosto eri kehyskoolla
+			ArrayList<Animation> otherAnim = getAnimations("/resources/player/player.png", 36, 50, 0.3, false, false);
+			if(otherAnim.size() != 2 || otherAnim.get(0).getWidth() != 36 || otherAnim.get(0).getFrames().size() != 5)
+				failedTest("Cached slicing returned for different parameters (Cache key)");
+			System.out.print("..");
+
+			if(animMap.size() != 2)
+				failedTest("HashMap size invalid (" + animMap.size() + ") (Cache key)");
+			System.out.print("..");
+
+			// Kloonit jakavat kehykset
+			if(cloneAnim.get(0).getFrames() != testAnim.get(0).getFrames())
+				failedTest("Cloned animations don't share their frames (Cache key)");
+			System.out.println("..OK!");
+
+			System.out.println("Testing the animation clock...");
+			// Välimuistin animaatioita ja klooneja ei rekisteröidä kelloon
+			int registered = AnimationClock.size();
+			getAnimations("/resources/player/player.png", 36, 50, 0.3, false, false).get(0).clone();
+			if(AnimationClock.size() != registered)
+				failedTest("Cached animations or clones were registered to the clock (Clock)");
+			System.out.print("..");
+
+			Animation shared = otherAnim.get(0);
+			AnimationClock.register(shared);
+			AnimationClock.advance(4 * AnimationClock.FRAME_TIME);
+			if(AnimationClock.size() != registered+1 || shared.getFrame() != 1)
+				failedTest("A registered animation was not advanced by the clock (Clock)");
+			System.out.print("..");
+
+			// Peilattu animaatio ei saa kiertyä kehysten ulkopuolelle
+			Animation backwards = createAnimation(new BufferedImage(64, 32, BufferedImage.TYPE_INT_ARGB), 32, 32, 0, 1e-18, false, true);
+			backwards.tick(1.0);
+			if(backwards.getFrame() < 0 || backwards.getFrame() >= backwards.getFrames().size())
+				failedTest("Mirrored animation wrapped outside its frames (Clock)");
+			System.out.println("..OK!");
+
 			System.out.println("Testing BufferedImage method...");
 			// Animaation luominen BufferedImage-oliosta
 			Animation test = createAnimation(new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB), 64, 64, 0, 0.33, false, false);
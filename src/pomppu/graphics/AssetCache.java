@@ -0,0 +1,310 @@
+/**
+ * Sisältää luokat, jotka ovat vastuussa ikkunan luomisesta sekä kuvien
+ * lataamisesta ja niiden käsittelemisestä. Tämä paketti on käytännössä
+ * wrapperi ohjelmassa käytettävälle grafiikkakirjastolle (Swing).
+ */
+package pomppu.graphics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Ladattujen resurssien (kuvat, animaatiot) välimuisti, jonka koko rajataan tavubudjettiin. Kun budjetti ylittyy,
+ * pisimpään käyttämättä olleet resurssit poistetaan välimuistista (evicted). Poistettuja resursseja saatetaan yhä
+ * käyttää, joten niitä ei vapauteta, vaan niiden vapauttaminen jätetään roskienkeruulle. Samaa avainta
+ * samanaikaisesti pyytävät säikeet odottavat yhtä latausta ("single-flight"), joten resurssi ladataan vain kerran.
+ * Epäonnistunutta latausta ei jätetä välimuistiin. Välimuisti kirjaa osumat, ohitukset sekä poistot.<br><br>
+ * Aliluokka määrittää resurssin koon (sizeOf), budjetin vuoksi poistetun resurssin luovuttamisen (evicted) sekä
+ * välimuistin tyhjentämisen yhteydessä tapahtuvan vapauttamisen (dispose).
+ * @param <V> Resurssin tyyppi.
+ * @see pomppu.graphics.ImageFactory
+ * @see pomppu.graphics.AnimationFactory
+ * @author arkivika
+ */
+abstract class AssetCache<V> {
+
+	private LinkedHashMap<String, FutureTask<V>> entries;
+	private LinkedHashMap<String, Long> sizes;
+	private long budget, bytes;
+	private long hits, misses, evictions;
+
+	/**
+	 * Konstruktori, joka luo tyhjän välimuistin.
+	 * @param _budget Välimuistin budjetti tavuina.
+	 */
+	AssetCache(long _budget) {
+		entries = new LinkedHashMap<String, FutureTask<V>>(16, 0.75f, true);
+		sizes = new LinkedHashMap<String, Long>();
+		budget = _budget;
+		bytes = 0;
+	}
+
+	/**
+	 * Palauttaa arvonaan resurssin koon tavuina.
+	 * @param value Resurssi.
+	 * @return Koko tavuina.
+	 */
+	abstract long sizeOf(V value);
+
+	/**
+	 * Luovuttaa budjetin vuoksi poistetun resurssin. Resurssia saatetaan yhä käyttää, joten sitä ei saa vapauttaa.
+	 * @param value Poistettu resurssi.
+	 */
+	abstract void evicted(V value);
+
+	/**
+	 * Vapauttaa tyhjennetyn välimuistin resurssin (ks. clear).
+	 * @param value Vapautettava resurssi.
+	 */
+	abstract void dispose(V value);
+
+	/**
+	 * Palauttaa arvonaan avainta vastaavan resurssin. Mikäli resurssia ei ole välimuistissa, se ladataan annetulla
+	 * lataajalla kutsuvassa säikeessä; muut samaa avainta pyytävät säikeet odottavat saman latauksen valmistumista.
+	 * @param key Resurssin avain (esim. tiedostopolku).
+	 * @param loader Resurssin lataaja.
+	 * @return Resurssi.
+	 * @throws IOException Heitetään, mikäli lataus epäonnistuu.
+	 */
+	V get(String key, Callable<V> loader) throws IOException {
+
+		FutureTask<V> task;
+		boolean load = false;
+
+		synchronized (this) {
+
+			task = entries.get(key);
+
+			if (task != null)
+				hits++;
+			else {
+				misses++;
+				task = new FutureTask<V>(loader);
+				entries.put(key, task);
+				load = true;
+			}
+		}
+
+		if (load)
+			task.run();
+
+		V value;
+		try {
+			value = task.get();
+		}
+		catch (ExecutionException e) {
+			remove(key, task);
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException)cause;
+			throw new IOException("Error! Couldn't load " + key + ": " + cause);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Error! Interrupted while loading " + key);
+		}
+
+		if (load)
+			loaded(key, task, value);
+
+		return value;
+	}
+
+	/**
+	 * Palauttaa arvonaan välimuistissa olevat (ladatut) resurssit.
+	 * @return Resurssit listana.
+	 */
+	synchronized ArrayList<V> values() {
+
+		ArrayList<V> values = new ArrayList<V>();
+		for (String key : sizes.keySet()) {
+			try {
+				values.add(entries.get(key).get());
+			}
+			catch (Exception e) {
+			}
+		}
+
+		return values;
+	}
+
+	/**
+	 * Tyhjentää välimuistin ja vapauttaa sen resurssit.
+	 */
+	void clear() {
+
+		ArrayList<V> values = values();
+
+		synchronized (this) {
+			entries.clear();
+			sizes.clear();
+			bytes = 0;
+		}
+
+		for (V value : values)
+			dispose(value);
+	}
+
+	/**
+	 * Asettaa välimuistin budjetin. Mikäli välimuistissa on jo enemmän resursseja, ylimääräiset poistetaan.
+	 * @param _budget Budjetti tavuina (> 0).
+	 */
+	void setBudget(long _budget) {
+
+		if (_budget <= 0)
+			return;
+
+		ArrayList<V> removed;
+		synchronized (this) {
+			budget = _budget;
+			removed = trim(null);
+		}
+
+		for (V value : removed)
+			evicted(value);
+	}
+
+	/**
+	 * Palauttaa arvonaan välimuistissa olevien resurssien määrän (myös keskeneräiset lataukset).
+	 * @return Resurssien määrä.
+	 */
+	synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Palauttaa arvonaan true, mikäli välimuisti on tyhjä.
+	 * @return True, mikäli välimuisti on tyhjä, muuten false.
+	 */
+	synchronized boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	/**
+	 * Palauttaa arvonaan yhteenvedon välimuistin käytöstä.
+	 * @return Yhteenveto merkkijonona.
+	 */
+	synchronized String getStatistics() {
+		return entries.size() + " entries, " + (bytes/1024) + "/" + (budget/1024) + " KB, " +
+			hits + " hits, " + misses + " misses, " + evictions + " evictions";
+	}
+
+	/**
+	 * Palauttaa arvonaan välimuistin ladattujen resurssien koot avaimittain, pisimpään käyttämättä ollut ensin.
+	 * @return Koot riveittäin ("avain: koko KB").
+	 */
+	synchronized String getReport() {
+
+		StringBuilder sb = new StringBuilder();
+		for (String key : entries.keySet()) {
+			Long size = sizes.get(key);
+			if (size != null)
+				sb.append(key).append(": ").append(size.longValue()/1024).append(" KB\n");
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Palauttaa arvonaan välimuistin osumien määrän.
+	 * @return Osumien määrä.
+	 */
+	synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Palauttaa arvonaan välimuistin ohitusten (lataukset) määrän.
+	 * @return Ohitusten määrä.
+	 */
+	synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Palauttaa arvonaan budjetin vuoksi poistettujen resurssien määrän.
+	 * @return Poistojen määrä.
+	 */
+	synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Apumetodi, joka kirjaa valmistuneen latauksen koon ja poistaa tarvittaessa vanhimmat resurssit budjetin
+	 * vuoksi. Juuri ladattua resurssia ei poisteta.
+	 * @param key Resurssin avain.
+	 * @param task Latauksen FutureTask-olio.
+	 * @param value Ladattu resurssi.
+	 */
+	private void loaded(String key, FutureTask<V> task, V value) {
+
+		ArrayList<V> removed;
+
+		synchronized (this) {
+
+			// Välimuisti on voitu tyhjentää latauksen aikana
+			if (entries.get(key) != task)
+				return;
+
+			long size = sizeOf(value);
+			sizes.put(key, Long.valueOf(size));
+			bytes += size;
+
+			removed = trim(key);
+		}
+
+		for (V value_ : removed)
+			evicted(value_);
+	}
+
+	/**
+	 * Apumetodi, joka poistaa pisimpään käyttämättä olleita ladattuja resursseja, kunnes välimuisti mahtuu
+	 * budjettiin. Kutsutaan synkronoituna.
+	 * @param keep Avain, jota ei poisteta, tai null.
+	 * @return Poistetut resurssit, jotka vapautetaan synkronoinnin ulkopuolella.
+	 */
+	private ArrayList<V> trim(String keep) {
+
+		ArrayList<V> removed = new ArrayList<V>();
+		Iterator<Map.Entry<String, FutureTask<V>>> it = entries.entrySet().iterator();
+
+		while (bytes > budget && it.hasNext()) {
+
+			Map.Entry<String, FutureTask<V>> entry = it.next();
+			Long size = sizes.get(entry.getKey());
+
+			// Keskeneräisiä latauksia ei poisteta
+			if (size == null || entry.getKey().equals(keep))
+				continue;
+
+			it.remove();
+			sizes.remove(entry.getKey());
+			bytes -= size.longValue();
+			evictions++;
+
+			try {
+				removed.add(entry.getValue().get());
+			}
+			catch (Exception e) {
+			}
+		}
+
+		return removed;
+	}
+
+	/**
+	 * Apumetodi, joka poistaa epäonnistuneen latauksen välimuistista, jotta se voidaan yrittää uudelleen.
+	 * @param key Resurssin avain.
+	 * @param task Epäonnistunut lataus.
+	 */
+	private synchronized void remove(String key, FutureTask<V> task) {
+		if (entries.get(key) == task)
+			entries.remove(key);
+	}
+}
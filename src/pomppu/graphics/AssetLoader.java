@@ -0,0 +1,483 @@
+/**
+ * Sisältää luokat, jotka ovat vastuussa ikkunan luomisesta sekä kuvien
+ * lataamisesta ja niiden käsittelemisestä. Tämä paketti on käytännössä
+ * wrapperi ohjelmassa käytettävälle grafiikkakirjastolle (Swing).
+ */
+package pomppu.graphics;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Kirjastoluokka, joka esilataa kentän kuvat ja animaatiot taustasäikeissä. Ladattavat resurssit luetaan
+ * manifestitiedostosta, ja jokainen resurssi ladataan rinnakkain omana tehtävänään ImageFactory:n tai
+ * AnimationFactory:n välimuistiin. Esilataus palauttaa heti Progress-olion, jonka avulla latausruutu voi piirtää
+ * edistymisen. Välimuistit lataavat jokaisen resurssin vain kerran, joten kesken latauksen resurssia pyytävä säie
+ * odottaa ainoastaan kyseisen resurssin valmistumista.<br><br>
+ * Manifestin jokainen rivi on joko "image NIMI POLKU" tai "animation NIMI POLKU LEVEYS KORKEUS NOPEUS [mirror] [mirrored]",
+ * jossa "mirror" luo animaatioista myös peilikuvat ja "mirrored" toistaa animaatiot päinvastaisessa järjestyksessä.
+ * Nimellä kenttää rakentava koodi hakee resurssin luetusta manifestista (Manifest), joten manifesti on kentän
+ * resurssien ainoa lähde. Tyhjät rivit sekä #-merkillä alkavat rivit ohitetaan.
+ * @see pomppu.graphics.ImageFactory
+ * @see pomppu.graphics.AnimationFactory
+ * @author arkivika
+ */
+public final class AssetLoader {
+
+	/**
+	 * Esilatauksen edistyminen. Päivittyy taustasäikeistä, joten sitä voidaan lukea esimerkiksi latausruudun
+	 * piirtosilmukasta.
+	 * @author arkivika
+	 */
+	public static final class Progress {
+
+		private final int total;
+		private final AtomicInteger loaded, failed;
+
+		/**
+		 * Konstruktori, joka luo edistymisen annetulle resurssien määrälle.
+		 * @param _total Ladattavien resurssien määrä.
+		 */
+		Progress(int _total) {
+			total = _total;
+			loaded = new AtomicInteger();
+			failed = new AtomicInteger();
+		}
+
+		/**
+		 * Aksessori, joka palauttaa arvonaan ladattavien resurssien määrän.
+		 * @return Resurssien määrä.
+		 */
+		public int getTotal() {
+			return total;
+		}
+
+		/**
+		 * Aksessori, joka palauttaa arvonaan valmistuneiden (myös epäonnistuneiden) latausten määrän.
+		 * @return Valmistuneiden latausten määrä.
+		 */
+		public int getLoaded() {
+			return loaded.get();
+		}
+
+		/**
+		 * Aksessori, joka palauttaa arvonaan epäonnistuneiden latausten määrän. Lataus epäonnistuu, mikäli tehdas
+		 * palauttaa "dummy"-kuvan tai tyhjän animaatiolistan.
+		 * @return Epäonnistuneiden latausten määrä.
+		 */
+		public int getFailed() {
+			return failed.get();
+		}
+
+		/**
+		 * Aksessori, joka palauttaa arvonaan valmistuneiden latausten osuuden.
+		 * @return Osuus väliltä [0, 1].
+		 */
+		public double getFraction() {
+			return (total == 0) ? 1.0 : (double)loaded.get() / total;
+		}
+
+		/**
+		 * Aksessori, joka palauttaa arvonaan true, mikäli kaikki lataukset ovat valmistuneet.
+		 * @return True, mikäli esilataus on valmis, muuten false.
+		 */
+		public boolean isDone() {
+			return loaded.get() >= total;
+		}
+
+		/**
+		 * Aksessori, joka odottaa, kunnes kaikki lataukset ovat valmistuneet.
+		 * @throws InterruptedException Heitetään, mikäli odottava säie keskeytetään.
+		 */
+		public synchronized void await() throws InterruptedException {
+			while (!isDone())
+				wait();
+		}
+
+		/**
+		 * Apumetodi, joka kirjaa yhden latauksen valmistuneeksi ja herättää odottavat säikeet.
+		 * @param success True, mikäli lataus onnistui, muuten false.
+		 * @return True, mikäli lataus oli esilatauksen viimeinen, muuten false.
+		 */
+		private synchronized boolean completed(boolean success) {
+
+			if (!success)
+				failed.incrementAndGet();
+			boolean last = (loaded.incrementAndGet() == total);
+
+			notifyAll();
+			return last;
+		}
+	}
+
+	/**
+	 * Luettu manifesti. Yhdistää manifestin resurssien nimet niiden lataustietoihin, joten kenttää rakentava koodi
+	 * voi hakea resurssit nimellä ilman, että tiedostopolkuja tai pilkkomisia toistetaan muualla. Haut kulkevat
+	 * välimuistien kautta, joten kesken esilatauksen haettu resurssi odottaa ainoastaan omaa latautumistaan.
+	 * @author arkivika
+	 */
+	public static final class Manifest {
+
+		private final LinkedHashMap<String, Entry> entries;
+
+		/**
+		 * Konstruktori, joka luo tyhjän manifestin.
+		 */
+		Manifest() {
+			entries = new LinkedHashMap<String, Entry>();
+		}
+
+		/**
+		 * Aksessori, joka palauttaa arvonaan manifestin resurssien määrän.
+		 * @return Resurssien määrä.
+		 */
+		public int size() {
+			return entries.size();
+		}
+
+		/**
+		 * Aksessori, joka palauttaa arvonaan manifestin nimeämän kuvan. Mikäli kuvan lataaminen epäonnistuu,
+		 * palautetaan ImageFactory:n "dummy"-kuva.
+		 * @param name Resurssin nimi manifestissa.
+		 * @return Drawable-olio.
+		 * @throws IOException Heitetään, mikäli manifestissa ei ole kyseisen nimistä kuvaa.
+		 */
+		public Drawable getImage(String name) throws IOException {
+
+			Entry entry = entries.get(name);
+			if (entry == null || entry.animation)
+				throw new IOException("Error! No image in the manifest: " + name);
+
+			return ImageFactory.getImage(entry.path);
+		}
+
+		/**
+		 * Aksessori, joka palauttaa arvonaan manifestin nimeämän animaatiotaulun animaatiot.
+		 * @param name Resurssin nimi manifestissa.
+		 * @return Animaatiot (vähintään yksi).
+		 * @throws IOException Heitetään, mikäli manifestissa ei ole kyseisen nimistä animaatiota, tai sen lataaminen epäonnistuu.
+		 */
+		public ArrayList<Animation> getAnimations(String name) throws IOException {
+
+			Entry entry = entries.get(name);
+			if (entry == null || !entry.animation)
+				throw new IOException("Error! No animation in the manifest: " + name);
+
+			ArrayList<Animation> animations = entry.getAnimations();
+			if (animations.size() < 1)
+				throw new IOException("Error! Animations \"" + name + "\" don't exist!");
+
+			return animations;
+		}
+	}
+
+	/**
+	 * Yksi manifestin resurssi: kuva tai animaatiotaulu pilkkomistietoineen.
+	 * @author arkivika
+	 */
+	private static final class Entry {
+
+		final String path;
+		final boolean animation, mirror, mirrored;
+		final int width, height;
+		final double speed;
+
+		/**
+		 * Konstruktori kuvaresurssille.
+		 * @param _path Tiedostopolku kuvatiedostolle.
+		 */
+		Entry(String _path) {
+			this(_path, false, 0, 0, 0, false, false);
+		}
+
+		/**
+		 * Konstruktori resurssille.
+		 * @param _path Tiedostopolku kuvatiedostolle.
+		 * @param _animation True, mikäli resurssi on animaatiotaulu, muuten false.
+		 * @param _width Animaatiokehyksen leveys.
+		 * @param _height Animaatiokehyksen korkeus.
+		 * @param _speed Animaation nopeus.
+		 * @param _mirror True, mikäli animaatioista luodaan myös peilikuvat, muuten false.
+		 * @param _mirrored True, mikäli animaatiot toistetaan päinvastaisessa järjestyksessä, muuten false.
+		 */
+		Entry(String _path, boolean _animation, int _width, int _height, double _speed, boolean _mirror, boolean _mirrored) {
+			path = _path;
+			animation = _animation;
+			width = _width;
+			height = _height;
+			speed = _speed;
+			mirror = _mirror;
+			mirrored = _mirrored;
+		}
+
+		/**
+		 * Apumetodi, joka hakee animaatiotaulun animaatiot välimuistin kautta.
+		 * @return Animaatiot, tai tyhjä lista, mikäli lataaminen epäonnistui.
+		 */
+		ArrayList<Animation> getAnimations() {
+			return AnimationFactory.getAnimations(path, width, height, speed, mirror, mirrored);
+		}
+
+		/**
+		 * Apumetodi, joka lataa resurssin välimuistiin. Tehtaat eivät heitä poikkeuksia, vaan palauttavat
+		 * epäonnistuessaan "dummy"-kuvan tai tyhjän listan, joten lataus tulkitaan niiden perusteella.
+		 * @return True, mikäli resurssi saatiin ladattua, muuten false.
+		 */
+		boolean load() {
+
+			if (animation)
+				return getAnimations().size() > 0;
+
+			return !ImageFactory.isNotFound(ImageFactory.getImage(path));
+		}
+	}
+
+	private static final ExecutorService loader = Executors.newFixedThreadPool(
+		Math.max(1, Runtime.getRuntime().availableProcessors()),
+		new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "AssetLoader");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+	/**
+	 * Estää olioiden luomisen, kaikki metodit ovat staattisia.
+	 */
+	private AssetLoader() {
+	}
+
+	/**
+	 * Aksessori, joka lukee manifestin ja aloittaa sen resurssien lataamisen taustasäikeissä. Palaa heti, kun
+	 * lataukset on aloitettu.
+	 * @param manifest Tiedostopolku manifestitiedostolle.
+	 * @return Esilatauksen edistyminen.
+	 * @throws IOException Heitetään, mikäli manifestia ei löydy tai sen rivi on virheellinen.
+	 */
+	public static Progress preload(String manifest) throws IOException {
+		return preload(readManifest(manifest));
+	}
+
+	/**
+	 * Aksessori, joka aloittaa luetun manifestin resurssien lataamisen taustasäikeissä. Palaa heti, kun
+	 * lataukset on aloitettu.
+	 * @param manifest Luettu manifesti.
+	 * @return Esilatauksen edistyminen.
+	 */
+	public static Progress preload(Manifest manifest) {
+
+		final Progress progress = new Progress(manifest.size());
+
+		for (final Entry entry : manifest.entries.values())
+			loader.execute(new Runnable() {
+				public void run() {
+
+					boolean success = false;
+					try {
+						success = entry.load();
+						if (!success)
+							System.out.println("Error! Couldn't preload asset: " + entry.path);
+					}
+					catch (RuntimeException e) {
+						System.out.println("Error! Couldn't preload asset: " + e);
+					}
+					finally {
+						// Ladattuja kuvia ei enää muuteta, joten atlassivut voidaan tiivistää (ks. Image.pack)
+						if (progress.completed(success) && !Image.HEADLESS)
+							TextureAtlas.compact();
+					}
+				}
+			});
+
+		return progress;
+	}
+
+	/**
+	 * Aksessori, joka lukee manifestitiedoston.
+	 * @param manifest Tiedostopolku manifestitiedostolle.
+	 * @return Luettu manifesti.
+	 * @throws IOException Heitetään, mikäli manifestia ei löydy tai sen rivi on virheellinen.
+	 */
+	public static Manifest readManifest(String manifest) throws IOException {
+
+		URL url = null;
+
+		if (manifest != null)
+			url = AssetLoader.class.getResource(manifest);
+
+		if (url == null)
+			throw new IOException("Error! File not found: \"" + manifest + "\"");
+
+		Manifest parsed = new Manifest();
+		Scanner parser = new Scanner(url.openStream(), "UTF-8");
+
+		try {
+			while (parser.hasNextLine()) {
+
+				String line = parser.nextLine().trim();
+
+				if (line.length() == 0 || line.startsWith("#"))
+					continue;
+
+				String[] tokens = line.split("\\s+");
+
+				if (tokens.length < 2 || parsed.entries.containsKey(tokens[1]))
+					throw new IOException("Error! Invalid or duplicate manifest entry: " + line);
+
+				parsed.entries.put(tokens[1], parseEntry(tokens));
+			}
+		}
+		finally {
+			parser.close();
+		}
+
+		return parsed;
+	}
+
+	/**
+	 * Apumetodi, joka luo resurssin yhdestä manifestin rivistä.
+	 * @param tokens Rivin sanat.
+	 * @return Resurssi.
+	 * @throws IOException Heitetään, mikäli rivi on virheellinen.
+	 */
+	private static Entry parseEntry(String[] tokens) throws IOException {
+
+		if (tokens[0].equals("image") && tokens.length == 3)
+			return new Entry(tokens[2]);
+
+		if (tokens[0].equals("animation") && tokens.length >= 6) {
+
+			int width, height;
+			double speed;
+			boolean mirror = false, mirrored = false;
+
+			try {
+				width = Integer.parseInt(tokens[3]);
+				height = Integer.parseInt(tokens[4]);
+				speed = Double.parseDouble(tokens[5]);
+			}
+			catch (NumberFormatException e) {
+				throw new IOException("Error! Invalid manifest entry: " + tokens[1]);
+			}
+
+			for (int i=6; i<tokens.length; i++) {
+				if (tokens[i].equals("mirror"))
+					mirror = true;
+				else if (tokens[i].equals("mirrored"))
+					mirrored = true;
+				else
+					throw new IOException("Error! Invalid manifest flag: " + tokens[i]);
+			}
+
+			return new Entry(tokens[2], true, width, height, speed, mirror, mirrored);
+		}
+
+		throw new IOException("Error! Invalid manifest entry: " + tokens[0]);
+	}
+
+	/**
+	 * Testipäämetodi, jonka avulla varmistutaan siitä, että luokka toimii kuten sen pitäisi. Tulostaa jokaisen testin sekä sen tuloksen.
+	 * @param args Ei huomioida tässä.
+	 */
+	public static void main(String[] args) {
+
+		try {
+
+			// Manifestin esilataus
+
+			System.out.println("Testing preload with a valid manifest..");
+			Progress progress = preload("/resources/maps/level_1.assets");
+			if (progress.getTotal() <= 0)
+				failedTest("The manifest contained no assets.");
+			progress.await();
+			if (!progress.isDone() || progress.getFraction() != 1.0 || progress.getFailed() != 0)
+				failedTest("Preloading didn't finish properly: " + progress.getLoaded() + "/" + progress.getTotal());
+			System.out.println("..OK!");
+
+			// Esiladatut resurssit löytyvät välimuistista
+
+			System.out.println("Testing that the preloaded assets are cached..");
+			long misses = ImageFactory.getMisses();
+			ImageFactory.getImage("/resources/ground/ground_top.png");
+			if (ImageFactory.getMisses() != misses)
+				failedTest("A preloaded image was loaded again.");
+			System.out.println("..OK!");
+
+			// Epäkelpo manifesti
+
+			System.out.println("Trying to preload a missing manifest..");
+			try {
+				preload("/resources/maps/kukkelikoo.assets");
+				failedTest("Preloaded a manifest that doesn't exist!");
+			}
+			catch (IOException e) {
+				System.out.println("..OK!");
+			}
+
+			// Puuttuvat resurssit lasketaan epäonnistuneiksi
+
+			System.out.println("Testing that missing assets are counted as failures..");
+			Manifest missing = new Manifest();
+			missing.entries.put("image", parseEntry("image image /resources/objects/kukkelikoo.png".split(" ")));
+			missing.entries.put("animation", parseEntry("animation animation /resources/objects/kukkelikoo.png 32 32 0.33".split(" ")));
+			progress = preload(missing);
+			progress.await();
+			if (progress.getFailed() != 2)
+				failedTest("Missing assets weren't counted as failures: " + progress.getFailed());
+			System.out.println("..OK!");
+
+			// Resurssien hakeminen nimellä
+
+			System.out.println("Testing the named lookups of a manifest..");
+			Manifest manifest = readManifest("/resources/maps/level_1.assets");
+			if (manifest.getImage("crate") != ImageFactory.getImage("/resources/objects/crate.png") ||
+				manifest.getAnimations("spikey").size() != AnimationFactory.getAnimations("/resources/enemies/spikey.png", 60, 60, 0.3, true, false).size())
+				failedTest("The manifest returned the wrong assets.");
+			try {
+				manifest.getAnimations("crate");
+				failedTest("The manifest returned an image as an animation!");
+			}
+			catch (IOException e) {
+			}
+			try {
+				missing.getAnimations("animation");
+				failedTest("The manifest returned a missing animation!");
+			}
+			catch (IOException e) {
+			}
+			System.out.println("..OK!");
+
+			System.out.println("Trying to parse an invalid manifest entry..");
+			try {
+				parseEntry("animation coin /resources/objects/coin.png 32 x 0.33".split(" "));
+				failedTest("Parsed an invalid manifest entry!");
+			}
+			catch (IOException e) {
+				System.out.println("..OK!");
+			}
+
+			System.out.println("Everything OK with the AssetLoader!");
+		}
+		catch (Exception e) {
+			failedTest("Unknown exception: " + e);
+		}
+	}
+
+	/**
+	 * Apumetodi, joka tulostaa pieleen menneen testin sekä lopettaa ohjelman suorittamisen.
+	 * @param test Pieleen mennyt testi.
+	 */
+	private static void failedTest(String test) {
+
+		System.out.println("TEST FAILED: " + test);
+		System.exit(0);
+	}
+}
@@ -0,0 +1,146 @@
+/**
+ * Sisältää luokat, jotka ovat vastuussa ikkunan luomisesta sekä kuvien
+ * lataamisesta ja niiden käsittelemisestä. Tämä paketti on käytännössä
+ * wrapperi ohjelmassa käytettävälle grafiikkakirjastolle (Swing).
+ */
+package pomppu.graphics;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+
+/**
+ * Bittikarttafontti. Rasteroi fontin tulostettavat ASCII-merkit (32-126) kerran omiksi kuvikseen, jotka pakataan
+ * tekstuuriatlakseen. Tekstiä piirrettäessä kukin merkki piirretään suoraan atlaksesta, joten piirtäminen ei
+ * vaadi merkkijonoja eikä drawString-kutsuja. Fontit luodaan getFont-metodilla, joka palauttaa saman olion
+ * samalle fontille, koolle ja värille.
+ * @see pomppu.graphics.BitmapText
+ * @see pomppu.graphics.TextureAtlas
+ * @author arkivika
+ */
+public final class BitmapFont {
+
+	static final char FIRST_CHAR = 32;
+	static final char LAST_CHAR = 126;
+	static final char MISSING_CHAR = '?';
+
+	private static HashMap<String, BitmapFont> fontMap = new HashMap<String, BitmapFont>();
+
+	private Image[] glyphs;
+	private int[] advances;
+	private int height;
+
+	/**
+	 * Konstruktori, joka rasteroi fontin merkit.
+	 * @param font Rasteroitava fontti.
+	 * @param col Merkkien väri.
+	 */
+	private BitmapFont(Font font, Color col) {
+
+		BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D sg = scratch.createGraphics();
+		FontMetrics metrics = sg.getFontMetrics(font);
+		sg.dispose();
+
+		int ascent = metrics.getAscent();
+		height = ascent + metrics.getDescent();
+
+		glyphs = new Image[LAST_CHAR - FIRST_CHAR + 1];
+		advances = new int[glyphs.length];
+
+		for (char c = FIRST_CHAR; c <= LAST_CHAR; c++) {
+
+			int advance = metrics.charWidth(c);
+			BufferedImage glyph = new BufferedImage(Math.max(1, advance), Math.max(1, height), BufferedImage.TYPE_INT_ARGB);
+
+			Graphics2D g = glyph.createGraphics();
+			g.setFont(font);
+			g.setColor(col);
+			g.drawString(String.valueOf(c), 0, ascent);
+			g.dispose();
+
+			glyphs[c - FIRST_CHAR] = new Image(glyph, true);
+			advances[c - FIRST_CHAR] = advance;
+		}
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan bittikarttafontin annetulle fontille. Mikäli fontti on jo luotu,
+	 * palautetaan se HashMap:istä.
+	 * @param name Fontin nimi.
+	 * @param style Fontin tyyli.
+	 * @param size Fontin koko.
+	 * @param col Merkkien väri.
+	 * @return BitmapFont-olio.
+	 */
+	public static synchronized BitmapFont getFont(String name, int style, int size, Color col) {
+
+		String key = name + "/" + style + "/" + size + "/" + col.getRGB();
+
+		BitmapFont font = fontMap.get(key);
+		if (font == null) {
+			font = new BitmapFont(new Font(name, style, size), col);
+			fontMap.put(key, font);
+		}
+
+		return font;
+	}
+
+	/**
+	 * Tyhjentää fonttien välimuistin ja vapauttaa merkkien atlasalueet (Image.dispose). Aiemmin palautettuja
+	 * fontteja ei tämän jälkeen tule käyttää.
+	 */
+	public static synchronized void clear() {
+
+		for (BitmapFont font : fontMap.values())
+			for (Image glyph : font.glyphs)
+				glyph.dispose();
+
+		fontMap.clear();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan rivin korkeuden.
+	 * @return Rivin korkeus.
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan merkin leveyden. Tuntemattomat merkit korvataan kysymysmerkillä.
+	 * @param c Merkki.
+	 * @return Merkin leveys.
+	 */
+	public int charWidth(char c) {
+		return advances[index(c)];
+	}
+
+	/**
+	 * Aksessori, joka piirtää merkit taulukosta annettuihin koordinaatteihin (rivin vasen yläkulma).
+	 * @param g "Graphics context", johon piirretään.
+	 * @param chars Piirrettävät merkit.
+	 * @param length Piirrettävien merkkien määrä.
+	 * @param x Rivin x-koordinaatti.
+	 * @param y Rivin y-koordinaatti.
+	 */
+	public void drawChars(Graphics2D g, char[] chars, int length, int x, int y) {
+
+		for (int i=0; i<length; i++) {
+
+			int index = index(chars[i]);
+			if (chars[i] != ' ')
+				glyphs[index].draw(g, x, y);
+			x += advances[index];
+		}
+	}
+
+	/**
+	 * Apumetodi, joka palauttaa arvonaan merkin indeksin merkkitaulukossa.
+	 * @param c Merkki.
+	 * @return Merkin indeksi.
+	 */
+	private static int index(char c) {
+		return (c < FIRST_CHAR || c > LAST_CHAR) ? MISSING_CHAR - FIRST_CHAR : c - FIRST_CHAR;
+	}
+}
@@ -0,0 +1,199 @@
+/**
+ * Sisältää luokat, jotka ovat vastuussa ikkunan luomisesta sekä kuvien
+ * lataamisesta ja niiden käsittelemisestä. Tämä paketti on käytännössä
+ * wrapperi ohjelmassa käytettävälle grafiikkakirjastolle (Swing).
+ */
+package pomppu.graphics;
+
+import java.awt.Graphics2D;
+
+/**
+ * Bittikarttafonttia käyttävä teksti. Tarkoitettu jokaisella framella muuttuville teksteille (esim. pistelaskurit):
+ * teksti kootaan uudelleenkäytettävään merkkitaulukkoon append-metodeilla, joten päivittäminen ei luo
+ * merkkijonoja eikä muita olioita. Teksti kootaan takapuskuriin ja tulee näkyviin commit-kutsulla, jotta
+ * piirtävä säie ei koskaan näe puoliksi koottua riviä.
+ * @see pomppu.graphics.BitmapFont
+ * @see pomppu.graphics.Drawable
+ * @author arkivika
+ */
+public class BitmapText implements Drawable {
+
+	/**
+	 * Sisäinen apuluokka, joka sisältää yhden kootun rivin merkit ja sen leveyden.
+	 * @author arkivika
+	 */
+	private static class Run {
+
+		char[] chars = new char[INITIAL_CAPACITY];
+		int length, width;
+	}
+
+	private static final int INITIAL_CAPACITY = 32;
+
+	private BitmapFont font;
+	private Run[] runs;
+	private int back;
+	private volatile Run front;
+
+	/**
+	 * Konstruktori, joka luo tyhjän tekstin.
+	 * @param _font Käytettävä bittikarttafontti.
+	 */
+	public BitmapText(BitmapFont _font) {
+
+		font = _font;
+
+		runs = new Run[3];
+		for (int i=0; i<runs.length; i++)
+			runs[i] = new Run();
+
+		front = runs[0];
+		back = 1;
+	}
+
+	/**
+	 * Konstruktori, joka luo tekstin annetulla alkuarvolla.
+	 * @param _font Käytettävä bittikarttafontti.
+	 * @param _text Alkuarvo.
+	 */
+	public BitmapText(BitmapFont _font, String _text) {
+		this(_font);
+		append(_text).commit();
+	}
+
+	/**
+	 * Aksessori, joka tyhjentää takapuskurin uuden rivin kokoamista varten.
+	 * @return Tämä olio.
+	 */
+	public BitmapText clear() {
+		runs[back].length = 0;
+		runs[back].width = 0;
+		return this;
+	}
+
+	/**
+	 * Aksessori, joka lisää merkin takapuskurin loppuun.
+	 * @param c Lisättävä merkki.
+	 * @return Tämä olio.
+	 */
+	public BitmapText append(char c) {
+
+		Run run = runs[back];
+		ensureCapacity(run, run.length+1);
+
+		run.chars[run.length++] = c;
+		run.width += font.charWidth(c);
+
+		return this;
+	}
+
+	/**
+	 * Aksessori, joka lisää merkkijonon takapuskurin loppuun.
+	 * @param s Lisättävä merkkijono.
+	 * @return Tämä olio.
+	 */
+	public BitmapText append(String s) {
+
+		Run run = runs[back];
+		int len = s.length();
+		ensureCapacity(run, run.length+len);
+
+		s.getChars(0, len, run.chars, run.length);
+		for (int i=0; i<len; i++)
+			run.width += font.charWidth(run.chars[run.length+i]);
+		run.length += len;
+
+		return this;
+	}
+
+	/**
+	 * Aksessori, joka lisää kokonaisluvun numeroina takapuskurin loppuun.
+	 * @param value Lisättävä luku.
+	 * @return Tämä olio.
+	 */
+	public BitmapText append(int value) {
+
+		if (value < 0) {
+			append('-');
+			// Integer.MIN_VALUE ei ole esitettävissä positiivisena, joten viimeinen numero käsitellään erikseen
+			if (value == Integer.MIN_VALUE) {
+				append(-(value / 10));
+				return append((char)('0' - (value % 10)));
+			}
+			value = -value;
+		}
+
+		int digits = 1;
+		for (int v = value; v >= 10; v /= 10)
+			digits++;
+
+		Run run = runs[back];
+		ensureCapacity(run, run.length+digits);
+
+		for (int i = run.length+digits-1; i >= run.length; i--) {
+			char c = (char)('0' + value % 10);
+			run.chars[i] = c;
+			run.width += font.charWidth(c);
+			value /= 10;
+		}
+		run.length += digits;
+
+		return this;
+	}
+
+	/**
+	 * Aksessori, joka julkaisee takapuskuriin kootun rivin piirrettäväksi.
+	 */
+	public void commit() {
+		front = runs[back];
+		back = (back+1) % runs.length;
+	}
+
+	/**
+	 * Aksessori, joka piirtää viimeksi julkaistun rivin annettuihin koordinaatteihin.
+	 * @param g "Graphics context", johon teksti piirretään.
+	 * @param x Tekstin x-koordinaatti.
+	 * @param y Tekstin y-koordinaatti.
+	 */
+	public void draw(Graphics2D g, int x, int y) {
+		Run run = front;
+		font.drawChars(g, run.chars, run.length, x, y);
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan tekstin korkeuden.
+	 * @return Tekstin korkeus.
+	 */
+	public int getHeight() {
+		return font.getHeight();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan viimeksi julkaistun rivin leveyden.
+	 * @return Tekstin leveys.
+	 */
+	public int getWidth() {
+		return front.width;
+	}
+
+	/**
+	 * Tyhjä, merkkien kuvat päivittyvät tekstuuriatlaksen mukana.
+	 */
+	public void update() {
+	}
+
+	/**
+	 * Apumetodi, joka kasvattaa rivin merkkitaulukkoa tarvittaessa (kaksinkertaistamalla).
+	 * @param run Rivi.
+	 * @param capacity Vähimmäiskapasiteetti.
+	 */
+	private static void ensureCapacity(Run run, int capacity) {
+
+		if (capacity <= run.chars.length)
+			return;
+
+		char[] chars = new char[Math.max(capacity, run.chars.length*2)];
+		System.arraycopy(run.chars, 0, chars, 0, run.length);
+		run.chars = chars;
+	}
+}
@@ -0,0 +1,301 @@
+/**
+ * Sisältää luokat, jotka ovat vastuussa ikkunan luomisesta sekä kuvien
+ * lataamisesta ja niiden käsittelemisestä. Tämä paketti on käytännössä
+ * wrapperi ohjelmassa käytettävälle grafiikkakirjastolle (Swing).
+ */
+package pomppu.graphics;
+
+import javax.swing.*;
+
+import java.awt.*;
+import java.awt.image.BufferStrategy;
+
+/**
+ * Toteuttaa Canvas-rajapinnan aktiivisella renderöinnillä (BufferStrategy, "page flipping").
+ * Toisin kuin Screen, joka pyytää Swingiä piirtämään itsensä repaint()-kutsulla, BufferedScreen
+ * piirtää framen suoraan kutsuvassa säikeessä (pelisilmukka) ja näyttää sen show()-kutsulla.
+ * Näin pelisilmukka tietää, milloin frame on oikeasti näytetty, eikä Swing yhdistele päivityksiä.
+ * @see pomppu.graphics.Canvas
+ * @see pomppu.graphics.Screen
+ * @see java.awt.image.BufferStrategy
+ * @author arkivika
+ */
+public class BufferedScreen implements Canvas {
+
+	public static final int MIN_BUFFERS = 2;
+	public static final int MAX_BUFFERS = 3;
+
+	private JFrame frame;
+	private java.awt.Canvas canvas;
+	private BufferStrategy strategy;
+	private int buffers, strategyWidth, strategyHeight;
+
+	private Color clrColor;
+	private DrawQueue drawList;
+	private Compositor compositor;
+
+	/**
+	 * Konstruktori, joka luo ikkunan, piirtoalustan sekä sen BufferStrategy-olion.
+	 * @param width Ikkunan leveys.
+	 * @param height Ikkunan korkeus.
+	 * @param fullscreen True, mikäli piirretään kokoruututilassa. Muuten false.
+	 * @param title Ikkunan otsikko.
+	 * @param _frame Käytettävä JFrame-olio.
+	 * @param _buffers Puskurien määrä (2 tai 3).
+	 */
+	public BufferedScreen(int width, int height, boolean fullscreen, String title, JFrame _frame, int _buffers) {
+
+		drawList = new DrawQueue();
+		compositor = new Compositor(width, height);
+
+		frame = _frame;
+		buffers = Math.max(MIN_BUFFERS, Math.min(MAX_BUFFERS, _buffers));
+
+		canvas = new java.awt.Canvas();
+		canvas.setIgnoreRepaint(true);
+		canvas.setFocusable(true);
+
+		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		frame.setIgnoreRepaint(true);
+		frame.setTitle(title);
+
+		// Ikkunan koko määräytyy piirtoalustan koon mukaan, jotta piirtoalue vastaa sisäistä resoluutiota
+		canvas.setPreferredSize(new Dimension(width, height));
+		frame.add(canvas);
+		frame.pack();
+
+		frame.setResizable(false);
+		frame.setVisible(true);
+
+		canvas.requestFocus();
+
+		clrColor = new Color(0, 0, 0);
+	}
+
+	/**
+	 * Aksessori, joka tyhjentää piirrettävien elementtien välittömän jonon. Pysyvät kerrokset säilyvät.
+	 */
+	public void clear() {
+		drawList.clear();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan sisäisen resoluution leveyden.
+	 */
+	public int getWidth() {
+		return compositor.getWidth();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan sisäisen resoluution korkeuden.
+	 */
+	public int getHeight() {
+		return compositor.getHeight();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan vaakasuuntaisen skaalauskertoimen.
+	 * @return Piirtoalustan leveys jaettuna sisäisen resoluution leveydellä.
+	 */
+	public double getScaleX() {
+		return (canvas.getWidth() > 0) ? (double)canvas.getWidth() / compositor.getWidth() : 1.0;
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan pystysuuntaisen skaalauskertoimen.
+	 * @return Piirtoalustan korkeus jaettuna sisäisen resoluution korkeudella.
+	 */
+	public double getScaleY() {
+		return (canvas.getHeight() > 0) ? (double)canvas.getHeight() / compositor.getHeight() : 1.0;
+	}
+
+	/**
+	 * Aksessori, joka asettaa skaalauksessa käytettävän interpolointitavan.
+	 * @param interpolation Canvas.SCALE_NEAREST, Canvas.SCALE_BILINEAR tai Canvas.SCALE_BICUBIC.
+	 */
+	public void setInterpolation(int interpolation) {
+		compositor.setInterpolation(interpolation);
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan skaalauksessa käytettävän interpolointitavan.
+	 * @return Interpolointitapa.
+	 */
+	public int getInterpolation() {
+		return compositor.getInterpolation();
+	}
+
+	/**
+	 * Aksessori, joka piirtää taustan sekä jonossa olevat piirrettävät elementit takapuskuriin (skaalattuna
+	 * sisäisestä resoluutiosta piirtoalustan kokoon) ja näyttää sen. Piirto tapahtuu kutsuvassa säikeessä. Mikäli puskurin sisältö katoaa kesken
+	 * piirron (contentsLost/contentsRestored), frame piirretään uudelleen.
+	 */
+	public void draw() {
+
+		drawList.publish();
+
+		if (!validateStrategy())
+			return;
+
+		DrawBuffer elements = drawList.acquire();
+
+		do {
+			do {
+				Graphics2D g = (Graphics2D)strategy.getDrawGraphics();
+
+				compositor.render(g, elements, drawList.getOverlayStart(), clrColor, canvas.getWidth(), canvas.getHeight());
+
+				g.dispose();
+
+			} while (strategy.contentsRestored());
+
+			strategy.show();
+
+		} while (strategy.contentsLost());
+
+		Toolkit.getDefaultToolkit().sync();
+	}
+
+	/**
+	 * Aksessori, joka piirtää koko framen. Takapuskurin sisältö on sivunvaihdon jälkeen määrittelemätön,
+	 * joten osittainen päivitys ei ole mahdollinen.
+	 * @param area Päivitettävä alue (ei huomioida).
+	 */
+	public void draw(Rectangle area) {
+		draw();
+	}
+
+	/**
+	 * Aksessori, joka lisää elementin piirrettävien elementtien jonoon.
+	 * @param elem Piirrettävä elementti.
+	 */
+	public void addElement(VisibleElement elem) {
+		drawList.add(elem.getDrawable(), elem.getX(), elem.getY());
+	}
+
+	/**
+	 * Aksessori, joka lisää piirtokomennon piirrettävien elementtien jonoon luomatta uutta oliota.
+	 * @param drawable Piirrettävä Drawable-rajapinnan toteuttava olio.
+	 * @param x Elementin x-koordinaatti.
+	 * @param y Elementin y-koordinaatti.
+	 */
+	public void addElement(Drawable drawable, int x, int y) {
+		drawList.add(drawable, x, y);
+	}
+
+	/**
+	 * Aksessori, joka lisää puskurin piirtokomennot piirrettävien elementtien jonoon.
+	 * @param buffer Lisättävät piirtokomennot.
+	 */
+	public void addElements(DrawBuffer buffer) {
+		drawList.addAll(buffer);
+	}
+
+	/**
+	 * Aksessori, joka korvaa pysyvän piirtokerroksen sisällön. Kerrokset säilyvät framesta toiseen ja
+	 * piirretään indeksijärjestyksessä ennen välitöntä jonoa.
+	 * @param index Kerroksen indeksi.
+	 * @param contents Kerroksen uudet piirtokomennot.
+	 */
+	public void setLayer(int index, DrawBuffer contents) {
+		drawList.setLayer(index, contents);
+	}
+
+	/**
+	 * Aksessori, joka poistaa num-määrän elementtejä piirrettävän jonon lopusta.
+	 * @param num Poistettavien elementtien määrä.
+	 */
+	public void clearTop(int num) {
+		drawList.removeLast(num);
+	}
+
+	/**
+	 * Aksessori, joka asettaa ikkunan piirtoalueen koon. Sisäinen resoluutio säilyy ennallaan. BufferStrategy
+	 * luodaan uudelleen seuraavan piirron yhteydessä.
+	 * @param _d Dimension-olio, joka sisältää uuden koon.
+	 */
+	public void setSize(Dimension _d) {
+		canvas.setPreferredSize(_d);
+		frame.pack();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan ikkunan reunojen mitat. Syötteet luetaan suoraan
+	 * piirtoalustalta, joten reunoja ei tarvitse huomioida.
+	 * @return Ikkunan reunojen mitat.
+	 */
+	public Dimension getInsets() {
+		return new Dimension(0, 0);
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan komponentin, jolta näppäimistön ja hiiren syötteet luetaan.
+	 * @return Piirtoalusta (java.awt.Canvas).
+	 */
+	public Component getInputComponent() {
+		return canvas;
+	}
+
+	/**
+	 * Aksessori, joka asettaa ensimmäisen päällyskerroksen (esim. GUI). Tätä pienemmät kerrokset ovat pelimaailmaa.
+	 * @param index Ensimmäisen päällyskerroksen indeksi.
+	 */
+	public void setOverlayLayer(int index) {
+		drawList.setOverlayLayer(index);
+	}
+
+	/**
+	 * Aksessori, joka asettaa pelimaailman kerrosten piirtoresoluution suhteessa sisäiseen resoluutioon.
+	 * @param scale Skaalauskerroin väliltä ]0, 1].
+	 */
+	public void setWorldScale(double scale) {
+		compositor.setWorldScale(scale);
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan pelimaailman kerrosten piirtoresoluution suhteessa sisäiseen resoluutioon.
+	 * @return Skaalauskerroin.
+	 */
+	public double getWorldScale() {
+		return compositor.getWorldScale();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan viimeisimmän framen piirtämiseen kuluneen ajan.
+	 * @return Piirtämiseen kulunut aika nanosekunteina.
+	 */
+	public long getRenderTime() {
+		return compositor.getRenderTime();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan viimeisimmän framen julkaisusta sen lukemiseen kuluneen ajan.
+	 * @return Julkaisusta lukemiseen kulunut aika nanosekunteina.
+	 */
+	public long getQueueLatency() {
+		return drawList.getLatency();
+	}
+
+	/**
+	 * Apumetodi, joka luo BufferStrategy-olion, mikäli sitä ei vielä ole tai piirtoalustan koko on muuttunut.
+	 * @return True, mikäli piirtäminen on mahdollista, muuten false.
+	 */
+	private boolean validateStrategy() {
+
+		if (!canvas.isDisplayable() || canvas.getWidth() <= 0 || canvas.getHeight() <= 0)
+			return false;
+
+		if (strategy == null || strategyWidth != canvas.getWidth() || strategyHeight != canvas.getHeight()) {
+
+			if (strategy != null)
+				strategy.dispose();
+
+			canvas.createBufferStrategy(buffers);
+			strategy = canvas.getBufferStrategy();
+			strategyWidth = canvas.getWidth();
+			strategyHeight = canvas.getHeight();
+		}
+
+		return strategy != null;
+	}
+}
@@ -5,7 +5,9 @@
  */
 package pomppu.graphics;
 
+import java.awt.Component;
 import java.awt.Dimension;
+import java.awt.Rectangle;
 
 /**
  * Rajapinta Screen-luokalle, joka on vastuussa peligrafiikan piirtämisestä
@@ -19,15 +21,45 @@ import java.awt.Dimension;
 public interface Canvas {
 
 	/**
-	 * Aksessori, joka tyhjentää piirrettävien Drawable-olioiden jonon.	
+	 * Skaalauksen interpolointitavat (ks. setInterpolation).
+	 */
+	public static final int SCALE_NEAREST = 0;
+	public static final int SCALE_BILINEAR = 1;
+	public static final int SCALE_BICUBIC = 2;
+
+	/**
+	 * Aksessori, joka tyhjentää piirrettävien Drawable-olioiden välittömän jonon. Pysyvät kerrokset säilyvät.
 	 */
 	public void clear();
+
+	/**
+	 * Aksessori, joka korvaa pysyvän piirtokerroksen sisällön. Kerrokset säilyvät framesta toiseen, joten
+	 * kerros tarvitsee lähettää uudelleen vain sen sisällön muuttuessa. Kerrokset piirretään indeksijärjestyksessä
+	 * ennen välitöntä jonoa.
+	 * @param index Kerroksen indeksi.
+	 * @param contents Kerroksen uudet piirtokomennot. Komennot kopioidaan, joten puskuria saa muokata kutsun jälkeen.
+	 */
+	public void setLayer(int index, DrawBuffer contents);
 	
 	/**
 	 * Lisää jonoon piirrettävän elementin, joka sisältää Drawable-rajapinnan toteuttavan olion sekä sen koordinaatit.
 	 * @param elem Piirrettävien jonoon lisättävä Visibleelement-olio.
 	 */
 	public void addElement(VisibleElement elem);
+
+	/**
+	 * Lisää jonoon piirtokomennon luomatta VisibleElement-oliota. Käytetään pelisilmukassa.
+	 * @param drawable Piirrettävä Drawable-rajapinnan toteuttava olio.
+	 * @param x Elementin x-koordinaatti.
+	 * @param y Elementin y-koordinaatti.
+	 */
+	public void addElement(Drawable drawable, int x, int y);
+
+	/**
+	 * Lisää jonoon kaikki annetun puskurin piirtokomennot.
+	 * @param buffer Lisättävät piirtokomennot.
+	 */
+	public void addElements(DrawBuffer buffer);
 	
 	/**
 	 * Aksessori, joka piirtää jonossa olevat Drawable-rajapinnan toteuttavat oliot.
@@ -35,16 +67,48 @@ public interface Canvas {
 	public void draw();
 
 	/**
-	 * Aksessori, joka palauttaa arvonaan ikkunan leveyden.
-	 * @return Ikkunan leveyden.
+	 * Aksessori, joka piirtää jonossa olevat elementit, mutta päivittää ruudulta vain annetun alueen, mikäli
+	 * toteutus tukee osittaista päivitystä. Muuten piirretään koko ruutu.
+	 * @param area Päivitettävä alue.
+	 */
+	public void draw(Rectangle area);
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan piirtoalueen leveyden sisäisessä resoluutiossa. Kaikki piirtokomennot
+	 * annetaan tässä koordinaatistossa ikkunan koosta riippumatta.
+	 * @return Piirtoalueen leveys.
 	 */
 	public int getWidth();
 
 	/**
-	 * Aksessori, joka palauttaa arvonaan ikkunan korkeuden.
-	 * @return Ikkunan korkeuden.
+	 * Aksessori, joka palauttaa arvonaan piirtoalueen korkeuden sisäisessä resoluutiossa.
+	 * @return Piirtoalueen korkeus.
 	 */
 	public int getHeight();
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan vaakasuuntaisen skaalauskertoimen (ikkunan koko / sisäinen resoluutio).
+	 * @return Vaakasuuntainen skaalauskerroin.
+	 */
+	public double getScaleX();
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan pystysuuntaisen skaalauskertoimen (ikkunan koko / sisäinen resoluutio).
+	 * @return Pystysuuntainen skaalauskerroin.
+	 */
+	public double getScaleY();
+
+	/**
+	 * Aksessori, joka asettaa sisäisen resoluution skaalauksessa käytettävän interpolointitavan.
+	 * @param interpolation SCALE_NEAREST, SCALE_BILINEAR tai SCALE_BICUBIC.
+	 */
+	public void setInterpolation(int interpolation);
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan skaalauksessa käytettävän interpolointitavan.
+	 * @return SCALE_NEAREST, SCALE_BILINEAR tai SCALE_BICUBIC.
+	 */
+	public int getInterpolation();
 	
 	/**
 	 * Aksessori, joka poistaa num-määrän elementtejä piirrettävän jonon alusta.
@@ -58,4 +122,50 @@ public interface Canvas {
 	 */
 	public Dimension getInsets();
 
+	/**
+	 * Aksessori, joka asettaa ikkunan piirtoalueen koon. Sisäinen resoluutio ei muutu, vaan frame skaalataan
+	 * uuteen kokoon.
+	 * @param _d Dimension-olio, joka sisältää uuden koon.
+	 */
+	public void setSize(Dimension _d);
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan komponentin, jolle näppäimistön ja hiiren kuuntelijat lisätään.
+	 * @return Syötteet vastaanottava komponentti.
+	 */
+	public Component getInputComponent();
+
+	/**
+	 * Aksessori, joka asettaa ensimmäisen päällyskerroksen (esim. GUI). Tätä pienemmät kerrokset ovat pelimaailmaa,
+	 * jonka piirtoresoluutiota voidaan pienentää setWorldScale-metodilla. Välitön jono kuuluu aina päällykseen.
+	 * @param index Ensimmäisen päällyskerroksen indeksi.
+	 */
+	public void setOverlayLayer(int index);
+
+	/**
+	 * Aksessori, joka asettaa pelimaailman kerrosten piirtoresoluution suhteessa sisäiseen resoluutioon.
+	 * Päällyskerrokset piirretään aina täydellä resoluutiolla.
+	 * @param scale Skaalauskerroin väliltä ]0, 1].
+	 */
+	public void setWorldScale(double scale);
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan pelimaailman kerrosten piirtoresoluution suhteessa sisäiseen resoluutioon.
+	 * @return Skaalauskerroin.
+	 */
+	public double getWorldScale();
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan viimeisimmän framen piirtämiseen (kokoaminen ja skaalaus) kuluneen ajan.
+	 * @return Piirtämiseen kulunut aika nanosekunteina.
+	 */
+	public long getRenderTime();
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan viimeisimmän framen julkaisusta sen lukemiseen kuluneen ajan,
+	 * eli ajan, jonka valmis frame on odottanut piirtävää säiettä piirtojonossa.
+	 * @return Julkaisusta lukemiseen kulunut aika nanosekunteina.
+	 */
+	public long getQueueLatency();
+
 }
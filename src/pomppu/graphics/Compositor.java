@@ -0,0 +1,239 @@
+/**
+ * Sisältää luokat, jotka ovat vastuussa ikkunan luomisesta sekä kuvien
+ * lataamisesta ja niiden käsittelemisestä. Tämä paketti on käytännössä
+ * wrapperi ohjelmassa käytettävälle grafiikkakirjastolle (Swing).
+ */
+package pomppu.graphics;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+
+/**
+ * Piirtää framen kiinteän kokoiseen sisäiseen puskuriin ja skaalaa sen ikkunan kokoiseksi yhdellä
+ * drawImage-kutsulla. Näin peli piirretään aina samalla resoluutiolla (esim. 640x480) riippumatta ikkunan koosta,
+ * eikä suurempi ikkuna lisää piirrettävien palojen määrää. Mikäli ikkuna on sisäisen resoluution kokoinen,
+ * frame piirretään suoraan ilman välipuskuria.<br><br>
+ * Pelimaailman kerrokset voidaan lisäksi piirtää sisäistä resoluutiota pienemmällä resoluutiolla (worldScale),
+ * jolloin kuvat piirretään niiden valmiiksi pienennetyistä kopioista ilman skaalausmuunnosta ja tulos venytetään
+ * sisäiseen resoluutioon ennen päällyskerrosten (GUI) piirtämistä täydellä resoluutiolla.
+ * Ruutua ei tyhjennetä taustavärillä, mikäli frame on merkitty peittäväksi (DrawBuffer.isOpaque).
+ * @see pomppu.graphics.Screen
+ * @see pomppu.graphics.BufferedScreen
+ * @author arkivika
+ */
+final class Compositor {
+
+	private int width, height;
+	private int interpolation;
+	private java.awt.Image backBuffer, worldBuffer;
+	private volatile double worldScale;
+	private volatile long renderTime;
+
+	/**
+	 * Konstruktori, joka asettaa sisäisen resoluution.
+	 * @param _width Sisäisen puskurin leveys.
+	 * @param _height Sisäisen puskurin korkeus.
+	 */
+	Compositor(int _width, int _height) {
+		width = _width;
+		height = _height;
+		interpolation = Canvas.SCALE_BILINEAR;
+		worldScale = 1.0;
+		renderTime = 0;
+	}
+
+	/**
+	 * Palauttaa arvonaan sisäisen puskurin leveyden.
+	 * @return Sisäisen puskurin leveys.
+	 */
+	int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Palauttaa arvonaan sisäisen puskurin korkeuden.
+	 * @return Sisäisen puskurin korkeus.
+	 */
+	int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Asettaa skaalauksessa käytettävän interpolointitavan.
+	 * @param _interpolation Canvas.SCALE_NEAREST, Canvas.SCALE_BILINEAR tai Canvas.SCALE_BICUBIC.
+	 */
+	void setInterpolation(int _interpolation) {
+		if (_interpolation >= Canvas.SCALE_NEAREST && _interpolation <= Canvas.SCALE_BICUBIC)
+			interpolation = _interpolation;
+	}
+
+	/**
+	 * Palauttaa arvonaan skaalauksessa käytettävän interpolointitavan.
+	 * @return Interpolointitapa.
+	 */
+	int getInterpolation() {
+		return interpolation;
+	}
+
+	/**
+	 * Asettaa pelimaailman kerrosten piirtoresoluution suhteessa sisäiseen resoluutioon.
+	 * @param scale Skaalauskerroin väliltä ]0, 1].
+	 */
+	void setWorldScale(double scale) {
+		if (scale > 0 && scale <= 1.0)
+			worldScale = scale;
+	}
+
+	/**
+	 * Palauttaa arvonaan pelimaailman kerrosten piirtoresoluution suhteessa sisäiseen resoluutioon.
+	 * @return Skaalauskerroin.
+	 */
+	double getWorldScale() {
+		return worldScale;
+	}
+
+	/**
+	 * Palauttaa arvonaan viimeisimmän framen piirtämiseen kuluneen ajan.
+	 * @return Piirtämiseen kulunut aika nanosekunteina.
+	 */
+	long getRenderTime() {
+		return renderTime;
+	}
+
+	/**
+	 * Piirtää taustan sekä piirtokomennot ja skaalaa tuloksen annetun kokoiselle alueelle.
+	 * @param g "Graphics context", johon lopullinen frame piirretään.
+	 * @param elements Piirtokomennot sisäisen resoluution koordinaatistossa.
+	 * @param overlayStart Ensimmäisen päällyskomennon indeksi; tätä edeltävät komennot ovat pelimaailmaa.
+	 * @param clrColor Taustaväri.
+	 * @param targetWidth Kohdealueen leveys.
+	 * @param targetHeight Kohdealueen korkeus.
+	 */
+	void render(Graphics2D g, DrawBuffer elements, int overlayStart, Color clrColor, int targetWidth, int targetHeight) {
+
+		long start = System.nanoTime();
+		double scale = worldScale;
+
+		if (targetWidth == width && targetHeight == height) {
+			compose(g, elements, overlayStart, scale, clrColor);
+			renderTime = System.nanoTime() - start;
+			return;
+		}
+
+		GraphicsConfiguration gfxConf = g.getDeviceConfiguration();
+
+		do {
+			backBuffer = validate(backBuffer, gfxConf, Transparency.OPAQUE, width, height);
+
+			Graphics2D bg = (Graphics2D)backBuffer.getGraphics();
+			compose(bg, elements, overlayStart, scale, clrColor);
+			bg.dispose();
+
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, getHint());
+			g.drawImage(backBuffer, 0, 0, targetWidth, targetHeight, null);
+
+		} while (contentsLost(backBuffer));
+
+		renderTime = System.nanoTime() - start;
+	}
+
+	/**
+	 * Apumetodi, joka piirtää framen sisäisessä resoluutiossa. Mikäli pelimaailman resoluutiota on pienennetty,
+	 * pelimaailman komennot piirretään ensin kuvien pienennetyistä kopioista pienempään puskuriin, joka venytetään
+	 * sisäiseen resoluutioon lähimmän naapurin interpoloinnilla. Peittävää framea ei tyhjennetä kummassakaan tapauksessa.
+	 * @param g "Graphics context", johon frame piirretään (sisäinen resoluutio).
+	 * @param elements Piirtokomennot.
+	 * @param overlayStart Ensimmäisen päällyskomennon indeksi.
+	 * @param scale Pelimaailman skaalauskerroin.
+	 * @param clrColor Taustaväri.
+	 */
+	private void compose(Graphics2D g, DrawBuffer elements, int overlayStart, double scale, Color clrColor) {
+
+		if (scale >= 1.0) {
+			// Peittävän framen alle jäävää taustaväriä ei koskaan näkyisi
+			if (!elements.isOpaque()) {
+				g.setColor(clrColor);
+				g.fillRect(0, 0, width, height);
+			}
+			elements.draw(g);
+			return;
+		}
+
+		int worldWidth = (int)Math.ceil(width * scale);
+		int worldHeight = (int)Math.ceil(height * scale);
+		GraphicsConfiguration gfxConf = g.getDeviceConfiguration();
+
+		do {
+			worldBuffer = validate(worldBuffer, gfxConf, Transparency.OPAQUE, worldWidth, worldHeight);
+
+			Graphics2D wg = (Graphics2D)worldBuffer.getGraphics();
+			if (!elements.isOpaque()) {
+				wg.setColor(clrColor);
+				wg.fillRect(0, 0, worldWidth, worldHeight);
+			}
+			elements.draw(wg, 0, overlayStart, scale);
+			wg.dispose();
+
+			// Suodatettu venytys maksaisi ohjelmistopiirrossa enemmän kuin pienempi resoluutio säästää
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+			g.drawImage(worldBuffer, 0, 0, width, height, 0, 0, worldWidth, worldHeight, null);
+
+		} while (contentsLost(worldBuffer));
+
+		elements.draw(g, overlayStart, elements.size());
+	}
+
+	/**
+	 * Apumetodi, joka luo annetun kokoisen VolatileImage-olion, mikäli sitä ei ole, se on eri kokoinen tai se ei ole
+	 * enää yhteensopiva piirtoalustan kanssa. Ilman näyttöä (java.awt.headless) käytetään BufferedImage-oliota.
+	 * @param image Nykyinen kuva, tai null.
+	 * @param gfxConf Piirtoalustan GraphicsConfiguration-olio.
+	 * @param transparency Kuvan läpinäkyvyys.
+	 * @param w Kuvan leveys.
+	 * @param h Kuvan korkeus.
+	 * @return Validi kuva.
+	 */
+	private java.awt.Image validate(java.awt.Image image, GraphicsConfiguration gfxConf, int transparency, int w, int h) {
+
+		boolean resized = (image != null && (image.getWidth(null) != w || image.getHeight(null) != h));
+
+		if (Image.HEADLESS)
+			return (image != null && !resized) ? image : new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+
+		VolatileImage vramImg = (VolatileImage)image;
+
+		if (vramImg == null || resized || vramImg.validate(gfxConf) == VolatileImage.IMAGE_INCOMPATIBLE) {
+			if (vramImg != null)
+				vramImg.flush();
+			vramImg = gfxConf.createCompatibleVolatileImage(w, h, transparency);
+		}
+
+		return vramImg;
+	}
+
+	/**
+	 * Apumetodi, joka kertoo, onko puskurin sisältö kadonnut piirron aikana.
+	 * @param image Puskuri.
+	 * @return True, mikäli puskuri on VolatileImage-olio ja sen sisältö on kadonnut, muuten false.
+	 */
+	private static boolean contentsLost(java.awt.Image image) {
+		return (image instanceof VolatileImage) && ((VolatileImage)image).contentsLost();
+	}
+
+	/**
+	 * Apumetodi, joka palauttaa arvonaan interpolointitapaa vastaavan RenderingHints-arvon.
+	 * @return RenderingHints-arvo.
+	 */
+	private Object getHint() {
+
+		switch (interpolation) {
+			case Canvas.SCALE_NEAREST:
+				return RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR;
+			case Canvas.SCALE_BICUBIC:
+				return RenderingHints.VALUE_INTERPOLATION_BICUBIC;
+			default:
+				return RenderingHints.VALUE_INTERPOLATION_BILINEAR;
+		}
+	}
+}
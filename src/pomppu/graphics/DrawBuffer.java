@@ -0,0 +1,318 @@
+/**
+ * Sisältää luokat, jotka ovat vastuussa ikkunan luomisesta sekä kuvien
+ * lataamisesta ja niiden käsittelemisestä. Tämä paketti on käytännössä
+ * wrapperi ohjelmassa käytettävälle grafiikkakirjastolle (Swing).
+ */
+package pomppu.graphics;
+
+import java.awt.AlphaComposite;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.util.Arrays;
+
+/**
+ * Uudelleenkäytettävä piirtokomentopuskuri. Korvaa VisibleElement-oliot pelisilmukassa: jokainen
+ * piirtokomento tallennetaan rinnakkaisiin taulukoihin (x- ja y-koordinaatit sekä Drawable-olio),
+ * joten komentojen lisääminen ei luo uusia olioita. Taulukot kasvavat tarvittaessa, mutta niitä ei
+ * koskaan pienennetä, joten tasaisessa tilassa puskuri ei varaa muistia lainkaan.
+ * @see pomppu.graphics.Canvas
+ * @see pomppu.graphics.Drawable
+ * @author arkivika
+ */
+public class DrawBuffer {
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	private Drawable[] drawables;
+	private int[] xs, ys;
+	private int size;
+	private boolean opaque;
+
+	private Drawable[] sortDrawables;
+	private int[] sortXs, sortYs, sortKeys, sortCounts;
+
+	/**
+	 * Konstruktori, joka alustaa tyhjän puskurin.
+	 */
+	public DrawBuffer() {
+		drawables = new Drawable[INITIAL_CAPACITY];
+		xs = new int[INITIAL_CAPACITY];
+		ys = new int[INITIAL_CAPACITY];
+		size = 0;
+	}
+
+	/**
+	 * Aksessori, joka lisää piirtokomennon puskurin loppuun.
+	 * @param drawable Piirrettävä Drawable-rajapinnan toteuttava olio.
+	 * @param x Piirrettävän elementin x-koordinaatti.
+	 * @param y Piirrettävän elementin y-koordinaatti.
+	 */
+	public void add(Drawable drawable, int x, int y) {
+
+		ensureCapacity(size+1);
+
+		drawables[size] = drawable;
+		xs[size] = x;
+		ys[size] = y;
+		size++;
+	}
+
+	/**
+	 * Aksessori, joka kopioi toisen puskurin komennot tämän puskurin loppuun.
+	 * @param other Kopioitava puskuri.
+	 */
+	public void addAll(DrawBuffer other) {
+
+		ensureCapacity(size+other.size);
+
+		System.arraycopy(other.drawables, 0, drawables, size, other.size);
+		System.arraycopy(other.xs, 0, xs, size, other.size);
+		System.arraycopy(other.ys, 0, ys, size, other.size);
+		size += other.size;
+	}
+
+	/**
+	 * Aksessori, joka tyhjentää puskurin. Viittaukset Drawable-olioihin poistetaan, jotta ne eivät jää roikkumaan.
+	 */
+	public void clear() {
+		Arrays.fill(drawables, 0, size, null);
+		size = 0;
+		opaque = false;
+	}
+
+	/**
+	 * Aksessori, joka poistaa num-määrän komentoja puskurin lopusta.
+	 * @param num Poistettavien komentojen määrä.
+	 */
+	public void removeLast(int num) {
+
+		int newSize = Math.max(0, size-num);
+		Arrays.fill(drawables, newSize, size, null);
+		size = newSize;
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan puskurissa olevien komentojen määrän.
+	 * @return Komentojen määrä.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan halutun komennon Drawable-olion.
+	 * @param i Komennon indeksi.
+	 * @return Komennon Drawable-rajapinnan toteuttava olio.
+	 */
+	public Drawable getDrawable(int i) {
+		return drawables[i];
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan halutun komennon x-koordinaatin.
+	 * @param i Komennon indeksi.
+	 * @return Komennon x-koordinaatti.
+	 */
+	public int getX(int i) {
+		return xs[i];
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan halutun komennon y-koordinaatin.
+	 * @param i Komennon indeksi.
+	 * @return Komennon y-koordinaatti.
+	 */
+	public int getY(int i) {
+		return ys[i];
+	}
+
+	/**
+	 * Aksessori, joka kertoo, sisältääkö toinen puskuri täsmälleen samat piirtokomennot samassa järjestyksessä.
+	 * Drawable-olioita verrataan viittauksina.
+	 * @param other Verrattava puskuri.
+	 * @return True, mikäli komennot ovat samat, muuten false.
+	 */
+	public boolean contentEquals(DrawBuffer other) {
+
+		if (other.size != size || other.opaque != opaque)
+			return false;
+
+		for (int i=0; i<size; i++)
+			if (drawables[i] != other.drawables[i] || xs[i] != other.xs[i] || ys[i] != other.ys[i])
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * Aksessori, joka järjestää puskurin komennot tekstuuriatlaksen sivun mukaan, jotta kukin sivu piirretään
+	 * yhdellä kertaa. Järjestäminen on vakaa (laskentalajittelu), joten saman sivun komennot säilyttävät
+	 * keskinäisen järjestyksensä. Käytetään vain kerroksille, joiden komennot eivät piirrä päällekkäin
+	 * (esim. kenttäpalat), koska järjestyksen muuttaminen muuttaisi muuten lopputulosta.
+	 */
+	public void sortByPage() {
+
+		int pageCount = TextureAtlas.getPageCount() + 1;
+
+		if (sortKeys == null || sortKeys.length < size) {
+			int capacity = Math.max(size, xs.length);
+			sortDrawables = new Drawable[capacity];
+			sortXs = new int[capacity];
+			sortYs = new int[capacity];
+			sortKeys = new int[capacity];
+		}
+		if (sortCounts == null || sortCounts.length < pageCount+1)
+			sortCounts = new int[pageCount+1];
+
+		Arrays.fill(sortCounts, 0, pageCount+1, 0);
+
+		for (int i=0; i<size; i++) {
+			int key = Math.min(TextureAtlas.pageOf(drawables[i]), pageCount-1);
+			sortKeys[i] = key;
+			sortCounts[key+1]++;
+		}
+
+		for (int i=0; i<pageCount; i++)
+			sortCounts[i+1] += sortCounts[i];
+
+		for (int i=0; i<size; i++) {
+			int target = sortCounts[sortKeys[i]]++;
+			sortDrawables[target] = drawables[i];
+			sortXs[target] = xs[i];
+			sortYs[target] = ys[i];
+		}
+
+		System.arraycopy(sortDrawables, 0, drawables, 0, size);
+		System.arraycopy(sortXs, 0, xs, 0, size);
+		System.arraycopy(sortYs, 0, ys, 0, size);
+		Arrays.fill(sortDrawables, 0, size, null);
+	}
+
+	/**
+	 * Aksessori, joka piirtää puskurin komennot järjestyksessä annettuun "graphics contextiin".
+	 * @param g "Graphics context", johon piirretään.
+	 */
+	public void draw(Graphics2D g) {
+		draw(g, 0, size);
+	}
+
+	/**
+	 * Aksessori, joka piirtää puskurin komennot annetulta väliltä järjestyksessä.
+	 * @param g "Graphics context", johon piirretään.
+	 * @param from Ensimmäisen piirrettävän komennon indeksi.
+	 * @param to Viimeisen piirrettävän komennon jälkeinen indeksi.
+	 */
+	public void draw(Graphics2D g, int from, int to) {
+		draw(g, from, to, 1.0);
+	}
+
+	/**
+	 * Piirtää puskurin komennot annetulta väliltä pienennettyyn koordinaatistoon. Kuvat ja animaatiot piirretään
+	 * niiden valmiiksi pienennetyistä kopioista (Image.drawScaled), joten jokainen piirto on skaalaamaton kopio.
+	 * Muut Drawable-oliot (esim. teksti) piirretään skaalausmuunnoksen kautta.
+	 * @param g "Graphics context", johon piirretään.
+	 * @param from Ensimmäisen piirrettävän komennon indeksi.
+	 * @param to Viimeisen piirrettävän komennon jälkeinen indeksi.
+	 * @param scale Skaalauskerroin väliltä ]0, 1].
+	 */
+	void draw(Graphics2D g, int from, int to, double scale) {
+
+		Composite blend = g.getComposite();
+		boolean plain = AlphaComposite.SrcOver.equals(blend);
+		boolean copying = false;
+
+		for (int i=from; i<to; i++) {
+
+			// Läpinäkymättömät kuvat kopioidaan sekoittamatta, mikäli muuta sekoitusta ei ole asetettu
+			boolean copy = plain && opacityOf(drawables[i]) == Transparency.OPAQUE;
+			if (copy != copying) {
+				g.setComposite(copy ? AlphaComposite.Src : blend);
+				copying = copy;
+			}
+
+			if (scale >= 1.0) {
+				drawables[i].draw(g, xs[i], ys[i]);
+				continue;
+			}
+
+			Drawable drawable = drawables[i];
+			if (drawable instanceof Animation) {
+				Image frame = ((Animation)drawable).getCurrentFrame();
+				if (frame != null)
+					drawable = frame;
+			}
+
+			if (drawable instanceof Image)
+				((Image)drawable).drawScaled(g, xs[i], ys[i], scale);
+			else {
+				AffineTransform transform = g.getTransform();
+				g.scale(scale, scale);
+				drawable.draw(g, xs[i], ys[i]);
+				g.setTransform(transform);
+			}
+		}
+
+		if (copying)
+			g.setComposite(blend);
+	}
+
+	/**
+	 * Aksessori, joka merkitsee, peittävätkö puskurin komennot koko ruudun läpinäkymättömillä pikseleillä.
+	 * Tällöin ruutua ei tarvitse tyhjentää ennen piirtoa. Tyhjentäminen (clear) poistaa merkinnän.
+	 * @param _opaque True, mikäli komennot peittävät koko ruudun, muuten false.
+	 */
+	public void setOpaque(boolean _opaque) {
+		opaque = _opaque;
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan true, mikäli puskurin komennot peittävät koko ruudun (ks. setOpaque).
+	 * @return True, mikäli komennot peittävät koko ruudun, muuten false.
+	 */
+	public boolean isOpaque() {
+		return opaque;
+	}
+
+	/**
+	 * Apumetodi, joka palauttaa arvonaan piirrettävän olion läpinäkyvyysluokan. Animaation luokka on sen
+	 * nykyisen kehyksen luokka, ja muut kuin kuvat (esim. tekstit) ovat aina osittain läpinäkyviä.
+	 * @param drawable Piirrettävä olio.
+	 * @return Transparency.OPAQUE, BITMASK tai TRANSLUCENT.
+	 */
+	private static int opacityOf(Drawable drawable) {
+
+		if (drawable instanceof Animation)
+			drawable = ((Animation)drawable).getCurrentFrame();
+
+		if (drawable instanceof Image)
+			return ((Image)drawable).getOpacity();
+
+		return Transparency.TRANSLUCENT;
+	}
+
+	/**
+	 * Apumetodi, joka kasvattaa taulukoita tarvittaessa (kaksinkertaistamalla).
+	 * @param capacity Vähimmäiskapasiteetti.
+	 */
+	private void ensureCapacity(int capacity) {
+
+		if (capacity <= xs.length)
+			return;
+
+		int newCapacity = Math.max(capacity, xs.length*2);
+
+		Drawable[] newDrawables = new Drawable[newCapacity];
+		int[] newXs = new int[newCapacity];
+		int[] newYs = new int[newCapacity];
+
+		System.arraycopy(drawables, 0, newDrawables, 0, size);
+		System.arraycopy(xs, 0, newXs, 0, size);
+		System.arraycopy(ys, 0, newYs, 0, size);
+
+		drawables = newDrawables;
+		xs = newXs;
+		ys = newYs;
+	}
+}
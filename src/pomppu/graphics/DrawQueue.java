@@ -0,0 +1,177 @@
+/**
+ * Sisältää luokat, jotka ovat vastuussa ikkunan luomisesta sekä kuvien
+ * lataamisesta ja niiden käsittelemisestä. Tämä paketti on käytännössä
+ * wrapperi ohjelmassa käytettävälle grafiikkakirjastolle (Swing).
+ */
+package pomppu.graphics;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lukoton piirtojono pelisäikeen ja piirtävän säikeen (EDT) välillä.
+ * Pelisäie rakentaa framea omaan jonoonsa ja julkaisee sen yhdellä atomisella vaihdolla.
+ * Piirtävä säie lukee viimeisimmän julkaistun framen ilman lukkoa. Jonossa on kolme framea
+ * (kirjoitettava, valmis ja luettava), joten kumpikaan säie ei koskaan käsittele samaa framea
+ * yhtä aikaa toisen kanssa.<br><br>
+ * Jono koostuu pysyvistä kerroksista (setLayer), jotka säilyvät framesta toiseen ja korvataan vain
+ * niiden muuttuessa, sekä niiden päälle piirrettävästä välittömästä listasta (add, clear, removeLast).
+ * Mikäli jokin pelimaailman kerroksista on merkitty peittäväksi (DrawBuffer.setOpaque), myös julkaistu frame
+ * merkitään peittäväksi, jolloin ruutua ei tyhjennetä ennen piirtoa.
+ * @see pomppu.graphics.Canvas
+ * @author arkivika
+ */
+final class DrawQueue {
+
+	/**
+	 * Sisäinen apuluokka, joka sisältää yhden julkaistun framen piirtokomennot sekä sen järjestysnumeron.
+	 * @author arkivika
+	 */
+	private static class Frame {
+
+		DrawBuffer elements = new DrawBuffer();
+		int overlayStart;
+		long serial, published;
+	}
+
+	private ArrayList<DrawBuffer> layers;
+	private int overlayLayer;
+	private DrawBuffer pending;
+	private Frame back, front;
+	private AtomicReference<Frame> ready;
+	private long serial;
+
+	private volatile long latency;
+
+	/**
+	 * Konstruktori, joka alustaa jonon ja sen kolme framea.
+	 */
+	DrawQueue() {
+
+		layers = new ArrayList<DrawBuffer>();
+		overlayLayer = Integer.MAX_VALUE;
+		pending = new DrawBuffer();
+		back = new Frame();
+		front = new Frame();
+		ready = new AtomicReference<Frame>(new Frame());
+		serial = 0;
+	}
+
+	/**
+	 * Korvaa pysyvän kerroksen sisällön annetun puskurin piirtokomennoilla. Kerrokset piirretään
+	 * indeksijärjestyksessä. Kutsutaan vain pelisäikeestä.
+	 * @param index Kerroksen indeksi.
+	 * @param contents Kerroksen uudet piirtokomennot.
+	 */
+	void setLayer(int index, DrawBuffer contents) {
+
+		while (layers.size() <= index)
+			layers.add(new DrawBuffer());
+
+		DrawBuffer layer = layers.get(index);
+		layer.clear();
+		layer.addAll(contents);
+		layer.setOpaque(contents.isOpaque());
+	}
+
+	/**
+	 * Asettaa ensimmäisen päällyskerroksen (esim. GUI). Tätä pienemmät kerrokset ovat pelimaailmaa, joka voidaan
+	 * piirtää pienemmällä resoluutiolla. Välitön lista kuuluu aina päällykseen. Kutsutaan vain pelisäikeestä.
+	 * @param index Ensimmäisen päällyskerroksen indeksi.
+	 */
+	void setOverlayLayer(int index) {
+		overlayLayer = index;
+	}
+
+	/**
+	 * Tyhjentää kirjoitettavan välittömän listan. Pysyvät kerrokset säilyvät. Kutsutaan vain pelisäikeestä.
+	 */
+	void clear() {
+		pending.clear();
+	}
+
+	/**
+	 * Lisää piirtokomennon kirjoitettavan jonon loppuun. Kutsutaan vain pelisäikeestä.
+	 * @param drawable Piirrettävä Drawable-rajapinnan toteuttava olio.
+	 * @param x Elementin x-koordinaatti.
+	 * @param y Elementin y-koordinaatti.
+	 */
+	void add(Drawable drawable, int x, int y) {
+		pending.add(drawable, x, y);
+	}
+
+	/**
+	 * Lisää puskurin piirtokomennot kirjoitettavan jonon loppuun. Kutsutaan vain pelisäikeestä.
+	 * @param buffer Lisättävät piirtokomennot.
+	 */
+	void addAll(DrawBuffer buffer) {
+		pending.addAll(buffer);
+	}
+
+	/**
+	 * Poistaa num-määrän elementtejä kirjoitettavan jonon lopusta. Kutsutaan vain pelisäikeestä.
+	 * @param num Poistettavien elementtien määrä.
+	 */
+	void removeLast(int num) {
+		pending.removeLast(num);
+	}
+
+	/**
+	 * Julkaisee kerrokset sekä välittömän listan piirtävälle säikeelle. Kirjoitettava jono säilyy ennallaan,
+	 * jotta seuraavaa framea voidaan rakentaa sen päälle. Kutsutaan vain pelisäikeestä.
+	 */
+	void publish() {
+
+		back.elements.clear();
+		back.overlayStart = -1;
+		boolean opaque = false;
+		for (int i=0; i<layers.size(); i++) {
+			if (i == overlayLayer)
+				back.overlayStart = back.elements.size();
+			back.elements.addAll(layers.get(i));
+			opaque |= (i < overlayLayer && layers.get(i).isOpaque());
+		}
+		back.elements.setOpaque(opaque);
+		if (back.overlayStart < 0)
+			back.overlayStart = back.elements.size();
+		back.elements.addAll(pending);
+		back.serial = ++serial;
+		back.published = System.nanoTime();
+
+		back = ready.getAndSet(back);
+	}
+
+	/**
+	 * Palauttaa viimeisimmän julkaistun framen piirtokomennot. Mikäli uutta framea ei ole julkaistu,
+	 * palautetaan edellinen frame. Kirjaa uuden framen julkaisusta lukemiseen kuluneen ajan.
+	 * Kutsutaan vain piirtävästä säikeestä.
+	 * @return Piirrettävät komennot.
+	 */
+	DrawBuffer acquire() {
+
+		if (ready.get().serial > front.serial) {
+			front = ready.getAndSet(front);
+			latency = System.nanoTime() - front.published;
+		}
+
+		return front.elements;
+	}
+
+	/**
+	 * Palauttaa arvonaan viimeksi luetun framen ensimmäisen päällyskomennon indeksin. Kutsutaan vain piirtävästä
+	 * säikeestä acquire-kutsun jälkeen.
+	 * @return Ensimmäisen päällyskomennon indeksi.
+	 */
+	int getOverlayStart() {
+		return front.overlayStart;
+	}
+
+	/**
+	 * Palauttaa arvonaan viimeksi luetun framen julkaisusta lukemiseen kuluneen ajan, eli ajan, jonka valmis
+	 * frame joutui odottamaan piirtävää säiettä.
+	 * @return Julkaisusta lukemiseen kulunut aika nanosekunteina.
+	 */
+	long getLatency() {
+		return latency;
+	}
+}
@@ -8,51 +8,116 @@ package pomppu.graphics;
 import java.awt.*;
 import java.awt.image.*;
 
-import javax.imageio.ImageIO;
 import java.io.IOException;
-import java.net.URL;
 
 /**
  * Kuva-olio, joka toteuttaa Drawable- image object.
  * Makes it possible to draw images with the drawable interface.
- * Uses VolatileImage from the java awt library.
+ * Uses VolatileImage from the java awt library.<br><br>
+ * Tiedostoista ladatut pienet kuvat ja animaatiokehykset pakataan tekstuuriatlakseen, jolloin kuva on vain
+ * alue atlassivulla eikä sillä ole omaa VolatileImage-oliota. Muiden kuvien VolatileImage-olioita hallitsee
+ * SurfaceManager, joka luo ne vasta piirrettäessä ja vapauttaa ne vram-budjetin täyttyessä.<br><br>
+ * Peilikuvat ovat näkymiä alkuperäiseen kuvaan (mirrored): ne jakavat kuvadatan ja peilataan vasta piirrettäessä.
+ * Kuvadata tiivistetään keskusmuistissa (SurfaceManager), mikäli kuva ei ole osittain läpinäkyvä: atlakseen
+ * mahtumattomat kuvat omalla pinnallaan ja muut atlassivuittain (TextureAtlas).<br><br>
+ * Kuvan läpinäkyvyysluokka (getOpacity) selvitetään latauksen yhteydessä alfakanavasta: läpinäkymätön kuva
+ * peittää koko alueensa, joten sen alle jäävää ei tarvitse piirtää, ja se voidaan kopioida sekoittamatta.
  * @see pomppu.graphics.Drawable
+ * @see pomppu.graphics.TextureAtlas
+ * @see pomppu.graphics.SurfaceManager
  * @author arkivika
  */
 public class Image implements Drawable {
 
+	/**
+	 * True, mikäli näyttöä ei ole (java.awt.headless). Tällöin VolatileImage-olioita ei käytetä, vaan kuvat
+	 * piirretään suoraan BufferedImage-olioista (esim. OffscreenScreen).
+	 */
+	static final boolean HEADLESS = GraphicsEnvironment.isHeadless();
+
 	private BufferedImage buffer;
-	private VolatileImage vramImg;
-	private GraphicsConfiguration gfxConf;
+	private SurfaceManager.Surface surface;
+	private TextureAtlas.Region region;
+	private int width, height;
+	private int src_x, src_y;
+	private int opacity;
+	private Image source;
+	private boolean flipped;
+	private Image scaled;
+	private double scaledFactor;
 
 	/**
-	 * Konstruktori, joka yrittää ladata kuvan tiedostosta.
+	 * Konstruktori, joka yrittää ladata kuvan tiedostosta. Purettu kuva luetaan levyvälimuistista (SpriteCache),
+	 * mikäli se on ajan tasalla.
 	 * Heittää IOException:in, mikäli lataus epäonnistuu.
 	 * @param filepath Tiedostopolku kuvatiedostolle.
 	 * @throws IOException Heitetään, mikäli tiedostoa ei ole, tai se ei ole validi.
 	 */
 	protected Image(String filepath) throws IOException {
 
-		gfxConf = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
-	
-		URL url = this.getClass().getResource(filepath);
-		
-		if(url == null)
-			throw new IOException("Error! File not found: " + filepath);
-
-		buffer = ImageIO.read(url);
+		buffer = SpriteCache.load(filepath, "image", new SpriteCache.Decoder() {
+			public BufferedImage[][] decode(BufferedImage source) {
+				return new BufferedImage[][] { { source } };
+			}
+		})[0][0];
+		width = buffer.getWidth();
+		height = buffer.getHeight();
+		opacity = classify(buffer);
 		
-		moveToVram();
-		maintainImg();
+		pack();
+		track(filepath);
 	}
 
+	/**
+	 * Konstruktori, joka luo kuvan valmiista BufferedImage-oliosta omaan VolatileImage-olioonsa.
+	 * @param _buffer Kuvadata.
+	 */
 	protected Image(BufferedImage _buffer) {
-	
-		gfxConf = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+		this(_buffer, false);
+	}
+
+	/**
+	 * Konstruktori, joka luo kuvan valmiista BufferedImage-oliosta.
+	 * @param _buffer Kuvadata.
+	 * @param atlas True, mikäli kuva pakataan tekstuuriatlakseen (mikäli se mahtuu), muuten false.
+	 */
+	protected Image(BufferedImage _buffer, boolean atlas) {
 		 
 		buffer = _buffer;
-		moveToVram();
-		maintainImg();
+		width = buffer.getWidth();
+		height = buffer.getHeight();
+		opacity = classify(buffer);
+		
+		if (atlas)
+			pack();
+		else
+			surface = new SurfaceManager.Surface(buffer, opacity);
+		
+		track(width + "x" + height + " image");
+	}
+
+	/**
+	 * Konstruktori, joka luo näkymän toisen kuvan suorakulmaiseen alueeseen, valinnaisesti vaakasuunnassa
+	 * peilattuna. Näkymä jakaa kuvan kuvadatan, atlasalueen sekä vram-kopion, ja kuva rajataan ja peilataan vasta
+	 * piirrettäessä.
+	 * @param _source Kuva, josta näkymä luodaan.
+	 * @param x Alueen x-koordinaatti kuvassa.
+	 * @param y Alueen y-koordinaatti kuvassa.
+	 * @param w Alueen leveys.
+	 * @param h Alueen korkeus.
+	 * @param flip True, mikäli näkymä peilataan, muuten false.
+	 */
+	private Image(Image _source, int x, int y, int w, int h, boolean flip) {
+		source = (_source.source != null) ? _source.source : _source;
+		flipped = (_source.flipped != flip);
+		buffer = source.buffer;
+		width = w;
+		height = h;
+		src_x = _source.src_x + (_source.flipped ? _source.width-x-w : x);
+		src_y = _source.src_y + y;
+		opacity = _source.opacity;
+		surface = source.surface;
+		region = source.region;
 	}
 
 	/**
@@ -62,78 +127,348 @@ public class Image implements Drawable {
 	 * @param y Kuvan y-koordinaatti.
 	 */
 	public void draw(Graphics2D g, int x, int y) {
-		maintainImg();
-		g.drawImage(vramImg, x, y, null);
+		
+		int w = width;
+		int h = height;
+
+		if (region != null) {
+			int sx = region.x+src_x;
+			int sy = region.y+src_y;
+			if (flipped)
+				g.drawImage(region.page.validate(), x+w, y, x, y+h, sx, sy, sx+w, sy+h, null);
+			else
+				g.drawImage(region.page.validate(), x, y, x+w, y+h, sx, sy, sx+w, sy+h, null);
+			return;
+		}
+		
+		if (flipped)
+			g.drawImage(surface.validate(), x+w, y, x, y+h, src_x, src_y, src_x+w, src_y+h, null);
+		else if (source != null)
+			g.drawImage(surface.validate(), x, y, x+w, y+h, src_x, src_y, src_x+w, src_y+h, null);
+		else
+			g.drawImage(surface.validate(), x, y, null);
+	}
+
+	/**
+	 * Aksessori, joka piirtää kuvan pienennettynä annettuun koordinaatistoon ilman skaalausmuunnosta. Kuva piirretään
+	 * välimuistissa olevasta valmiiksi pienennetystä kopiosta, jonka kuva luo ensimmäisellä kutsulla (ja
+	 * skaalauskertoimen muuttuessa). Näkymät piirretään alkuperäisen kuvan kopiosta. Koordinaatit pyöristetään
+	 * samalla tavalla kaikille kuville, joten vierekkäisten kuvien väliin ei jää rakoa. Kutsutaan vain piirtävästä
+	 * säikeestä.
+	 * @param g "Graphics context", johon kuva piirretään (pienennetty koordinaatisto).
+	 * @param x Kuvan x-koordinaatti täysikokoisessa koordinaatistossa.
+	 * @param y Kuvan y-koordinaatti täysikokoisessa koordinaatistossa.
+	 * @param scale Skaalauskerroin väliltä ]0, 1[.
+	 */
+	void drawScaled(Graphics2D g, int x, int y, double scale) {
+
+		Image copy = (source != null) ? source.getScaled(scale) : getScaled(scale);
+
+		int dx = (int)Math.round(x * scale);
+		int dy = (int)Math.round(y * scale);
+		int sx = Math.min((int)Math.round(src_x * scale), copy.width-1);
+		int sy = Math.min((int)Math.round(src_y * scale), copy.height-1);
+		int w = Math.min((int)Math.ceil(width * scale), copy.width - sx);
+		int h = Math.min((int)Math.ceil(height * scale), copy.height - sy);
+
+		if (flipped)
+			g.drawImage(copy.surface.validate(), dx+w, dy, dx, dy+h, sx, sy, sx+w, sy+h, null);
+		else
+			g.drawImage(copy.surface.validate(), dx, dy, dx+w, dy+h, sx, sy, sx+w, sy+h, null);
 	}
 
 	/**
 	 * Aksessori, joka palauttaa arvonaan kuvan korkeuden.
 	 */
 	public int getHeight() {
-		return buffer.getHeight();
+		return height;
 	}
 
 	/**
 	 * Aksessori, joka palauttaa arvonaan kuvan leveyden.
 	 */
 	public int getWidth() {
-		return buffer.getWidth();
+		return width;
 	}
 
 	/**
-	 * Aksessori, joka päivittää kuvan siirtämällä sen uudelleen vram:iin.
+	 * Aksessori, joka piirtää kuvan suoraan sen kuvadatasta (BufferedImage) vram-kopiota käyttämättä. Tarkoitettu
+	 * kuvien koostamiseen muissa säikeissä (esim. TileCache), sillä vram-kopioita ei käsitellä.
+	 * @param g "Graphics context", johon kuva piirretään.
+	 * @param x Kuvan x-koordinaatti.
+	 * @param y Kuvan y-koordinaatti.
+	 */
+	public void drawSource(Graphics2D g, int x, int y) {
+
+		java.awt.Image img = heap();
+		int sx = src_x;
+		int sy = src_y;
+
+		if (region != null) {
+			sx += region.x;
+			sy += region.y;
+		}
+
+		if (flipped)
+			g.drawImage(img, x+width, y, x, y+height, sx, sy, sx+width, sy+height, null);
+		else if (source != null || region != null)
+			g.drawImage(img, x, y, x+width, y+height, sx, sy, sx+width, sy+height, null);
+		else
+			g.drawImage(img, x, y, null);
+	}
+
+	/**
+	 * Aksessori, joka päivittää kuvan siirtämällä sen uudelleen vram:iin ennen seuraavaa piirtoa.
 	 */
 	public void update() {
-		moveToVram();
+		
+		if (region != null)
+			region.page.invalidate();
+		else
+			surface.invalidate();
+	}
+	
+	/**
+	 * Palauttaa arvonaan näytön oletusarvoisen GraphicsConfiguration-olion. Mikäli näyttöä ei ole (java.awt.headless),
+	 * palautetaan BufferedImage-olion GraphicsConfiguration.
+	 * @return GraphicsConfiguration-olio.
+	 */
+	static GraphicsConfiguration getDefaultConfiguration() {
+		
+		if (HEADLESS) {
+			Graphics2D g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+			GraphicsConfiguration conf = g.getDeviceConfiguration();
+			g.dispose();
+			return conf;
+		}
+		
+		return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
 	}
 	
 	/**
-	 * Apumetodi, joka luo VolatileImage-olion BufferedImage-oliosta.
-	 * Käytännössä kuvadata kopioidaan vram:iin (näytönohjaimen muistiin) tehokkuuden parantamiseksi.
-	 * @see java.awt.image.VolatileImage
-	 * @see java.awt.image.BufferedImage
+	 * Aksessori, joka vapauttaa kuvan vram-kopion sekä muut järjestelmäresurssit heti, roskienkeruuta odottamatta.
+	 * Kutsutaan, kun kuvaa ei enää tarvita (esim. kuvan omistava välimuisti tyhjennetään). Myös kuvan pienennetty
+	 * kopio vapautetaan. Atlakseen pakatun kuvan alue vapautetaan, ja atlassivu vapautetaan, kun sen viimeinen
+	 * alue on vapautettu. Kutsu voidaan toistaa.
 	 */
-	private void moveToVram() {
-		// Luo uusi VolatileImage.
-		vramImg = gfxConf.createCompatibleVolatileImage(buffer.getWidth(),
-														buffer.getHeight(), 
-														buffer.getTransparency());
+	public void dispose() {
+		
+		if (scaled != null)
+			scaled.dispose();
 
-		// Hae "drawing context" kuvalle.
-		Graphics2D g2d = (Graphics2D) vramImg.getGraphics();
+		// Näkymä ei omista kuvadataa, vaan se vapautetaan alkuperäisen kuvan kautta
+		if (source != null)
+			return;
 
-		// Käytä läpinäkyvyyttä, mikäli mahdollista.
-		g2d.setComposite(AlphaComposite.Src);
-		g2d.setColor(new Color(0, 0, 0, 0));
-		g2d.fillRect(0, 0, vramImg.getWidth(), vramImg.getHeight());
+		if (region != null) {
+			region.dispose();
+			return;
+		}
+		
+		surface.dispose();
+		if (buffer != null)
+			buffer.flush();
+	}
+	
+	/**
+	 * Aksessori, joka luovuttaa kuvan resurssien vapauttamisen roskienkeruulle. Kuvaa voidaan yhä piirtää
+	 * normaalisti, ja sen vram-kopio tai atlasalue vapautetaan vasta, kun kuvaan ei enää viitata. Kutsutaan, kun
+	 * kuvan omistaja (esim. välimuisti) luopuu kuvasta, mutta muut oliot saattavat yhä käyttää sitä.
+	 */
+	public void release() {
 
-		// Piirrä kuva ja hylkää "drawing context".
-		g2d.drawImage(buffer, 0, 0, null);
-		g2d.dispose();
+		if (source != null)
+			return;
+
+		if (region != null)
+			region.abandon();
+		else
+			surface.abandon();
 	}
-	 
+
 	/**
-	 * Apumetodi, joka tarkistaa mikäli VolatileImage-olio on validi. Mikäli se ei ole, yritetään luoda se uudelleen.
-	 * @see java.awt.image.VolatileImage
-	 * @see java.awt.image.BufferedImage
+	 * Aksessori, joka palauttaa arvonaan kuvan kuvadatan koon keskusmuistissa. Atlakseen pakatun kuvan koko on sen
+	 * alueen koko atlassivulla, ja peilatun näkymän koko on 0, sillä se jakaa alkuperäisen kuvan kuvadatan.
+	 * @return Koko tavuina.
 	 */
-	private void maintainImg() {
+	public long getHeapBytes() {
 
-		if (vramImg.contentsLost()) {
-			moveToVram();
-			maintainImg();
-		}
+		if (source != null)
+			return 0;
+
+		return (surface != null) ? surface.getHeapBytes() : 4L * width * height;
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan kuvan läpinäkyvyysluokan. Transparency.OPAQUE tarkoittaa, että jokainen
+	 * pikseli peittää täysin, Transparency.BITMASK, että jokainen pikseli on joko täysin läpinäkyvä tai täysin
+	 * peittävä, ja Transparency.TRANSLUCENT, että kuvassa on osittain läpinäkyviä pikseleitä.
+	 * @return Transparency.OPAQUE, BITMASK tai TRANSLUCENT.
+	 */
+	public int getOpacity() {
+		return opacity;
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan näkymän kuvan suorakulmaiseen alueeseen (esim. taustakuvan se osa, jota
+	 * kenttäpalat eivät peitä). Näkymä ei vie lisää muistia, sillä kuvadata on yhteinen alkuperäisen kuvan kanssa.
+	 * Alue rajataan kuvan sisälle.
+	 * @param x Alueen x-koordinaatti.
+	 * @param y Alueen y-koordinaatti.
+	 * @param w Alueen leveys.
+	 * @param h Alueen korkeus.
+	 * @return Alueen Image-olio, tai null, mikäli alue on kuvan ulkopuolella.
+	 */
+	public Image getRegion(int x, int y, int w, int h) {
+
+		int x0 = Math.max(x, 0);
+		int y0 = Math.max(y, 0);
+		int x1 = Math.min(x+w, width);
+		int y1 = Math.min(y+h, height);
+
+		if (x1 <= x0 || y1 <= y0)
+			return null;
+
+		if (x0 == 0 && y0 == 0 && x1 == width && y1 == height)
+			return this;
+
+		return new Image(this, x0, y0, x1-x0, y1-y0, false);
+	}
+
+	/**
+	 * Palauttaa arvonaan vaakasuunnassa peilatun näkymän kuvaan. Näkymä ei vie lisää muistia, sillä kuvadata on
+	 * yhteinen alkuperäisen kuvan kanssa.
+	 * @return Peilattu Image-olio.
+	 */
+	Image mirrored() {
+		return new Image(this, 0, 0, width, height, true);
+	}
+
+	/**
+	 * Palauttaa arvonaan true, mikäli kuva on toisen kuvan näkymä (ks. mirrored, getRegion), jolloin sillä ei ole omaa kuvadataa.
+	 * @return True, mikäli kuva on näkymä, muuten false.
+	 */
+	boolean isView() {
+		return source != null;
+	}
+
+	/**
+	 * Palauttaa arvonaan sen atlassivun järjestysnumeron, jolla kuva sijaitsee, tai 0, mikäli kuvalla on oma
+	 * VolatileImage-olio.
+	 * @return Atlassivun järjestysnumero, tai 0.
+	 */
+	int getAtlasPage() {
+		return (region != null) ? region.page.index : 0;
 	}
 	
 	/**
-	 * Tarvitaan systeemiresurssien vapauttamiseksi, kun javan roskienkerääjä on vapauttanut ladatut kuvat.
+	 * Apumetodi, joka palauttaa arvonaan kuvan pienennetyn kopion, tai luo sen, mikäli sitä ei ole tai se on luotu
+	 * eri skaalauskertoimella. Kopio on ylöspäin pyöristetyn kokoinen, ja sillä on oma pintansa. Kuva pienennetään
+	 * lähimmän naapurin menetelmällä, joten kopio säilyttää kuvan läpinäkyvyysluokan, ja sen luominen kesken pelin
+	 * on nopeaa. Kopion resurssit on luovutettu roskienkeruulle (release), joten korvattu kopio vapautetaan, kun
+	 * siihen ei enää viitata.
+	 * @param scale Skaalauskerroin.
+	 * @return Pienennetty kopio.
 	 */
-	protected void finalize() {
+	private Image getScaled(double scale) {
+
+		if (scaled != null && scaledFactor == scale)
+			return scaled;
+
+		int w = Math.max(1, (int)Math.ceil(width * scale));
+		int h = Math.max(1, (int)Math.ceil(height * scale));
+		int sx = (region != null) ? region.x : 0;
+		int sy = (region != null) ? region.y : 0;
+
+		BufferedImage copy = new BufferedImage(w, h, (opacity == Transparency.OPAQUE) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = copy.createGraphics();
+		g.setComposite(AlphaComposite.Src);
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+		g.drawImage(heap(), 0, 0, w, h, sx, sy, sx+width, sy+height, null);
+		g.dispose();
+
+		scaled = new Image(copy);
+		scaled.release();
+		scaledFactor = scale;
+
+		return scaled;
+	}
+
+	/**
+	 * Apumetodi, joka palauttaa arvonaan kuvan kuvadatan keskusmuistista: oman kuvadatan, pinnan tiivistetyn
+	 * kuvadatan purettuna, tai atlakseen pakatun kuvan koko atlassivun (jolloin kuvan alue on region.x, region.y).
+	 * @return Kuvadata.
+	 */
+	private java.awt.Image heap() {
+
+		if (region != null)
+			return region.page.heap();
+
+		return (buffer != null) ? buffer : surface.heap();
+	}
+
+	/**
+	 * Apumetodi, joka aloittaa kuvan resurssien (oma pinta tai atlasalue) omistajan seuraamisen (ks. SurfaceManager).
+	 * @param label Kuvan kuvaus vuotoraporttia varten.
+	 */
+	private void track(String label) {
+
+		if (region != null)
+			region.track(this, label);
+		else
+			surface.track(this, label);
+	}
+
+	/**
+	 * Apumetodi, joka selvittää kuvadatan läpinäkyvyysluokan käymällä läpi sen alfakanavan. Kuvadata, jolla ei ole
+	 * alfakanavaa, on aina läpinäkymätön.
+	 * @param buffer Kuvadata.
+	 * @return Transparency.OPAQUE, BITMASK tai TRANSLUCENT.
+	 */
+	static int classify(BufferedImage buffer) {
+
+		if (buffer.getTransparency() == Transparency.OPAQUE)
+			return Transparency.OPAQUE;
+
+		int w = buffer.getWidth();
+		int h = buffer.getHeight();
+		int[] row = new int[w];
+		int opacity = Transparency.OPAQUE;
+
+		for (int y=0; y<h; y++) {
+
+			buffer.getRGB(0, y, w, 1, row, 0, w);
+
+			for (int x=0; x<w; x++) {
+				int alpha = row[x] >>> 24;
+				if (alpha == 0)
+					opacity = Transparency.BITMASK;
+				else if (alpha != 255)
+					return Transparency.TRANSLUCENT;
+			}
+		}
+
+		return opacity;
+	}
+
+	/**
+	 * Apumetodi, joka pakkaa kuvan tekstuuriatlakseen. Kuvan omasta kuvadatasta luovutaan, ja kuva luetaan
+	 * tarvittaessa atlassivulta, joten kuvadataa ei säilytetä kahteen kertaan ja sivun kuvadata voidaan tiivistää.
+	 * Liian suuret kuvat saavat oman pintansa (SurfaceManager).
+	 */
+	private void pack() {
 		
-		if (vramImg != null)
-			vramImg.flush();
+		region = TextureAtlas.add(buffer, opacity);
 		
-		if (buffer != null)
-			buffer.flush();
+		if (region == null) {
+			surface = new SurfaceManager.Surface(buffer, opacity);
+
+			// Kuvadataa tarvitaan vain vram-kopion luomiseen, joten se voidaan tiivistää
+			if (!HEADLESS && surface.compact())
+				buffer = null;
+			return;
+		}
+		
+		buffer = null;
 	}
 }
\ No newline at end of file
@@ -8,20 +8,39 @@ package pomppu.graphics;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.Transparency;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.concurrent.Callable;
 
 /**
  * Kirjastoluokka, jonka avulla luodaan kuva-oliot.
- * Kaksoiskappaleiden välttämiseksi käytetään HashMap-oliota, joka pitää kirjaa ladatuista kuva-olioista. 
+ * Kaksoiskappaleiden välttämiseksi käytetään välimuistia (AssetCache), joka pitää kirjaa ladatuista kuva-olioista.
+ * Välimuistin koko rajataan budjettiin (leveys * korkeus * 4 tavua kuvaa kohden), ja pisimpään käyttämättä olleet
+ * kuvat poistetaan välimuistista budjetin ylittyessä. Poistettua kuvaa voidaan yhä piirtää normaalisti, ja sen
+ * resurssit vapautetaan vasta, kun siihen ei enää viitata.
  * Tarkistaa virheet sisäisesti ja palauttaa arvonaan "dummy"-kuvan, mikäli kuvan lataaminen epäonnistuu. 
  * @author arkivika
  * @see pomppu.graphics.Image
  * @see pomppu.graphics.Drawable
  */
 public final class ImageFactory {
+
+	/**
+	 * Kuvavälimuistin budjetti (tavuina), mikäli sitä ei aseteta erikseen.
+	 */
+	public static final long DEFAULT_BUDGET = 32L * 1024 * 1024;
 	
-	private static HashMap<String, Image> imageMap = new HashMap<String, Image>();
+	private static AssetCache<Image> imageMap = new AssetCache<Image>(DEFAULT_BUDGET) {
+		long sizeOf(Image img) {
+			return 4L * img.getWidth() * img.getHeight();
+		}
+		void evicted(Image img) {
+			img.release();
+		}
+		void dispose(Image img) {
+			img.dispose();
+		}
+	};
 	private static Text notFound = new Text("Image not found!", "Arial", 12, Font.PLAIN, Color.RED);
 	private static int transparency = Transparency.BITMASK;
 	  
@@ -49,35 +68,101 @@ public final class ImageFactory {
 
 	/**
 	 * Aksessori, joka palauttaa arvonaan Drawable-rajapinnan toteuttavan olion (Image) annetusta tiedostopolusta.
-	 * Mikäli kuva-olio on aikaisemmin ladattu, palautetaan se automaattisesti HashMap:istä.
-	 * Jos kuva-oliota ei löydy HashMap:istä eikä annetusta tiedostopolusta, palautetaan "dummy"-Drawable-olio (Text), joka sisältää tekstin "Image not found".
+	 * Mikäli kuva-olio on aikaisemmin ladattu, palautetaan se automaattisesti välimuistista. Samaa kuvaa samanaikaisesti
+	 * pyytävät säikeet odottavat yhtä latausta.
+	 * Jos kuva-oliota ei löydy välimuistista eikä annetusta tiedostopolusta, palautetaan "dummy"-Drawable-olio (Text), joka sisältää tekstin "Image not found".
 	 * @param filepath Tiedostopolku kuvatiedostolle.
 	 * @return Image-olio, tai "dummy"-Text-olio, mikäli lataaminen epäonnistui.
 	 * @see pomppu.graphics.Image
 	 * @see pomppu.graphics.Drawable
 	 */
-	public static Drawable getImage(String filepath) {
+	public static Drawable getImage(final String filepath) {
 		
 		if (filepath == null)
 			return notFound;
-			
-		Image retImage = imageMap.get(filepath);
-	  
-		if(retImage != null)
-			return retImage;
-	  
-			try {
-				retImage = new Image(filepath);
-			}
-			catch(IOException e) {
-				System.out.println("Error! Image not found: "+ filepath + " " + e);
-				return notFound;
-			}
-	  
-		imageMap.put(filepath, retImage);
-		return retImage;
+
+		try {
+			return imageMap.get(filepath, new Callable<Image>() {
+				public Image call() throws IOException {
+					return new Image(filepath);
+				}
+			});
+		}
+		catch(IOException e) {
+			System.out.println("Error! Image not found: "+ filepath + " " + e);
+			return notFound;
+		}
 	}
   
+	/**
+	 * Aksessori, joka palauttaa arvonaan true, mikäli annettu olio on getImage-metodin epäonnistuneen latauksen
+	 * "dummy"-kuva.
+	 * @param image Tarkistettava Drawable-olio.
+	 * @return True, mikäli kuvan lataaminen epäonnistui, muuten false.
+	 */
+	public static boolean isNotFound(Drawable image) {
+		return image == notFound;
+	}
+
+	/**
+	 * Aksessori, joka luo uuden kuva-olion valmiista BufferedImage-oliosta. Kuvaa ei lisätä HashMap:iin,
+	 * vaan sen omistaa kutsuja (esimerkiksi kameran valmiiksi piirretyt kenttälohkot).
+	 * @param buffer Kuvadata.
+	 * @return Luotu Image-olio.
+	 */
+	public static Image createImage(BufferedImage buffer) {
+		return new Image(buffer);
+	}
+
+	/**
+	 * Tyhjentää ladattujen kuvien välimuistin ja vapauttaa kuvien resurssit (Image.dispose). Aiemmin palautettuja
+	 * kuvia ei tämän jälkeen tule käyttää.
+	 */
+	public static void clear() {
+		imageMap.clear();
+	}
+
+	/**
+	 * Aksessori, joka asettaa kuvavälimuistin budjetin. Mikäli välimuistissa on jo enemmän kuvia, pisimpään
+	 * käyttämättä olleet vapautetaan.
+	 * @param bytes Budjetti tavuina (> 0).
+	 */
+	public static void setBudget(long bytes) {
+		imageMap.setBudget(bytes);
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan välimuistista löytyneiden kuvapyyntöjen määrän.
+	 * @return Osumien määrä.
+	 */
+	public static long getHits() {
+		return imageMap.getHits();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan tiedostosta ladattujen kuvapyyntöjen määrän.
+	 * @return Ohitusten määrä.
+	 */
+	public static long getMisses() {
+		return imageMap.getMisses();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan budjetin vuoksi vapautettujen kuvien määrän.
+	 * @return Poistojen määrä.
+	 */
+	public static long getEvictions() {
+		return imageMap.getEvictions();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan yhteenvedon kuvavälimuistin käytöstä.
+	 * @return Yhteenveto merkkijonona.
+	 */
+	public static String getStatistics() {
+		return "Images: " + imageMap.getStatistics();
+	}
+
 	/**
 	 * Päivittää kaikkien ImageFactory:n sisältämien kuvien läpinäkyvyysarvot.
 	 */
@@ -135,6 +220,15 @@ public final class ImageFactory {
 				failedTest("Invalid dimensions for the image.");
 			System.out.println("..OK!");
 			
+			// Atlakseen pakkaaminen
+			
+			System.out.println("Testing that the loaded image was packed into the texture atlas..");
+			if (((Image)testImage).getAtlasPage() == 0 || TextureAtlas.getPageCount() != 1)
+				failedTest("The image was not packed into the first atlas page.");
+			if (!SurfaceManager.getUndisposed().contains("atlas page 1"))
+				failedTest("The atlas page is missing from the undisposed surfaces.");
+			System.out.println("..OK!");
+			
 			// Epäkelvon kuvan lataaminen
 			
 			System.out.println("Testing getImage with an invalid parameter..");
@@ -178,6 +272,64 @@ public final class ImageFactory {
 				failedTest("getTransparency didn't return the correct transparency.");
 			System.out.println("..OK!");
 
+			// Välimuistin osumat ja budjetti
+
+			System.out.println("Testing the cache counters and the budget eviction..");
+			if (getHits() != 1 || getMisses() != 2)
+				failedTest("Invalid hit/miss counters: " + getStatistics());
+			setBudget(4L * 180 * 100);
+			getImage("/resources/objects/crate.png");
+			if (getEvictions() != 1 || imageMap.size() != 1)
+				failedTest("The least recently used image was not evicted: " + getStatistics());
+			if (getImage("/resources/objects/crate.png") == notFound)
+				failedTest("The most recently loaded image was evicted.");
+			setBudget(DEFAULT_BUDGET);
+			System.out.println("..OK!");
+
+			// Läpinäkyvyysluokat ja alueet
+
+			System.out.println("Testing the opacity classification of created images..");
+			BufferedImage pixels = new BufferedImage(32, 32, BufferedImage.TYPE_INT_ARGB);
+			for (int x=0; x<32; x++)
+				for (int y=0; y<32; y++)
+					pixels.setRGB(x, y, 0xFF000000 | (x << 16) | (y << 8));
+			Image opaque = createImage(pixels);
+			pixels.setRGB(0, 0, 0x00000000);
+			Image bitmask = createImage(pixels);
+			pixels.setRGB(1, 0, 0x80FFFFFF);
+			Image translucent = createImage(pixels);
+			if (opaque.getOpacity() != Transparency.OPAQUE || bitmask.getOpacity() != Transparency.BITMASK ||
+				translucent.getOpacity() != Transparency.TRANSLUCENT)
+				failedTest("Invalid opacity classes: " + opaque.getOpacity() + ", " + bitmask.getOpacity() + ", " + translucent.getOpacity());
+			System.out.println("..OK!");
+
+			System.out.println("Testing image regions..");
+			Image region = opaque.getRegion(8, 4, 40, 8);
+			if (region == null || region.getWidth() != 24 || region.getHeight() != 8 || !region.isView() ||
+				region.getOpacity() != Transparency.OPAQUE || region.getHeapBytes() != 0)
+				failedTest("The region was not clipped into a view of the image.");
+			if (opaque.getRegion(0, 0, 32, 32) != opaque || opaque.getRegion(32, 0, 8, 8) != null)
+				failedTest("Invalid whole or empty region.");
+			BufferedImage target = new BufferedImage(24, 8, BufferedImage.TYPE_INT_ARGB);
+			java.awt.Graphics2D g = target.createGraphics();
+			region.mirrored().drawSource(g, 0, 0);
+			g.dispose();
+			if (target.getRGB(0, 0) != (0xFF000000 | (31 << 16) | (4 << 8)) || target.getRGB(23, 7) != (0xFF000000 | (8 << 16) | (11 << 8)))
+				failedTest("The mirrored region was not drawn from the right pixels.");
+			opaque.dispose();
+			bitmask.dispose();
+			translucent.dispose();
+			System.out.println("..OK!");
+
+			// Atlassivun vapauttaminen
+
+			System.out.println("Testing that an atlas page is freed with its last image..");
+			((Image)testImage).dispose();
+			clear();
+			if (TextureAtlas.getPageCount() != 0 || SurfaceManager.getHeapBytes() != 0 || !SurfaceManager.getUndisposed().isEmpty())
+				failedTest("The emptied atlas page was not freed: " + SurfaceManager.getStatistics());
+			System.out.println("..OK!");
+
 			System.out.println("Everything OK with the ImageFactory!");
 		}
 		catch (Exception e) {
@@ -0,0 +1,296 @@
+/**
+ * Sisältää luokat, jotka ovat vastuussa ikkunan luomisesta sekä kuvien
+ * lataamisesta ja niiden käsittelemisestä. Tämä paketti on käytännössä
+ * wrapperi ohjelmassa käytettävälle grafiikkakirjastolle (Swing).
+ */
+package pomppu.graphics;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+
+/**
+ * Toteuttaa Canvas-rajapinnan ilman ikkunaa. Framet piirretään kutsuvassa säikeessä näytön ulkopuoliseen
+ * BufferedImage-olioon, joten luokka toimii myös ilman näyttöä (java.awt.headless=true). Tarkoitettu piirtämisen
+ * mittaamiseen ja framejen tallentamiseen: jokaisesta framesta kirjataan piirtokomentojen määrä sekä piirtämiseen
+ * kulunut aika, ja frame voidaan tallentaa PNG-kuvaksi.
+ * @see pomppu.graphics.Canvas
+ * @see pomppu.graphics.Screen
+ * @author arkivika
+ */
+public class OffscreenScreen implements Canvas {
+
+	private BufferedImage frame;
+	private Color clrColor;
+	private DrawQueue drawList;
+	private Compositor compositor;
+
+	private int frames, drawCount, maxDrawCount;
+	private long totalDrawCount, totalRenderTime, maxRenderTime;
+
+	/**
+	 * Konstruktori, joka luo annetun kokoisen näytön ulkopuolisen piirtoalustan.
+	 * @param width Sisäisen resoluution leveys.
+	 * @param height Sisäisen resoluution korkeus.
+	 */
+	public OffscreenScreen(int width, int height) {
+
+		drawList = new DrawQueue();
+		compositor = new Compositor(width, height);
+		frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		clrColor = new Color(0, 0, 0);
+
+		resetStatistics();
+	}
+
+	/**
+	 * Aksessori, joka tyhjentää piirrettävien elementtien välittömän jonon. Pysyvät kerrokset säilyvät.
+	 */
+	public void clear() {
+		drawList.clear();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan sisäisen resoluution leveyden.
+	 */
+	public int getWidth() {
+		return compositor.getWidth();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan sisäisen resoluution korkeuden.
+	 */
+	public int getHeight() {
+		return compositor.getHeight();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan vaakasuuntaisen skaalauskertoimen.
+	 * @return Kuvan leveys jaettuna sisäisen resoluution leveydellä.
+	 */
+	public double getScaleX() {
+		return (double)frame.getWidth() / compositor.getWidth();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan pystysuuntaisen skaalauskertoimen.
+	 * @return Kuvan korkeus jaettuna sisäisen resoluution korkeudella.
+	 */
+	public double getScaleY() {
+		return (double)frame.getHeight() / compositor.getHeight();
+	}
+
+	/**
+	 * Aksessori, joka asettaa skaalauksessa käytettävän interpolointitavan.
+	 * @param interpolation Canvas.SCALE_NEAREST, Canvas.SCALE_BILINEAR tai Canvas.SCALE_BICUBIC.
+	 */
+	public void setInterpolation(int interpolation) {
+		compositor.setInterpolation(interpolation);
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan skaalauksessa käytettävän interpolointitavan.
+	 * @return Interpolointitapa.
+	 */
+	public int getInterpolation() {
+		return compositor.getInterpolation();
+	}
+
+	/**
+	 * Aksessori, joka piirtää taustan sekä jonossa olevat piirrettävät elementit kuvaan kutsuvassa säikeessä ja
+	 * kirjaa framen piirtokomentojen määrän sekä piirtämiseen kuluneen ajan.
+	 */
+	public void draw() {
+
+		drawList.publish();
+		DrawBuffer elements = drawList.acquire();
+
+		Graphics2D g = frame.createGraphics();
+		compositor.render(g, elements, drawList.getOverlayStart(), clrColor, frame.getWidth(), frame.getHeight());
+		g.dispose();
+
+		long time = compositor.getRenderTime();
+
+		drawCount = elements.size();
+		maxDrawCount = Math.max(maxDrawCount, drawCount);
+		totalDrawCount += drawCount;
+		maxRenderTime = Math.max(maxRenderTime, time);
+		totalRenderTime += time;
+		frames++;
+	}
+
+	/**
+	 * Aksessori, joka piirtää koko framen. Kuva piirretään aina kokonaan, jotta mittaukset ovat vertailukelpoisia.
+	 * @param area Päivitettävä alue (ei huomioida).
+	 */
+	public void draw(Rectangle area) {
+		draw();
+	}
+
+	/**
+	 * Aksessori, joka lisää elementin piirrettävien elementtien jonoon.
+	 * @param elem Piirrettävä elementti.
+	 */
+	public void addElement(VisibleElement elem) {
+		drawList.add(elem.getDrawable(), elem.getX(), elem.getY());
+	}
+
+	/**
+	 * Aksessori, joka lisää piirtokomennon piirrettävien elementtien jonoon luomatta uutta oliota.
+	 * @param drawable Piirrettävä Drawable-rajapinnan toteuttava olio.
+	 * @param x Elementin x-koordinaatti.
+	 * @param y Elementin y-koordinaatti.
+	 */
+	public void addElement(Drawable drawable, int x, int y) {
+		drawList.add(drawable, x, y);
+	}
+
+	/**
+	 * Aksessori, joka lisää puskurin piirtokomennot piirrettävien elementtien jonoon.
+	 * @param buffer Lisättävät piirtokomennot.
+	 */
+	public void addElements(DrawBuffer buffer) {
+		drawList.addAll(buffer);
+	}
+
+	/**
+	 * Aksessori, joka korvaa pysyvän piirtokerroksen sisällön. Kerrokset säilyvät framesta toiseen ja
+	 * piirretään indeksijärjestyksessä ennen välitöntä jonoa.
+	 * @param index Kerroksen indeksi.
+	 * @param contents Kerroksen uudet piirtokomennot.
+	 */
+	public void setLayer(int index, DrawBuffer contents) {
+		drawList.setLayer(index, contents);
+	}
+
+	/**
+	 * Aksessori, joka poistaa num-määrän elementtejä piirrettävän jonon lopusta.
+	 * @param num Poistettavien elementtien määrä.
+	 */
+	public void clearTop(int num) {
+		drawList.removeLast(num);
+	}
+
+	/**
+	 * Aksessori, joka asettaa kuvan koon. Sisäinen resoluutio säilyy ennallaan, ja frame skaalataan kuvan kokoon.
+	 * @param _d Dimension-olio, joka sisältää uuden koon.
+	 */
+	public void setSize(Dimension _d) {
+		if (_d.width > 0 && _d.height > 0)
+			frame = new BufferedImage(_d.width, _d.height, BufferedImage.TYPE_INT_RGB);
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan ikkunan reunojen mitat. Ikkunaa ei ole, joten reunoja ei ole.
+	 * @return Nollakokoinen Dimension-olio.
+	 */
+	public Dimension getInsets() {
+		return new Dimension(0, 0);
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan komponentin, jolta syötteet luetaan. Ikkunaa ei ole, joten syötteitä ei ole.
+	 * @return null.
+	 */
+	public Component getInputComponent() {
+		return null;
+	}
+
+	/**
+	 * Aksessori, joka asettaa ensimmäisen päällyskerroksen (esim. GUI). Tätä pienemmät kerrokset ovat pelimaailmaa.
+	 * @param index Ensimmäisen päällyskerroksen indeksi.
+	 */
+	public void setOverlayLayer(int index) {
+		drawList.setOverlayLayer(index);
+	}
+
+	/**
+	 * Aksessori, joka asettaa pelimaailman kerrosten piirtoresoluution suhteessa sisäiseen resoluutioon.
+	 * @param scale Skaalauskerroin väliltä ]0, 1].
+	 */
+	public void setWorldScale(double scale) {
+		compositor.setWorldScale(scale);
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan pelimaailman kerrosten piirtoresoluution suhteessa sisäiseen resoluutioon.
+	 * @return Skaalauskerroin.
+	 */
+	public double getWorldScale() {
+		return compositor.getWorldScale();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan viimeisimmän framen piirtämiseen kuluneen ajan.
+	 * @return Piirtämiseen kulunut aika nanosekunteina.
+	 */
+	public long getRenderTime() {
+		return compositor.getRenderTime();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan viimeisimmän framen julkaisusta sen lukemiseen kuluneen ajan.
+	 * @return Julkaisusta lukemiseen kulunut aika nanosekunteina.
+	 */
+	public long getQueueLatency() {
+		return drawList.getLatency();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan viimeisimmän framen piirtokomentojen määrän.
+	 * @return Piirtokomentojen määrä.
+	 */
+	public int getDrawCount() {
+		return drawCount;
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan piirrettyjen framejen määrän edellisen resetStatistics-kutsun jälkeen.
+	 * @return Framejen määrä.
+	 */
+	public int getFrameCount() {
+		return frames;
+	}
+
+	/**
+	 * Aksessori, joka nollaa framejen piirtokomentojen ja piirtoaikojen tilastot.
+	 */
+	public void resetStatistics() {
+		frames = drawCount = maxDrawCount = 0;
+		totalDrawCount = totalRenderTime = maxRenderTime = 0;
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan yhteenvedon piirrettyjen framejen piirtokomennoista ja piirtoajoista.
+	 * @return Yhteenveto merkkijonona.
+	 */
+	public String getStatistics() {
+
+		if (frames == 0)
+			return "No frames drawn";
+
+		return frames + " frames, draw calls avg " + (totalDrawCount/frames) + " max " + maxDrawCount +
+			", render time avg " + (totalRenderTime/frames/1000) + " us max " + (maxRenderTime/1000) + " us";
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan kuvan, johon viimeisin frame on piirretty.
+	 * @return Frame BufferedImage-oliona.
+	 */
+	public BufferedImage getImage() {
+		return frame;
+	}
+
+	/**
+	 * Aksessori, joka tallentaa viimeisimmän framen PNG-kuvaksi.
+	 * @param file Tiedosto, johon frame tallennetaan.
+	 * @throws IOException Heitetään, mikäli tallentaminen epäonnistuu.
+	 */
+	public void saveFrame(File file) throws IOException {
+
+		if (!ImageIO.write(frame, "png", file))
+			throw new IOException("Error! No PNG writer available!");
+	}
+}
@@ -8,7 +8,6 @@ package pomppu.graphics;
 import javax.swing.*;
 
 import java.awt.*;
-import java.util.*;
 
 /**
  * Toteuttaa Canvas-rajapinnan Java2D kirjastolla.
@@ -36,24 +35,16 @@ public class Screen implements Canvas {
 		private static final long serialVersionUID = 1L;
 
 		/**
-		 * Piirtää taustan sekä jonossa olevat piirrettävät elementit. 
+		 * Piirtää taustan sekä jonossa olevat piirrettävät elementit sisäisessä resoluutiossa ja skaalaa ne
+		 * piirtoalustan kokoon.
 		 */
 		public void paintComponent(Graphics graphics) {
 
 			super.paintComponents(graphics);
 			Graphics2D g = (Graphics2D)graphics;
 			
-			g.setColor(clrColor);
-			g.fillRect(0, 0, frame.getWidth(), frame.getHeight());
-
-			synchronized(canvas) {
- 
-				for (VisibleElement elem : drawList) {
-				
-					Drawable drawable = elem.getDrawable();
-					drawable.draw(g, elem.getX(), elem.getY());
-				}
-			}
+			DrawBuffer elements = drawList.acquire();
+			compositor.render(g, elements, drawList.getOverlayStart(), clrColor, getWidth(), getHeight());
 			
 			g.dispose();
 		}
@@ -62,7 +53,8 @@ public class Screen implements Canvas {
 	private JFrame frame;
 	
 	private Color clrColor; 	
-	private LinkedList<VisibleElement> drawList;
+	private DrawQueue drawList;
+	private Compositor compositor;
 	private InternalCanvas canvas;
 
 	/**
@@ -75,7 +67,8 @@ public class Screen implements Canvas {
 	 */
 	public Screen(int width, int height, boolean fullscreen, String title, JFrame _frame) {
 	
-		drawList = new LinkedList<VisibleElement>();
+		drawList = new DrawQueue();
+		compositor = new Compositor(width, height);
 
 		frame = _frame;
 
@@ -84,10 +77,12 @@ public class Screen implements Canvas {
 		canvas.setDoubleBuffered(true);
 		
 		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-		frame.setSize(width, height);
 		frame.setTitle(title);
 
+		// Ikkunan koko määräytyy piirtoalustan koon mukaan, jotta piirtoalue vastaa sisäistä resoluutiota
+		canvas.setPreferredSize(new Dimension(width, height));
 		frame.add(canvas);
+		frame.pack();
 		
 		frame.setResizable(false);
 		frame.setVisible(true);
@@ -96,63 +91,134 @@ public class Screen implements Canvas {
 	}
 	
 	/**
-	 * Aksessori, joka tyhjentää piirrettävien elementtien jonon.
+	 * Aksessori, joka tyhjentää piirrettävien elementtien välittömän jonon. Pysyvät kerrokset säilyvät.
 	 */
 	public void clear() {
-
-		synchronized(canvas) {
-			drawList.clear();
-		}
+		drawList.clear();
 	}
 	
 	/**
-	 * Aksessori, joka joka palauttaa arvonaan frame:n leveyden.	
+	 * Aksessori, joka palauttaa arvonaan sisäisen resoluution leveyden.
 	 */
 	public int getWidth() {
-		return frame.getWidth();
+		return compositor.getWidth();
 	}
 
 	/**
-	 * Aksessori, joka joka palauttaa arvonaan frame:n korkeuden.	
+	 * Aksessori, joka palauttaa arvonaan sisäisen resoluution korkeuden.
 	 */
 	public int getHeight() {
-		return frame.getHeight();
+		return compositor.getHeight();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan vaakasuuntaisen skaalauskertoimen.
+	 * @return Piirtoalustan leveys jaettuna sisäisen resoluution leveydellä.
+	 */
+	public double getScaleX() {
+		return (canvas.getWidth() > 0) ? (double)canvas.getWidth() / compositor.getWidth() : 1.0;
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan pystysuuntaisen skaalauskertoimen.
+	 * @return Piirtoalustan korkeus jaettuna sisäisen resoluution korkeudella.
+	 */
+	public double getScaleY() {
+		return (canvas.getHeight() > 0) ? (double)canvas.getHeight() / compositor.getHeight() : 1.0;
+	}
+
+	/**
+	 * Aksessori, joka asettaa skaalauksessa käytettävän interpolointitavan.
+	 * @param interpolation Canvas.SCALE_NEAREST, Canvas.SCALE_BILINEAR tai Canvas.SCALE_BICUBIC.
+	 */
+	public void setInterpolation(int interpolation) {
+		compositor.setInterpolation(interpolation);
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan skaalauksessa käytettävän interpolointitavan.
+	 * @return Interpolointitapa.
+	 */
+	public int getInterpolation() {
+		return compositor.getInterpolation();
 	}
 	
 	/**
-	 * Aksessori, joka piirtää taustan sekä jonossa olevat piirrettävät elementit. 
+	 * Aksessori, joka julkaisee jonossa olevat piirrettävät elementit ja pyytää Swingiä piirtämään ne. 
 	 */
 	public void draw() {
+		drawList.publish();
 		canvas.repaint();
 	}
 
+	/**
+	 * Aksessori, joka julkaisee jonossa olevat piirrettävät elementit ja pyytää Swingiä piirtämään
+	 * uudelleen vain annetun alueen.
+	 * @param area Päivitettävä alue.
+	 */
+	public void draw(Rectangle area) {
+		
+		drawList.publish();
+		
+		// Alue annetaan sisäisessä resoluutiossa, joten se skaalataan piirtoalustan koordinaatistoon
+		double sx = getScaleX();
+		double sy = getScaleY();
+		int x = (int)Math.floor(area.x * sx);
+		int y = (int)Math.floor(area.y * sy);
+		canvas.repaint(x, y, (int)Math.ceil((area.x + area.width) * sx) - x + 1, (int)Math.ceil((area.y + area.height) * sy) - y + 1);
+	}
+
 	/**
 	 * Aksessori, joka lisää elementin piirrettävien elementtien jonoon.
 	 * @param elem Piirrettävä elementti.
 	 */
 	public void addElement(VisibleElement elem) {
-		synchronized(canvas) {
-			drawList.addLast(elem);
-		}
+		drawList.add(elem.getDrawable(), elem.getX(), elem.getY());
+	}
+
+	/**
+	 * Aksessori, joka lisää piirtokomennon piirrettävien elementtien jonoon luomatta uutta oliota.
+	 * @param drawable Piirrettävä Drawable-rajapinnan toteuttava olio.
+	 * @param x Elementin x-koordinaatti.
+	 * @param y Elementin y-koordinaatti.
+	 */
+	public void addElement(Drawable drawable, int x, int y) {
+		drawList.add(drawable, x, y);
+	}
+
+	/**
+	 * Aksessori, joka lisää puskurin piirtokomennot piirrettävien elementtien jonoon.
+	 * @param buffer Lisättävät piirtokomennot.
+	 */
+	public void addElements(DrawBuffer buffer) {
+		drawList.addAll(buffer);
 	}
 	
+	/**
+	 * Aksessori, joka korvaa pysyvän piirtokerroksen sisällön. Kerrokset säilyvät framesta toiseen ja
+	 * piirretään indeksijärjestyksessä ennen välitöntä jonoa.
+	 * @param index Kerroksen indeksi.
+	 * @param contents Kerroksen uudet piirtokomennot.
+	 */
+	public void setLayer(int index, DrawBuffer contents) {
+		drawList.setLayer(index, contents);
+	}
+
 	/**
 	 * Aksessori, joka poistaa num-määrän elementtejä piirrettävän jonon alusta.
 	 * @param num Poistettavien elementtien määrä.
 	 */
 	public void clearTop(int num) {
-		synchronized(canvas) {
-			for (int i=0; i<num; i++)
-				drawList.removeLast();
-		}
+		drawList.removeLast(num);
 	}
 	
 	/**
-	 * Aksessori, joka asettaa ikkunan koon, ts. resoluution.
+	 * Aksessori, joka asettaa ikkunan piirtoalueen koon. Sisäinen resoluutio säilyy ennallaan.
 	 * @param _d Dimension-olio, joka sisältää uuden koon.
 	 */
 	public void setSize(Dimension _d) {
-		frame.setSize(_d);
+		canvas.setPreferredSize(_d);
+		frame.pack();
 	}
 	
 	/**
@@ -168,4 +234,52 @@ public class Screen implements Canvas {
 		
 		return insets;
 	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan komponentin, jolta näppäimistön ja hiiren syötteet luetaan.
+	 * @return Ikkuna (JFrame).
+	 */
+	public Component getInputComponent() {
+		return frame;
+	}
+
+	/**
+	 * Aksessori, joka asettaa ensimmäisen päällyskerroksen (esim. GUI). Tätä pienemmät kerrokset ovat pelimaailmaa.
+	 * @param index Ensimmäisen päällyskerroksen indeksi.
+	 */
+	public void setOverlayLayer(int index) {
+		drawList.setOverlayLayer(index);
+	}
+
+	/**
+	 * Aksessori, joka asettaa pelimaailman kerrosten piirtoresoluution suhteessa sisäiseen resoluutioon.
+	 * @param scale Skaalauskerroin väliltä ]0, 1].
+	 */
+	public void setWorldScale(double scale) {
+		compositor.setWorldScale(scale);
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan pelimaailman kerrosten piirtoresoluution suhteessa sisäiseen resoluutioon.
+	 * @return Skaalauskerroin.
+	 */
+	public double getWorldScale() {
+		return compositor.getWorldScale();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan viimeisimmän framen piirtämiseen kuluneen ajan.
+	 * @return Piirtämiseen kulunut aika nanosekunteina.
+	 */
+	public long getRenderTime() {
+		return compositor.getRenderTime();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan viimeisimmän framen julkaisusta sen lukemiseen kuluneen ajan.
+	 * @return Julkaisusta lukemiseen kulunut aika nanosekunteina.
+	 */
+	public long getQueueLatency() {
+		return drawList.getLatency();
+	}
 }
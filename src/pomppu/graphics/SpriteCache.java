@@ -0,0 +1,466 @@
+/**
+ * Sisältää luokat, jotka ovat vastuussa ikkunan luomisesta sekä kuvien
+ * lataamisesta ja niiden käsittelemisestä. Tämä paketti on käytännössä
+ * wrapperi ohjelmassa käytettävälle grafiikkakirjastolle (Swing).
+ */
+package pomppu.graphics;
+
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import javax.imageio.ImageIO;
+
+/**
+ * Levylle tallennettu välimuisti puretuille kuville. Kuvatiedosto puretaan (ImageIO) ja pilkotaan kehyksiksi vain
+ * ensimmäisellä kerralla; valmiit ARGB-kehykset tallennetaan välimuistihakemistoon, ja seuraavilla kerroilla ne
+ * luetaan muistiinkuvatun (memory-mapped) FileChannel-olion kautta suoraan kuvien rasteripuskureihin.<br><br>
+ * Välimuistitiedosto yksilöidään resurssin tiedostopolulla sekä pilkkomisen parametreilla, ja sen otsakkeeseen
+ * tallennetaan kuvatiedoston sisällön tiiviste (MD5). Mikäli kuvatiedosto on muuttunut, välimuistitiedosto on
+ * vanhentunut ja se kirjoitetaan uudelleen.<br><br>
+ * Kehykset tallennetaan ryhminä (esim. animaatiotaulun rivit). Kehysten kuvatyyppi on TYPE_INT_ARGB, tai
+ * TYPE_INT_RGB läpinäkymättömille kuville.
+ * @see pomppu.graphics.Image
+ * @see pomppu.graphics.AnimationFactory
+ * @author arkivika
+ */
+public final class SpriteCache {
+
+	/**
+	 * Välimuistitiedoston tunniste ("PSPR").
+	 */
+	static final int MAGIC = 0x50535052;
+
+	/**
+	 * Välimuistitiedoston muodon versio. Kasvatetaan, mikäli muoto tai pilkkominen muuttuu.
+	 */
+	static final int VERSION = 1;
+
+	/**
+	 * Kuvatiedoston purkaja, joka pilkkoo puretun kuvan kehysryhmiksi. Kutsutaan vain, mikäli välimuistitiedostoa
+	 * ei ole tai se on vanhentunut.
+	 * @author arkivika
+	 */
+	interface Decoder {
+
+		/**
+		 * Pilkkoo puretun kuvan kehysryhmiksi.
+		 * @param source Purettu kuvatiedosto.
+		 * @return Kehysryhmät.
+		 */
+		BufferedImage[][] decode(BufferedImage source);
+	}
+
+	private static File directory = defaultDirectory();
+	private static long hits = 0, misses = 0, failures = 0;
+
+	/**
+	 * Estää olioiden luomisen, kaikki metodit ovat staattisia.
+	 */
+	private SpriteCache() {
+	}
+
+	/**
+	 * Aksessori, joka asettaa välimuistihakemiston.
+	 * @param dir Välimuistihakemisto, tai null, mikäli välimuisti halutaan pois käytöstä.
+	 */
+	public static synchronized void setDirectory(File dir) {
+		directory = dir;
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan välimuistihakemiston.
+	 * @return Välimuistihakemisto, tai null, mikäli välimuisti ei ole käytössä.
+	 */
+	public static synchronized File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan yhteenvedon välimuistin käytöstä.
+	 * @return Yhteenveto merkkijonona.
+	 */
+	public static synchronized String getStatistics() {
+		return "Sprite cache " + ((directory == null) ? "disabled" : directory.getPath()) + ": " +
+			hits + " hits, " + misses + " decoded, " + failures + " write failures";
+	}
+
+	/**
+	 * Palauttaa arvonaan kuvatiedoston kehysryhmät. Kehykset luetaan välimuistitiedostosta, mikäli se on ajan
+	 * tasalla; muuten kuvatiedosto puretaan ja pilkotaan annetulla purkajalla, ja tulos tallennetaan välimuistiin.
+	 * @param filepath Tiedostopolku kuvatiedostolle.
+	 * @param params Pilkkomisen parametrit (esim. kehyksen koko), jotka erottavat saman kuvan eri pilkkomistavat.
+	 * @param decoder Kuvatiedoston purkaja.
+	 * @return Kehysryhmät.
+	 * @throws IOException Heitetään, mikäli kuvatiedostoa ei löydy tai sitä ei voida purkaa.
+	 */
+	static BufferedImage[][] load(String filepath, String params, Decoder decoder) throws IOException {
+
+		URL url = (filepath == null) ? null : SpriteCache.class.getResource(filepath);
+
+		if (url == null)
+			throw new IOException("Error! File not found: " + filepath);
+
+		byte[] data = readAll(url);
+		byte[] hash = digest(data);
+
+		File dir = getDirectory();
+		File file = (dir == null) ? null : new File(dir, toHex(digest((filepath + "|" + params).getBytes("UTF-8"))) + ".spr");
+
+		if (file != null && file.isFile()) {
+
+			BufferedImage[][] frames = read(file, hash);
+
+			if (frames != null) {
+				synchronized (SpriteCache.class) {
+					hits++;
+				}
+				return frames;
+			}
+		}
+
+		BufferedImage source = ImageIO.read(new ByteArrayInputStream(data));
+		if (source == null)
+			throw new IOException("Error! Unsupported image format: " + filepath);
+
+		BufferedImage[][] frames = decoder.decode(source);
+		for (BufferedImage[] group : frames)
+			for (int i=0; i<group.length; i++)
+				group[i] = normalize(group[i]);
+
+		synchronized (SpriteCache.class) {
+			misses++;
+		}
+
+		if (file != null) {
+			try {
+				write(file, hash, frames);
+			}
+			catch (IOException e) {
+				synchronized (SpriteCache.class) {
+					failures++;
+				}
+				System.out.println("Warning! Couldn't write sprite cache: " + file + " " + e);
+			}
+		}
+
+		return frames;
+	}
+
+	/**
+	 * Apumetodi, joka lukee välimuistitiedoston muistiinkuvattuna. Pikselit kopioidaan suoraan kehysten
+	 * rasteripuskureihin.
+	 * @param file Välimuistitiedosto.
+	 * @param hash Kuvatiedoston sisällön tiiviste.
+	 * @return Kehysryhmät, tai null, mikäli tiedosto on vanhentunut tai virheellinen.
+	 */
+	private static BufferedImage[][] read(File file, byte[] hash) {
+
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			ByteBuffer buffer;
+
+			try {
+				FileChannel channel = raf.getChannel();
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+			finally {
+				raf.close();
+			}
+
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+				return null;
+
+			byte[] stored = new byte[hash.length];
+			buffer.get(stored);
+			if (!Arrays.equals(stored, hash))
+				return null;
+
+			BufferedImage[][] frames = new BufferedImage[buffer.getInt()][];
+
+			for (int i=0; i<frames.length; i++) {
+
+				frames[i] = new BufferedImage[buffer.getInt()];
+
+				for (int j=0; j<frames[i].length; j++) {
+
+					int width = buffer.getInt();
+					int height = buffer.getInt();
+					int type = buffer.getInt();
+
+					if (type != BufferedImage.TYPE_INT_ARGB && type != BufferedImage.TYPE_INT_RGB)
+						return null;
+
+					BufferedImage frame = new BufferedImage(width, height, type);
+					int[] pixels = ((DataBufferInt)frame.getRaster().getDataBuffer()).getData();
+
+					IntBuffer ints = buffer.slice().asIntBuffer();
+					ints.get(pixels, 0, width * height);
+					buffer.position(buffer.position() + 4 * width * height);
+
+					frames[i][j] = frame;
+				}
+			}
+
+			return frames;
+		}
+		catch (IOException e) {
+			return null;
+		}
+		catch (RuntimeException e) {
+			// Katkennut tai muuten virheellinen tiedosto
+			return null;
+		}
+	}
+
+	/**
+	 * Apumetodi, joka kirjoittaa kehysryhmät välimuistitiedostoon. Tiedosto kirjoitetaan ensin väliaikaiseksi
+	 * ja nimetään lopuksi uudelleen, joten keskeneräistä tiedostoa ei koskaan lueta.
+	 * @param file Välimuistitiedosto.
+	 * @param hash Kuvatiedoston sisällön tiiviste.
+	 * @param frames Tallennettavat kehysryhmät.
+	 * @throws IOException Heitetään, mikäli kirjoittaminen epäonnistuu.
+	 */
+	private static void write(File file, byte[] hash, BufferedImage[][] frames) throws IOException {
+
+		int size = 12 + hash.length;
+		for (BufferedImage[] group : frames) {
+			size += 4;
+			for (BufferedImage frame : group)
+				size += 12 + 4 * frame.getWidth() * frame.getHeight();
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putInt(MAGIC).putInt(VERSION).put(hash).putInt(frames.length);
+
+		for (BufferedImage[] group : frames) {
+
+			buffer.putInt(group.length);
+
+			for (BufferedImage frame : group) {
+
+				buffer.putInt(frame.getWidth()).putInt(frame.getHeight()).putInt(frame.getType());
+
+				int[] pixels = ((DataBufferInt)frame.getRaster().getDataBuffer()).getData();
+				buffer.asIntBuffer().put(pixels, 0, frame.getWidth() * frame.getHeight());
+				buffer.position(buffer.position() + 4 * frame.getWidth() * frame.getHeight());
+			}
+		}
+
+		buffer.flip();
+
+		File dir = file.getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException("Error! Couldn't create directory: " + dir);
+
+		File temp = File.createTempFile("sprite", ".tmp", dir);
+		FileOutputStream out = new FileOutputStream(temp);
+
+		try {
+			FileChannel channel = out.getChannel();
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		}
+		finally {
+			out.close();
+		}
+
+		file.delete();
+		if (!temp.renameTo(file)) {
+			temp.delete();
+			throw new IOException("Error! Couldn't rename " + temp + " to " + file);
+		}
+	}
+
+	/**
+	 * Apumetodi, joka muuntaa kehyksen TYPE_INT_ARGB-muotoon (tai TYPE_INT_RGB-muotoon, mikäli kehys on
+	 * läpinäkymätön) omaan rasteripuskuriinsa.
+	 * @param frame Muunnettava kehys.
+	 * @return Muunnettu kehys.
+	 */
+	private static BufferedImage normalize(BufferedImage frame) {
+
+		int type = (frame.getTransparency() == Transparency.OPAQUE) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+
+		BufferedImage copy = new BufferedImage(frame.getWidth(), frame.getHeight(), type);
+		Graphics2D g = copy.createGraphics();
+		g.drawImage(frame, 0, 0, null);
+		g.dispose();
+
+		return copy;
+	}
+
+	/**
+	 * Apumetodi, joka lukee resurssin sisällön kokonaan.
+	 * @param url Resurssin sijainti.
+	 * @return Resurssin sisältö.
+	 * @throws IOException Heitetään, mikäli lukeminen epäonnistuu.
+	 */
+	private static byte[] readAll(URL url) throws IOException {
+
+		InputStream in = url.openStream();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		try {
+			byte[] chunk = new byte[8192];
+			int n;
+			while ((n = in.read(chunk)) != -1)
+				out.write(chunk, 0, n);
+		}
+		finally {
+			in.close();
+		}
+
+		return out.toByteArray();
+	}
+
+	/**
+	 * Apumetodi, joka laskee annetun datan MD5-tiivisteen.
+	 * @param data Data.
+	 * @return Tiiviste.
+	 */
+	private static byte[] digest(byte[] data) {
+
+		try {
+			return MessageDigest.getInstance("MD5").digest(data);
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("Error! MD5 not available: " + e);
+		}
+	}
+
+	/**
+	 * Apumetodi, joka muuntaa tavut heksadesimaalimerkkijonoksi.
+	 * @param bytes Tavut.
+	 * @return Heksadesimaalimerkkijono.
+	 */
+	private static String toHex(byte[] bytes) {
+
+		StringBuilder sb = new StringBuilder();
+		for (byte b : bytes)
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+
+		return sb.toString();
+	}
+
+	/**
+	 * Apumetodi, joka palauttaa arvonaan oletusarvoisen välimuistihakemiston. Hakemiston voi asettaa
+	 * järjestelmäominaisuudella "pomppu.spritecache"; arvo "none" ottaa välimuistin pois käytöstä.
+	 * @return Välimuistihakemisto, tai null.
+	 */
+	private static File defaultDirectory() {
+
+		String dir = System.getProperty("pomppu.spritecache");
+
+		if (dir == null)
+			return new File(System.getProperty("java.io.tmpdir"), "pomppu-sprites");
+		if (dir.equals("none"))
+			return null;
+
+		return new File(dir);
+	}
+
+	/**
+	 * Testipäämetodi, jonka avulla varmistutaan siitä, että luokka toimii kuten sen pitäisi. Tulostaa jokaisen testin sekä sen tuloksen.
+	 * @param args Ei huomioida tässä.
+	 */
+	public static void main(String[] args) {
+
+		try {
+
+			File dir = new File(System.getProperty("java.io.tmpdir"), "pomppu-sprites-test-" + System.nanoTime());
+			setDirectory(dir);
+
+			Decoder whole = new Decoder() {
+				public BufferedImage[][] decode(BufferedImage source) {
+					return new BufferedImage[][] { { source } };
+				}
+			};
+
+			// Ensimmäinen lataus puretaan ja tallennetaan
+
+			System.out.println("Testing the first load of an image..");
+			BufferedImage[][] first = load("/resources/player/player.png", "image", whole);
+			if (first.length != 1 || first[0].length != 1 || first[0][0].getWidth() != 180 || first[0][0].getHeight() != 100)
+				failedTest("Invalid frames for the decoded image.");
+			if (misses != 1 || hits != 0 || dir.list() == null || dir.list().length != 1)
+				failedTest("The decoded image was not written to the cache.");
+			System.out.println("..OK!");
+
+			// Toinen lataus luetaan välimuistista
+
+			System.out.println("Testing the cached load of the same image..");
+			BufferedImage[][] second = load("/resources/player/player.png", "image", whole);
+			if (hits != 1 || misses != 1)
+				failedTest("The image was not read from the cache.");
+			if (second[0][0].getType() != first[0][0].getType())
+				failedTest("The cached frame type differs from the decoded one.");
+			for (int y=0; y<100; y++)
+				for (int x=0; x<180; x++)
+					if (second[0][0].getRGB(x, y) != first[0][0].getRGB(x, y))
+						failedTest("The cached pixels differ from the decoded ones at " + x + "," + y + ".");
+			System.out.println("..OK!");
+
+			// Eri parametrit tallennetaan eri tiedostoon
+
+			System.out.println("Testing a different slicing of the same image..");
+			load("/resources/player/player.png", "other", whole);
+			if (misses != 2 || dir.list().length != 2)
+				failedTest("Different parameters shared a cache file.");
+			System.out.println("..OK!");
+
+			// Vanhentunut välimuistitiedosto
+
+			System.out.println("Testing that a stale cache file is rejected..");
+			byte[] wrong = new byte[16];
+			for (File file : dir.listFiles())
+				if (read(file, wrong) != null)
+					failedTest("A cache file with a different hash was accepted.");
+			System.out.println("..OK!");
+
+			// Epäkelpo kuvatiedosto
+
+			System.out.println("Trying to load a missing image..");
+			try {
+				load("/reso6543urces/234player/pla234yer.png", "image", whole);
+				failedTest("Loaded an image that doesn't exist!");
+			}
+			catch (IOException e) {
+				System.out.println("..OK!");
+			}
+
+			for (File file : dir.listFiles())
+				file.delete();
+			dir.delete();
+
+			System.out.println("Everything OK with the SpriteCache!");
+		}
+		catch (Exception e) {
+			failedTest("Unknown exception: " + e);
+		}
+	}
+
+	/**
+	 * Apumetodi, joka tulostaa pieleen menneen testin sekä lopettaa ohjelman suorittamisen.
+	 * @param test Pieleen mennyt testi.
+	 */
+	private static void failedTest(String test) {
+
+		System.out.println("TEST FAILED: " + test);
+		System.exit(0);
+	}
+}
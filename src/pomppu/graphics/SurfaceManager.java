@@ -0,0 +1,803 @@
+/**
+ * Sisältää luokat, jotka ovat vastuussa ikkunan luomisesta sekä kuvien
+ * lataamisesta ja niiden käsittelemisestä. Tämä paketti on käytännössä
+ * wrapperi ohjelmassa käytettävälle grafiikkakirjastolle (Swing).
+ */
+package pomppu.graphics;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.io.ByteArrayOutputStream;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Kiihdytettyjen pintojen (VolatileImage) hallinta. Jokaisella pinnalla (Surface) on kuvadata keskusmuistissa, ja
+ * sen vram-kopio luodaan vasta, kun pinta piirretään. Vram:issa olevien pintojen yhteiskoko rajataan budjettiin:
+ * mikäli uusi pinta ei mahdu, pisimpään piirtämättä olleiden pintojen vram-kopiot vapautetaan ("evict"). Vapautettu
+ * pinta siirretään uudelleen vram:iin, kun se seuraavan kerran piirretään. Mikäli vram-kopion sisältö katoaa
+ * toistuvasti, pinta piirretään sillä kertaa keskusmuistista.<br><br>
+ * Hallinta kirjaa vapautukset, palautukset sekä kadonneet sisällöt (contentsLost).<br><br>
+ * Pinnan omistaja (esim. Image) vapauttaa pinnan dispose-kutsulla. Omistajaa seurataan lisäksi haamuviittauksella
+ * (PhantomReference): mikäli omistaja kerätään roskana vapauttamatta pintaa, taustasäie vapauttaa pinnan ja kirjaa
+ * sen vuodoksi. Samaa seurantaa käytetään atlasalueille (TextureAtlas.Region).<br><br>
+ * Pinnan kuvadataa tarvitaan keskusmuistissa vain vram-kopion luomiseen ja palauttamiseen. Läpinäkymättömien ja
+ * BITMASK-kuvien kuvadata voidaan tiivistää (compact): enintään 256-värinen kuva tallennetaan palettikuvana
+ * (TYPE_BYTE_INDEXED), muut pakataan (Deflater) ja puretaan vasta, kun vram-kopio luodaan tai sen sisältö on
+ * kadonnut. Hallinta kirjaa pintojen kuvadatan yhteiskoon sekä koon ilman tiivistämistä.
+ * @see pomppu.graphics.Image
+ * @see pomppu.graphics.TextureAtlas
+ * @author arkivika
+ */
+public final class SurfaceManager {
+
+	/**
+	 * Vram-budjetti (tavuina), mikäli sitä ei aseteta erikseen.
+	 */
+	public static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+
+	/**
+	 * Kuinka monta kertaa kadonnut sisältö yritetään palauttaa yhden piirron aikana.
+	 */
+	static final int MAX_RESTORE_ATTEMPTS = 3;
+
+	/**
+	 * Sisäinen apuluokka, joka on seurattavien resurssien (pinnat, atlasalueet) yhteinen yläluokka. Resurssin
+	 * omistajaa seurataan haamuviittauksella, ja resurssi vapautetaan taustasäikeessä, mikäli omistaja kerätään
+	 * roskana ennen dispose-kutsua.
+	 * @author arkivika
+	 */
+	abstract static class Resource {
+
+		private Tracker tracker;
+
+		/**
+		 * Vapauttaa resurssin pysyvästi ja lopettaa sen omistajan seuraamisen (ks. untrack). Kutsu voidaan toistaa.
+		 */
+		abstract void dispose();
+
+		/**
+		 * Luovuttaa resurssin vapauttamisen roskienkeruulle: resurssi vapautetaan taustasäikeessä vasta, kun sen
+		 * omistaja kerätään roskana, eikä sitä kirjata vuodoksi. Kutsutaan, kun omistajaa saatetaan vielä piirtää,
+		 * mutta sen viimeistä käyttökertaa ei tiedetä (esim. välimuistista budjetin vuoksi poistettu kuva).
+		 */
+		void abandon() {
+			synchronized (SurfaceManager.class) {
+				if (tracker != null)
+					tracker.abandoned = true;
+			}
+		}
+
+		/**
+		 * Aloittaa resurssin omistajan seuraamisen. Mikäli omistaja kerätään roskana ennen dispose-kutsua, resurssi
+		 * vapautetaan taustasäikeessä ja kirjataan vuodoksi.
+		 * @param owner Resurssin omistaja.
+		 * @param label Resurssin kuvaus vuotoraporttia varten (esim. tiedostopolku).
+		 */
+		void track(Object owner, String label) {
+			synchronized (SurfaceManager.class) {
+				tracker = new Tracker(owner, this, label);
+				trackers.add(tracker);
+			}
+		}
+
+		/**
+		 * Lopettaa resurssin omistajan seuraamisen. Kutsutaan aliluokan dispose-metodista.
+		 */
+		void untrack() {
+			synchronized (SurfaceManager.class) {
+				if (tracker != null) {
+					trackers.remove(tracker);
+					tracker.clear();
+					tracker = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sisäinen apuluokka, joka sisältää yhden pinnan kuvadatan sekä sen mahdollisen vram-kopion.
+	 * @author arkivika
+	 */
+	static final class Surface extends Resource {
+
+		private BufferedImage buffer;
+		private final int width, height, transparency;
+		private final long bytes;
+		private byte[] packed;
+		private SoftReference<BufferedImage> unpacked;
+		private long heap;
+		private VolatileImage vramImg;
+		private boolean dirty, evicted, disposed;
+
+		/**
+		 * Konstruktori, joka luo pinnan annetusta kuvadatasta. Vram-kopiota ei luoda ennen ensimmäistä piirtoa.
+		 * @param _buffer Kuvadata.
+		 */
+		Surface(BufferedImage _buffer) {
+			this(_buffer, _buffer.getTransparency());
+		}
+
+		/**
+		 * Konstruktori, joka luo pinnan annetusta kuvadatasta annetulla läpinäkyvyydellä. Vram-kopio luodaan
+		 * kuvan todellisen läpinäkyvyysluokan mukaisena (ks. Image.getOpacity), jolloin esimerkiksi alfakanavallinen
+		 * mutta läpinäkymätön kuva piirretään suoraan kopioimalla ilman sekoitusta.
+		 * @param _buffer Kuvadata.
+		 * @param _transparency Transparency.OPAQUE, BITMASK tai TRANSLUCENT.
+		 */
+		Surface(BufferedImage _buffer, int _transparency) {
+			buffer = _buffer;
+			width = buffer.getWidth();
+			height = buffer.getHeight();
+			transparency = _transparency;
+			bytes = 4L * width * height;
+			heap = bytes;
+			dirty = true;
+
+			synchronized (SurfaceManager.class) {
+				heapBytes += heap;
+				rawHeapBytes += bytes;
+			}
+		}
+
+		/**
+		 * Tiivistää pinnan kuvadatan, mikäli kuva on läpinäkymätön tai BITMASK-tyyppinen (jokainen pikseli joko
+		 * täysin läpinäkyvä tai täysin peittävä). Enintään 256-värinen kuva muunnetaan palettikuvaksi, muut
+		 * pakataan. Kuvadataa ei saa muuttaa tiivistämisen jälkeen.
+		 * @return True, mikäli kuvadata tiivistettiin, muuten false.
+		 */
+		boolean compact() {
+
+			BufferedImage source;
+			synchronized (SurfaceManager.class) {
+				if (buffer == null || disposed)
+					return false;
+				source = buffer;
+			}
+
+			int[] pixels = source.getRGB(0, 0, width, height, null, 0, width);
+			BufferedImage indexed = toIndexed(pixels, width, height);
+			byte[] deflated = null;
+			long size;
+
+			if (indexed != null)
+				size = (long)width * height;
+			else {
+				for (int pixel : pixels) {
+					int alpha = pixel >>> 24;
+					if (alpha != 0 && alpha != 0xFF)
+						return false;
+				}
+
+				deflated = deflate(pixels);
+				size = deflated.length;
+
+				if (size >= bytes)
+					return false;
+			}
+
+			synchronized (SurfaceManager.class) {
+
+				if (buffer != source || disposed)
+					return false;
+
+				buffer = indexed;
+				packed = deflated;
+				heapBytes += size - heap;
+				heap = size;
+			}
+
+			return true;
+		}
+
+		/**
+		 * Palauttaa arvonaan pinnan kuvadatan keskusmuistista. Pakattu kuvadata puretaan ja puretusta kuvasta
+		 * pidetään pehmeä viittaus (SoftReference), joten toistuvat kutsut eivät pura sitä uudelleen niin kauan
+		 * kuin muistia riittää.
+		 * @return Kuvadata.
+		 */
+		java.awt.Image heap() {
+
+			BufferedImage image;
+			byte[] data;
+
+			synchronized (SurfaceManager.class) {
+
+				if (buffer != null)
+					return buffer;
+
+				image = (unpacked == null) ? null : unpacked.get();
+				if (image != null)
+					return image;
+
+				data = packed;
+			}
+
+			image = inflate(data, width, height, transparency);
+
+			synchronized (SurfaceManager.class) {
+				unpacked = new SoftReference<BufferedImage>(image);
+				unpacks++;
+			}
+
+			return image;
+		}
+
+		/**
+		 * Palauttaa arvonaan pinnan kuvadatan koon keskusmuistissa.
+		 * @return Koko tavuina.
+		 */
+		long getHeapBytes() {
+			synchronized (SurfaceManager.class) {
+				return heap;
+			}
+		}
+
+		/**
+		 * Merkitsee pinnan siirrettäväksi uudelleen vram:iin ennen seuraavaa piirtoa.
+		 */
+		void invalidate() {
+			synchronized (SurfaceManager.class) {
+				dirty = true;
+			}
+		}
+
+		/**
+		 * Palauttaa arvonaan piirrettävän kuvan. Vram-kopio luodaan tai palautetaan tarvittaessa, ja pinta merkitään
+		 * viimeksi piirretyksi. Mikäli kopiota ei saada ehjäksi, palautetaan kuvadata keskusmuistista.
+		 * @return Piirrettävä kuva.
+		 */
+		java.awt.Image validate() {
+
+			if (Image.HEADLESS)
+				return heap();
+
+			synchronized (SurfaceManager.class) {
+
+				if (disposed)
+					return heap();
+
+				// Siirretään pinta LRU-järjestyksen viimeiseksi
+				if (vramImg != null)
+					resident.get(this);
+
+				for (int i=0; i<MAX_RESTORE_ATTEMPTS; i++) {
+
+					if (vramImg == null) {
+						upload();
+					}
+					else {
+						int status = vramImg.validate(gfxConf);
+
+						if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+							release();
+							upload();
+						}
+						else if (status == VolatileImage.IMAGE_RESTORED) {
+							contentsLost++;
+							copy();
+						}
+						else if (dirty)
+							copy();
+					}
+
+					if (!vramImg.contentsLost())
+						return vramImg;
+
+					contentsLost++;
+				}
+
+				return heap();
+			}
+		}
+
+		/**
+		 * Vapauttaa pinnan vram-kopion pysyvästi ja lopettaa sen omistajan seuraamisen. Kutsutaan, kun pintaa ei
+		 * enää käytetä. Vapautettu pinta piirretään tarvittaessa keskusmuistista.
+		 */
+		void dispose() {
+			synchronized (SurfaceManager.class) {
+
+				if (!disposed) {
+					heapBytes -= heap;
+					rawHeapBytes -= bytes;
+				}
+				disposed = true;
+
+				if (vramImg != null)
+					release();
+
+				untrack();
+			}
+		}
+
+		/**
+		 * Apumetodi, joka luo pinnalle vram-kopion. Budjetista vapautetaan ensin tilaa pisimpään piirtämättä
+		 * olleilta pinnoilta.
+		 */
+		private void upload() {
+
+			reserve(bytes);
+
+			if (evicted)
+				restores++;
+			evicted = false;
+
+			vramImg = gfxConf.createCompatibleVolatileImage(width, height, transparency);
+			resident.put(this, Boolean.TRUE);
+			residentBytes += bytes;
+
+			copy();
+		}
+
+		/**
+		 * Apumetodi, joka kopioi kuvadatan vram-kopioon.
+		 */
+		private void copy() {
+
+			dirty = false;
+
+			Graphics2D g2d = vramImg.createGraphics();
+			g2d.setComposite(AlphaComposite.Src);
+			g2d.drawImage(heap(), 0, 0, null);
+			g2d.dispose();
+		}
+
+		/**
+		 * Apumetodi, joka vapauttaa vram-kopion ja poistaa sen budjetista.
+		 */
+		private void release() {
+
+			vramImg.flush();
+			vramImg = null;
+			resident.remove(this);
+			residentBytes -= bytes;
+		}
+	}
+
+	/**
+	 * Sisäinen apuluokka, joka seuraa resurssin omistajaa haamuviittauksella.
+	 * @author arkivika
+	 */
+	private static final class Tracker extends PhantomReference<Object> {
+
+		final Resource resource;
+		final String label;
+		boolean abandoned;
+
+		/**
+		 * Konstruktori, joka luo seurannan annetulle omistajalle.
+		 * @param owner Resurssin omistaja.
+		 * @param _resource Seurattava resurssi.
+		 * @param _label Resurssin kuvaus.
+		 */
+		Tracker(Object owner, Resource _resource, String _label) {
+			super(owner, queue);
+			resource = _resource;
+			label = _label;
+		}
+	}
+
+	private static ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+	private static HashSet<Tracker> trackers = new HashSet<Tracker>();
+	private static long leaks = 0;
+
+	static {
+		Thread reaper = new Thread("SurfaceManager reaper") {
+			public void run() {
+				while (true) {
+					try {
+						reap((Tracker)queue.remove());
+					}
+					catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
+		};
+		reaper.setDaemon(true);
+		reaper.start();
+	}
+
+	private static GraphicsConfiguration gfxConf = Image.getDefaultConfiguration();
+	private static LinkedHashMap<Surface, Boolean> resident = new LinkedHashMap<Surface, Boolean>(16, 0.75f, true);
+	private static long budget = DEFAULT_BUDGET;
+	private static long residentBytes = 0;
+	private static long evictions = 0, restores = 0, contentsLost = 0;
+	private static long heapBytes = 0, rawHeapBytes = 0, unpacks = 0;
+
+	/**
+	 * Estää olioiden luomisen, kaikki metodit ovat staattisia.
+	 */
+	private SurfaceManager() {
+	}
+
+	/**
+	 * Asettaa vram-budjetin. Mikäli vram:issa on jo enemmän pintoja, ylimääräiset vapautetaan.
+	 * @param bytes Budjetti tavuina (> 0).
+	 */
+	public static synchronized void setBudget(long bytes) {
+
+		if (bytes <= 0)
+			return;
+
+		budget = bytes;
+		reserve(0);
+	}
+
+	/**
+	 * Palauttaa arvonaan vram-budjetin.
+	 * @return Budjetti tavuina.
+	 */
+	public static synchronized long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Palauttaa arvonaan vram:issa olevien pintojen yhteiskoon.
+	 * @return Yhteiskoko tavuina.
+	 */
+	public static synchronized long getResidentBytes() {
+		return residentBytes;
+	}
+
+	/**
+	 * Palauttaa arvonaan budjetin vuoksi vapautettujen vram-kopioiden määrän.
+	 * @return Vapautusten määrä.
+	 */
+	public static synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Palauttaa arvonaan vapautettujen pintojen vram:iin palautusten määrän.
+	 * @return Palautusten määrä.
+	 */
+	public static synchronized long getRestores() {
+		return restores;
+	}
+
+	/**
+	 * Palauttaa arvonaan havaittujen kadonneiden sisältöjen (contentsLost) määrän.
+	 * @return Kadonneiden sisältöjen määrä.
+	 */
+	public static synchronized long getContentsLost() {
+		return contentsLost;
+	}
+
+	/**
+	 * Palauttaa arvonaan vapauttamattomien pintojen kuvadatan yhteiskoon keskusmuistissa.
+	 * @return Yhteiskoko tavuina.
+	 */
+	public static synchronized long getHeapBytes() {
+		return heapBytes;
+	}
+
+	/**
+	 * Palauttaa arvonaan vapauttamattomien pintojen kuvadatan yhteiskoon keskusmuistissa ilman tiivistämistä
+	 * (4 tavua pikseliä kohden).
+	 * @return Yhteiskoko tavuina.
+	 */
+	public static synchronized long getUncompactedHeapBytes() {
+		return rawHeapBytes;
+	}
+
+	/**
+	 * Palauttaa arvonaan niiden pintojen määrän, joiden omistaja kerättiin roskana ilman dispose-kutsua.
+	 * @return Vuotojen määrä.
+	 */
+	public static synchronized long getLeaks() {
+		return leaks;
+	}
+
+	/**
+	 * Palauttaa arvonaan kuvaukset pinnoista, joita ei ole vielä vapautettu dispose-kutsulla.
+	 * @return Vapauttamattomien pintojen kuvaukset.
+	 */
+	public static synchronized ArrayList<String> getUndisposed() {
+
+		ArrayList<String> labels = new ArrayList<String>();
+		for (Tracker tracker : trackers)
+			labels.add(tracker.label);
+
+		return labels;
+	}
+
+	/**
+	 * Palauttaa arvonaan yhteenvedon vram:in käytöstä.
+	 * @return Yhteenveto merkkijonona.
+	 */
+	public static synchronized String getStatistics() {
+		return "VRAM " + (residentBytes/1024) + "/" + (budget/1024) + " KB in " + resident.size() + " surfaces, " +
+			evictions + " evictions, " + restores + " restores, " + contentsLost + " contents lost, " +
+			trackers.size() + " undisposed, " + leaks + " leaked; heap " + (heapBytes/1024) + " KB (" +
+			(rawHeapBytes/1024) + " KB uncompacted), " + unpacks + " unpacks";
+	}
+
+	/**
+	 * Apumetodi, joka vapauttaa resurssin, jonka omistaja on kerätty roskana. Mikäli resurssia ei ollut vapautettu
+	 * eikä luovutettu roskienkeruulle (abandon), se kirjataan vuodoksi. Resurssi vapautetaan lukon ulkopuolella,
+	 * sillä atlasalueen vapauttaminen lukitsee atlaksen (ks. TextureAtlas.add).
+	 * @param tracker Roskana kerätyn omistajan seuranta.
+	 */
+	private static void reap(Tracker tracker) {
+
+		synchronized (SurfaceManager.class) {
+			if (!trackers.contains(tracker))
+				return;
+
+			if (!tracker.abandoned) {
+				leaks++;
+				System.out.println("Warning! Surface was not disposed: " + tracker.label);
+			}
+		}
+		tracker.resource.dispose();
+	}
+
+	/**
+	 * Apumetodi, joka muuntaa pikselit palettikuvaksi, mikäli niissä on enintään 256 väriä ja jokainen pikseli on
+	 * joko täysin läpinäkyvä tai täysin peittävä. Läpinäkyvät pikselit yhdistetään yhdeksi paletin väriksi.
+	 * @param pixels Pikselit ARGB-muodossa.
+	 * @param width Kuvan leveys.
+	 * @param height Kuvan korkeus.
+	 * @return Palettikuva (TYPE_BYTE_INDEXED), tai null, mikäli kuvaa ei voida muuntaa.
+	 */
+	private static BufferedImage toIndexed(int[] pixels, int width, int height) {
+
+		HashMap<Integer, Integer> palette = new HashMap<Integer, Integer>();
+		byte[] indices = new byte[pixels.length];
+		int[] colors = new int[256];
+		int transparent = -1;
+
+		for (int i=0; i<pixels.length; i++) {
+
+			int pixel = pixels[i];
+			int alpha = pixel >>> 24;
+
+			if (alpha == 0)
+				pixel = 0;
+			else if (alpha != 0xFF)
+				return null;
+
+			Integer index = palette.get(pixel);
+			if (index == null) {
+
+				if (palette.size() == colors.length)
+					return null;
+
+				index = Integer.valueOf(palette.size());
+				colors[palette.size()] = pixel;
+				palette.put(pixel, index);
+
+				if (alpha == 0)
+					transparent = index.intValue();
+			}
+
+			indices[i] = (byte)index.intValue();
+		}
+
+		IndexColorModel model = new IndexColorModel(8, palette.size(), colors, 0, false, transparent, DataBuffer.TYPE_BYTE);
+
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, model);
+		image.getRaster().setDataElements(0, 0, width, height, indices);
+
+		return image;
+	}
+
+	/**
+	 * Apumetodi, joka pakkaa pikselit.
+	 * @param pixels Pikselit ARGB-muodossa.
+	 * @return Pakatut pikselit.
+	 */
+	private static byte[] deflate(int[] pixels) {
+
+		byte[] raw = new byte[4 * pixels.length];
+		for (int i=0, j=0; i<pixels.length; i++) {
+			raw[j++] = (byte)(pixels[i] >>> 24);
+			raw[j++] = (byte)(pixels[i] >>> 16);
+			raw[j++] = (byte)(pixels[i] >>> 8);
+			raw[j++] = (byte)pixels[i];
+		}
+
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		deflater.setInput(raw);
+		deflater.finish();
+
+		byte[] chunk = new byte[8192];
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		while (!deflater.finished())
+			out.write(chunk, 0, deflater.deflate(chunk));
+		deflater.end();
+
+		return out.toByteArray();
+	}
+
+	/**
+	 * Apumetodi, joka purkaa pakatut pikselit kuvaksi.
+	 * @param data Pakatut pikselit.
+	 * @param width Kuvan leveys.
+	 * @param height Kuvan korkeus.
+	 * @param transparency Kuvan läpinäkyvyys (Transparency.OPAQUE, BITMASK tai TRANSLUCENT).
+	 * @return Purettu kuva.
+	 */
+	private static BufferedImage inflate(byte[] data, int width, int height, int transparency) {
+
+		byte[] raw = new byte[4 * width * height];
+		Inflater inflater = new Inflater();
+		inflater.setInput(data);
+
+		try {
+			int offset = 0;
+			while (offset < raw.length && !inflater.finished())
+				offset += inflater.inflate(raw, offset, raw.length - offset);
+		}
+		catch (DataFormatException e) {
+			throw new IllegalStateException("Error! Corrupted surface data: " + e);
+		}
+		finally {
+			inflater.end();
+		}
+
+		int type = (transparency == Transparency.OPAQUE) ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+		BufferedImage image = new BufferedImage(width, height, type);
+		int[] pixels = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+
+		for (int i=0, j=0; i<pixels.length; i++, j+=4)
+			pixels[i] = ((raw[j] & 0xFF) << 24) | ((raw[j+1] & 0xFF) << 16) | ((raw[j+2] & 0xFF) << 8) | (raw[j+3] & 0xFF);
+
+		return image;
+	}
+
+	/**
+	 * Apumetodi, joka vapauttaa pisimpään piirtämättä olleiden pintojen vram-kopiot, kunnes annetun kokoinen
+	 * pinta mahtuu budjettiin. Budjettia suurempi pinta mahtuu, kun kaikki muut on vapautettu.
+	 * @param bytes Tarvittava tila tavuina.
+	 */
+	private static void reserve(long bytes) {
+
+		Iterator<Surface> it = resident.keySet().iterator();
+
+		while (residentBytes + bytes > budget && it.hasNext()) {
+
+			Surface surface = it.next();
+			it.remove();
+
+			surface.vramImg.flush();
+			surface.vramImg = null;
+			surface.evicted = true;
+			residentBytes -= surface.bytes;
+			evictions++;
+		}
+	}
+
+	/**
+	 * Testipäämetodi, jonka avulla varmistutaan siitä, että luokka toimii kuten sen pitäisi. Tulostaa jokaisen testin sekä sen tuloksen.
+	 * @param args Ei huomioida tässä.
+	 */
+	public static void main(String[] args) {
+
+		try {
+
+			// Vähävärinen BITMASK-kuva palettikuvaksi
+
+			System.out.println("Testing the compaction of a BITMASK image with few colors..");
+			BufferedImage sprite = new BufferedImage(64, 32, BufferedImage.TYPE_INT_ARGB);
+			for (int y=0; y<32; y++)
+				for (int x=0; x<64; x++)
+					if ((x + y) % 3 != 0)
+						sprite.setRGB(x, y, 0xFF000000 | ((x / 8 * 32) << 16) | (y / 8 * 64));
+
+			Surface surface = new Surface(sprite);
+			long heap = getHeapBytes();
+			if (!surface.compact())
+				failedTest("A BITMASK image was not compacted.");
+			if (surface.getHeapBytes() != 64 * 32 || getHeapBytes() != heap - 64 * 32 * 3)
+				failedTest("Invalid heap size for the indexed image: " + surface.getHeapBytes());
+			comparePixels(sprite, surface.heap());
+			System.out.println("..OK!");
+
+			// Monivärinen läpinäkymätön kuva pakataan
+
+			System.out.println("Testing the compaction of an opaque image with many colors..");
+			BufferedImage photo = new BufferedImage(128, 64, BufferedImage.TYPE_INT_RGB);
+			for (int y=0; y<64; y++)
+				for (int x=0; x<128; x++)
+					photo.setRGB(x, y, (x << 17) | (y << 10) | ((x * y) & 0xFF));
+
+			surface = new Surface(photo);
+			long count = unpacks;
+			if (!surface.compact())
+				failedTest("An opaque image was not compacted.");
+			if (surface.getHeapBytes() >= 4 * 128 * 64)
+				failedTest("The deflated image was not smaller than the original.");
+			comparePixels(photo, surface.heap());
+			surface.heap();
+			if (unpacks != count + 1)
+				failedTest("The deflated image was unpacked more than once.");
+			System.out.println("..OK!");
+
+			// Osittain läpinäkyvää kuvaa ei tiivistetä
+
+			System.out.println("Testing that a translucent image is not compacted..");
+			BufferedImage glass = new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB);
+			glass.setRGB(3, 3, 0x80FFFFFF);
+			surface = new Surface(glass);
+			if (surface.compact() || surface.heap() != glass)
+				failedTest("A translucent image was compacted.");
+			surface.dispose();
+			System.out.println("..OK!");
+
+			// Atlassivujen tiivistäminen
+
+			System.out.println("Testing that atlas pages are compacted apart from translucent images..");
+			BufferedImage tile = new BufferedImage(32, 32, BufferedImage.TYPE_INT_ARGB);
+			for (int x=0; x<32; x++)
+				for (int y=8; y<32; y++)
+					tile.setRGB(x, y, 0xFF000000 | (x << 16) | (y << 8));
+			Image packedTile = new Image(tile, true);
+			Image packedGlass = new Image(glass, true);
+			if (packedTile.getAtlasPage() == 0 || packedTile.getAtlasPage() == packedGlass.getAtlasPage())
+				failedTest("The translucent image was packed on the same page.");
+			long before = getHeapBytes();
+			TextureAtlas.compact();
+			if (getHeapBytes() >= before - 3L * TextureAtlas.PAGE_SIZE * TextureAtlas.PAGE_SIZE)
+				failedTest("The atlas page was not compacted: " + getStatistics());
+			BufferedImage drawn = new BufferedImage(32, 32, BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g = drawn.createGraphics();
+			packedTile.drawSource(g, 0, 0);
+			g.dispose();
+			comparePixels(tile, drawn);
+			Image nextTile = new Image(tile, true);
+			if (nextTile.getAtlasPage() == packedTile.getAtlasPage())
+				failedTest("An image was packed on a compacted page.");
+			packedTile.dispose();
+			packedGlass.dispose();
+			nextTile.dispose();
+			if (TextureAtlas.getPageCount() != 0)
+				failedTest("The atlas pages were not freed.");
+			System.out.println("..OK!");
+
+			System.out.println("Everything OK with the SurfaceManager!");
+		}
+		catch (Exception e) {
+			failedTest("Unknown exception: " + e);
+		}
+	}
+
+	/**
+	 * Apumetodi, joka vertaa tiivistetyn kuvan pikseleitä alkuperäiseen. Täysin läpinäkyvien pikselien väriä ei
+	 * verrata.
+	 * @param expected Alkuperäinen kuva.
+	 * @param actual Tiivistetty kuva.
+	 */
+	private static void comparePixels(BufferedImage expected, java.awt.Image actual) {
+
+		BufferedImage image = (BufferedImage)actual;
+
+		for (int y=0; y<expected.getHeight(); y++)
+			for (int x=0; x<expected.getWidth(); x++) {
+				int a = expected.getRGB(x, y), b = image.getRGB(x, y);
+				if (a != b && ((a >>> 24) != 0 || (b >>> 24) != 0))
+					failedTest("Pixels differ at " + x + "," + y + ": " + Integer.toHexString(a) + " " + Integer.toHexString(b));
+			}
+	}
+
+	/**
+	 * Apumetodi, joka tulostaa pieleen menneen testin sekä lopettaa ohjelman suorittamisen.
+	 * @param test Pieleen mennyt testi.
+	 */
+	private static void failedTest(String test) {
+
+		System.out.println("TEST FAILED: " + test);
+		System.exit(0);
+	}
+}
@@ -7,20 +7,60 @@ package pomppu.graphics;
 
 import java.awt.*;
 import java.awt.font.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 
 /**
  * Teksti-luokka.
- * Mahdollistaa tekstirivien tulostamisen ruudulle Drawable-rajapinnan avulla.
+ * Mahdollistaa tekstirivien tulostamisen ruudulle Drawable-rajapinnan avulla.<br><br>
+ * Teksti rasteroidaan kerran läpinäkyvään kuvaan, joka piirretään jokaisella framella. Kuva sekä tekstin
+ * mitat lasketaan uudelleen vain, kun teksti muuttuu.
  * @see pomppu.graphics.Drawable
  * @author arkivika
  */
 public class Text implements Drawable {
 	
-	private String text;
+	/**
+	 * Sisäinen apuluokka, joka sisältää yhden tekstin asettelun, mitat sekä rasteroidun kuvan. Teksti vaihdetaan
+	 * luomalla uusi olio, joten piirtävä säie näkee aina yhtenäisen tilan.
+	 * @author arkivika
+	 */
+	private static class Layout {
+		
+		final String text;
+		final int width, height;
+		final int offset_x, offset_y, image_w, image_h;
+		BufferedImage image;
+		
+		/**
+		 * Konstruktori, joka laskee tekstin asettelun ja mitat. Tyhjällä tekstillä ei ole asettelua.
+		 * @param _text Teksti.
+		 * @param font Käytettävä fontti.
+		 */
+		Layout(String _text, Font font) {
+			
+			text = _text;
+			
+			if (text == null || text.length() == 0) {
+				width = height = offset_x = offset_y = image_w = image_h = 0;
+				return;
+			}
+			
+			Rectangle2D bounds = new TextLayout(text, font, new FontRenderContext(null, false, false)).getBounds();
+			
+			width = (int)bounds.getWidth();
+			height = (int)bounds.getHeight();
+			offset_x = (int)Math.floor(bounds.getX());
+			offset_y = (int)Math.floor(bounds.getY());
+			image_w = (int)Math.ceil(bounds.getMaxX()) - offset_x + 1;
+			image_h = (int)Math.ceil(bounds.getMaxY()) - offset_y + 1;
+		}
+	}
+	
 	private Font font;
 	private Color col;
 	
-	private TextLayout layout;
+	private volatile Layout layout;
 	
 	/**
 	 * Konstruktori, joka luo halutun tekstin.
@@ -33,23 +73,29 @@ public class Text implements Drawable {
 	 * @see java.awt.FontMetrics
 	 */
 	public Text(String _text, String _font, int _style, int _size, Color _col) {
-		text = _text;
 		font = new Font(_font, _style, _size);
 		col = _col;
-		layout = new TextLayout(_text, font, new FontRenderContext(null, false, false));
+		layout = new Layout(_text, font);
 	}
 	
 	/**
-	 * Aksessori, joka piirtää annetun tekstisyötteen parametreinä annetuihin koordinaatteihin.
+	 * Aksessori, joka piirtää annetun tekstisyötteen parametreinä annetuihin koordinaatteihin. Teksti rasteroidaan
+	 * ensimmäisellä piirtokerralla piirtoalustan kanssa yhteensopivaan kuvaan.
 	 * @param g Tekstisyötteen piirtämiseen käytettävä grafiikka-olio.
 	 * @param x Haluttu x-koordinaatti.
 	 * @param y Haluttu y-koordinaatti.
 	 */
 	public void draw(Graphics2D g, int x, int y) {
 
-		g.setFont(font);
-		g.setColor(col);
-		g.drawString(text, x, y + getHeight());
+		Layout current = layout;
+		if (current.image_w == 0)
+			return;
+		
+		BufferedImage image = current.image;
+		if (image == null)
+			image = current.image = rasterize(current, g.getDeviceConfiguration());
+		
+		g.drawImage(image, x + current.offset_x, y + current.height + current.offset_y, null);
 	}
 
 	/**
@@ -57,7 +103,7 @@ public class Text implements Drawable {
 	 * @return Fontin korkeus.
 	 */
 	public int getHeight() {
-		return (int)(layout.getBounds().getHeight());
+		return layout.height;
 	}
 
 	/**
@@ -65,20 +111,44 @@ public class Text implements Drawable {
 	 * @return Fontin leveys.
 	 */
 	public int getWidth() {
-		return (int)layout.getBounds().getWidth();
+		return layout.width;
 	}
 	
 	/**
-	 * Aksessori, joka päivittää tekstin. 
+	 * Aksessori, joka päivittää tekstin. Asettelu ja kuva lasketaan uudelleen vain, mikäli teksti muuttuu.
 	 * @param _text Päivitetty teksti.
 	 */
 	public void updateText(String _text) {
-		text = _text;		
+		
+		if (_text == null ? layout.text == null : _text.equals(layout.text))
+			return;
+		
+		layout = new Layout(_text, font);
 	}
 
 	/**
-	 * Tyhjä, tarvitaan toteuttamaan rajapinta.
+	 * Aksessori, joka hylkää rasteroidun kuvan, jolloin se luodaan uudelleen seuraavalla piirtokerralla.
 	 */
 	public void update() {
+		layout.image = null;
+	}
+	
+	/**
+	 * Apumetodi, joka rasteroi tekstin läpinäkyvään kuvaan.
+	 * @param current Rasteroitavan tekstin asettelu.
+	 * @param gfxConf Piirtoalustan GraphicsConfiguration-olio.
+	 * @return Rasteroitu teksti.
+	 */
+	private BufferedImage rasterize(Layout current, GraphicsConfiguration gfxConf) {
+		
+		BufferedImage image = gfxConf.createCompatibleImage(current.image_w, current.image_h, Transparency.TRANSLUCENT);
+		
+		Graphics2D g = image.createGraphics();
+		g.setFont(font);
+		g.setColor(col);
+		g.drawString(current.text, -current.offset_x, -current.offset_y);
+		g.dispose();
+		
+		return image;
 	}
 }
@@ -0,0 +1,324 @@
+/**
+ * Sisältää luokat, jotka ovat vastuussa ikkunan luomisesta sekä kuvien
+ * lataamisesta ja niiden käsittelemisestä. Tämä paketti on käytännössä
+ * wrapperi ohjelmassa käytettävälle grafiikkakirjastolle (Swing).
+ */
+package pomppu.graphics;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.util.ArrayList;
+
+/**
+ * Tekstuuriatlas. Pakkaa ladatut pienet kuvat (palat ja animaatiokehykset) muutamalle suurelle sivulle ("page"),
+ * joista kullakin on yksi VolatileImage-olio. Näin frame piirretään muutamasta lähdepinnasta kymmenien sijaan.
+ * Kuvat pakataan sivuille hyllyittäin ("shelf packing"): kuva sijoitetaan nykyisen hyllyn perään, ja mikäli se
+ * ei mahdu, aloitetaan uusi hylly tai uusi sivu. Sivu siirretään vram:iin vasta piirron yhteydessä, joten
+ * latausvaiheessa lisätyt kuvat siirretään yhdellä kertaa. Sivujen vram-kopioita hallitsee SurfaceManager.<br><br>
+ * Jokainen pakattu kuva varaa sivulta alueen (Region), ja sivu laskee varattujen alueiden määrän. Kun sivun
+ * viimeinen alue vapautetaan, sivu poistetaan atlaksesta ja sen kuvadata sekä vram-kopio vapautetaan. Alueen
+ * omistajaa seurataan kuten pintoja (SurfaceManager.Resource), joten välimuistista poistetun kuvan alue
+ * vapautetaan vasta, kun kuvaa ei enää piirretä.<br><br>
+ * Osittain läpinäkyvät kuvat pakataan omille sivuilleen, jolloin muiden sivujen kuvadata voidaan tiivistää
+ * (SurfaceManager.Surface.compact). Sivu suljetaan ja tiivistetään, kun se täyttyy tai esilataus valmistuu
+ * (ks. compact), eikä suljetulle sivulle pakata enää kuvia. Tiivistetty kuvadata puretaan vain vram-kopion
+ * luomiseen ja palauttamiseen (contentsLost) sekä kuvien koostamiseen (Image.drawSource).
+ * @see pomppu.graphics.Image
+ * @author arkivika
+ */
+final class TextureAtlas {
+
+	static final int PAGE_SIZE = 1024;
+	static final int MAX_REGION_SIZE = 256;
+	static final int PADDING = 1;
+
+	/**
+	 * Sisäinen apuluokka, joka sisältää yhden atlassivun kuvadatan, sen vram-kopion sekä hyllyjen tilan.
+	 * @author arkivika
+	 */
+	static final class Page {
+
+		final int index;
+		final boolean translucent;
+		private BufferedImage buffer;
+		private final SurfaceManager.Surface surface;
+		private int shelfX, shelfY, shelfHeight;
+		private int regions;
+		private boolean sealed;
+
+		/**
+		 * Konstruktori, joka luo tyhjän sivun. Sivu omistaa pintansa, joten elossa olevat sivut näkyvät
+		 * vapauttamattomina pintoina (SurfaceManager.getUndisposed), kunnes niiden viimeinen alue vapautetaan.
+		 * @param _index Sivun järjestysnumero (alkaen 1:stä, 0 tarkoittaa atlaksen ulkopuolista kuvaa).
+		 * @param _translucent True, mikäli sivulle pakataan osittain läpinäkyviä kuvia, muuten false.
+		 */
+		Page(int _index, boolean _translucent) {
+			index = _index;
+			translucent = _translucent;
+			buffer = new BufferedImage(PAGE_SIZE, PAGE_SIZE, BufferedImage.TYPE_INT_ARGB);
+			surface = new SurfaceManager.Surface(buffer);
+			surface.track(this, "atlas page " + index);
+			shelfX = shelfY = shelfHeight = 0;
+		}
+
+		/**
+		 * Yrittää varata sivulta annetun kokoisen alueen.
+		 * @param width Alueen leveys.
+		 * @param height Alueen korkeus.
+		 * @return Alueen vasen yläkulma, tai null, mikäli alue ei mahdu sivulle.
+		 */
+		Point allocate(int width, int height) {
+
+			if (shelfX + width > PAGE_SIZE) {
+				shelfY += shelfHeight + PADDING;
+				shelfX = 0;
+				shelfHeight = 0;
+			}
+
+			if (shelfY + height > PAGE_SIZE)
+				return null;
+
+			Point point = new Point(shelfX, shelfY);
+			shelfX += width + PADDING;
+			shelfHeight = Math.max(shelfHeight, height);
+
+			return point;
+		}
+
+		/**
+		 * Merkitsee sivun siirrettäväksi uudelleen vram:iin ennen seuraavaa piirtoa.
+		 */
+		void invalidate() {
+			surface.invalidate();
+		}
+
+		/**
+		 * Palauttaa arvonaan sivun piirrettävän kuvan (ks. SurfaceManager.Surface).
+		 * @return Piirrettävä kuva.
+		 */
+		java.awt.Image validate() {
+			return surface.validate();
+		}
+
+		/**
+		 * Palauttaa arvonaan sivun kuvadatan keskusmuistista. Tiivistetty kuvadata puretaan (ks.
+		 * SurfaceManager.Surface.heap).
+		 * @return Kuvadata.
+		 */
+		java.awt.Image heap() {
+			return surface.heap();
+		}
+
+		/**
+		 * Tiivistää suljetun sivun kuvadatan, mikäli sivulla ei ole osittain läpinäkyviä kuvia. Kutsutaan kerran
+		 * sivun sulkemisen jälkeen atlaksen lukon ulkopuolella, sillä tiivistäminen on hidasta.
+		 */
+		void compact() {
+
+			if (translucent || !surface.compact())
+				return;
+
+			synchronized (TextureAtlas.class) {
+				buffer = null;
+			}
+		}
+
+		/**
+		 * Vapauttaa sivun kuvadatan ja vram-kopion. Kutsutaan, kun sivun viimeinen alue on vapautettu.
+		 */
+		void dispose() {
+			surface.dispose();
+			if (buffer != null)
+				buffer.flush();
+		}
+	}
+
+	/**
+	 * Sisäinen apuluokka, joka sisältää yhden kuvan varaaman alueen atlassivulla. Alue vapautetaan dispose-kutsulla
+	 * tai, mikäli se on luovutettu roskienkeruulle (abandon), kun sen omistaja kerätään roskana.
+	 * @author arkivika
+	 */
+	static final class Region extends SurfaceManager.Resource {
+
+		final Page page;
+		final int x, y;
+		private boolean disposed;
+
+		/**
+		 * Konstruktori, joka luo alueen annetulle sivulle.
+		 * @param _page Sivu, jolta alue on varattu.
+		 * @param origin Alueen vasen yläkulma sivulla.
+		 */
+		private Region(Page _page, Point origin) {
+			page = _page;
+			x = origin.x;
+			y = origin.y;
+		}
+
+		/**
+		 * Vapauttaa alueen. Mikäli sivulla ei ole enää varattuja alueita, sivu poistetaan atlaksesta ja vapautetaan.
+		 * Kutsu voidaan toistaa.
+		 */
+		void dispose() {
+			synchronized (TextureAtlas.class) {
+
+				if (disposed)
+					return;
+				disposed = true;
+				untrack();
+
+				if (--page.regions == 0) {
+					pages.remove(page);
+					page.dispose();
+				}
+			}
+		}
+	}
+
+	private static ArrayList<Page> pages = new ArrayList<Page>();
+
+	/**
+	 * Estää olioiden luomisen, kaikki metodit ovat staattisia.
+	 */
+	private TextureAtlas() {
+	}
+
+	/**
+	 * Pakkaa kuvan atlakseen. Liian suuret kuvat jätetään pakkaamatta. Uusi sivu saa pienimmän vapaan
+	 * järjestysnumeron, joten numerot pysyvät sivujen määrän rajoissa, vaikka sivuja poistetaan. Täyttynyt sivu
+	 * suljetaan ja tiivistetään, mikäli näyttö on olemassa (kuten Image.pack).
+	 * @param image Pakattava kuva.
+	 * @param opacity Kuvan läpinäkyvyysluokka (ks. Image.getOpacity).
+	 * @return Kuvan alue atlassivulla, tai null, mikäli kuva on liian suuri.
+	 */
+	static Region add(BufferedImage image, int opacity) {
+
+		int width = image.getWidth();
+		int height = image.getHeight();
+
+		if (width > MAX_REGION_SIZE || height > MAX_REGION_SIZE)
+			return null;
+
+		boolean translucent = (opacity == Transparency.TRANSLUCENT);
+		Page full = null;
+		Region region;
+
+		synchronized (TextureAtlas.class) {
+
+			Page page = openPage(translucent);
+			Point point = (page == null) ? null : page.allocate(width, height);
+
+			if (point == null) {
+				if (page != null) {
+					page.sealed = true;
+					full = page;
+				}
+				page = new Page(freeIndex(), translucent);
+				pages.add(page);
+				point = page.allocate(width, height);
+			}
+
+			Graphics2D g = page.buffer.createGraphics();
+			g.setComposite(AlphaComposite.Src);
+			g.drawImage(image, point.x, point.y, null);
+			g.dispose();
+
+			page.invalidate();
+			page.regions++;
+
+			region = new Region(page, point);
+		}
+
+		if (full != null && !Image.HEADLESS)
+			full.compact();
+
+		return region;
+	}
+
+	/**
+	 * Sulkee kaikki avoimet sivut ja tiivistää niiden kuvadatan (ks. Page.compact). Kutsutaan, kun esilataus on
+	 * valmis, jolloin ladattuja kuvia ei enää muuteta. Myöhemmin ladatut kuvat pakataan uusille sivuille.
+	 */
+	static void compact() {
+
+		ArrayList<Page> open = new ArrayList<Page>();
+		synchronized (TextureAtlas.class) {
+			for (Page page : pages)
+				if (!page.sealed) {
+					page.sealed = true;
+					open.add(page);
+				}
+		}
+
+		for (Page page : open)
+			page.compact();
+	}
+
+	/**
+	 * Palauttaa arvonaan atlassivujen määrän.
+	 * @return Sivujen määrä.
+	 */
+	static synchronized int getPageCount() {
+		return pages.size();
+	}
+
+	/**
+	 * Merkitsee kaikki sivut siirrettäviksi uudelleen vram:iin.
+	 */
+	static synchronized void invalidateAll() {
+		for (Page page : pages)
+			page.invalidate();
+	}
+
+	/**
+	 * Apumetodi, joka palauttaa arvonaan avoimen sivun, jolle annetun läpinäkyvyyden kuvat pakataan.
+	 * @param translucent True, mikäli kuva on osittain läpinäkyvä, muuten false.
+	 * @return Avoin sivu, tai null, mikäli sellaista ei ole.
+	 */
+	private static Page openPage(boolean translucent) {
+
+		for (Page page : pages)
+			if (!page.sealed && page.translucent == translucent)
+				return page;
+
+		return null;
+	}
+
+	/**
+	 * Apumetodi, joka palauttaa arvonaan pienimmän järjestysnumeron, jota mikään sivu ei käytä.
+	 * @return Vapaa järjestysnumero (alkaen 1:stä).
+	 */
+	private static int freeIndex() {
+
+		int index = 1;
+		boolean used;
+
+		do {
+			used = false;
+			for (Page page : pages)
+				if (page.index == index)
+					used = true;
+			if (used)
+				index++;
+		} while (used);
+
+		return index;
+	}
+
+	/**
+	 * Palauttaa arvonaan sen atlassivun järjestysnumeron, jolta Drawable-olio piirretään. Animaatioiden osalta
+	 * käytetään tämänhetkistä kehystä. Atlaksen ulkopuoliset oliot (esim. teksti) saavat arvon 0.
+	 * @param drawable Drawable-rajapinnan toteuttava olio.
+	 * @return Sivun järjestysnumero, tai 0.
+	 */
+	static int pageOf(Drawable drawable) {
+
+		if (drawable instanceof Animation)
+			drawable = ((Animation)drawable).getCurrentFrame();
+
+		if (drawable instanceof Image)
+			return ((Image)drawable).getAtlasPage();
+
+		return 0;
+	}
+}
@@ -0,0 +1,63 @@
+/** Sisältää tarvittavat luokat input- ja output-toimintoihin, joiden avulla ohjelmalle
+ * välitetään informaatiota ulkoisista lähteistä, kuten näppäimistöltä tai hiireltä. Myös
+ * tiedostoista lukeminen sisältyy I/O-toiminnallisuuksiin.
+ */
+package pomppu.io;
+
+/**
+ * Syötetapahtumien ilmoitin. Keyboard- ja Mouse-oliot kasvattavat laskuria jokaisesta tapahtumasta ja herättävät
+ * odottavat säikeet, joten valikkotilat voivat odottaa syötettä pyörimättä silmukassa. Odottaja antaa viimeksi
+ * näkemänsä laskurin arvon, joten odottamisen välissä tulleet tapahtumat eivät katoa.
+ * @see pomppu.io.Keyboard
+ * @see pomppu.io.Mouse
+ * @author arkivika
+ */
+public class InputSignal {
+
+	private long count;
+
+	/**
+	 * Konstruktori, joka alustaa laskurin.
+	 */
+	public InputSignal() {
+		count = 0;
+	}
+
+	/**
+	 * Aksessori, joka ilmoittaa uudesta syötetapahtumasta ja herättää odottavat säikeet.
+	 */
+	public synchronized void signal() {
+		count++;
+		notifyAll();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan tähän mennessä ilmoitettujen tapahtumien määrän.
+	 * @return Tapahtumien määrä.
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * Aksessori, joka odottaa, kunnes uusi tapahtuma on ilmoitettu tai aikaraja umpeutuu.
+	 * @param seen Viimeksi nähty tapahtumien määrä.
+	 * @param timeout Aikaraja millisekunteina.
+	 * @return Tapahtumien määrä odottamisen jälkeen. Sama kuin seen, mikäli aikaraja umpeutui.
+	 */
+	public synchronized long await(long seen, long timeout) {
+
+		long deadline = System.currentTimeMillis() + timeout;
+
+		while (count == seen) {
+
+			long left = deadline - System.currentTimeMillis();
+			if (left <= 0)
+				break;
+
+			try { wait(left); } catch (InterruptedException e) { break; }
+		}
+
+		return count;
+	}
+}
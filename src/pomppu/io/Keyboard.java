@@ -14,12 +14,30 @@ import java.util.HashMap;
 public class Keyboard extends KeyAdapter {
 	
 	private HashMap<Integer,Boolean> keyStates;
+	private InputSignal signal;
 	
 	/**
 	 * Konstruktori, joka alustaa näppäinten tilat. 
 	 */
 	public Keyboard() {
 		keyStates = new HashMap<Integer,Boolean>();
+		signal = new InputSignal();
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan ilmoittimen, jolle näppäintapahtumat välitetään.
+	 * @return Käytettävä InputSignal-olio.
+	 */
+	public InputSignal getSignal() {
+		return signal;
+	}
+
+	/**
+	 * Aksessori, joka asettaa ilmoittimen, jolle näppäintapahtumat välitetään (esim. yhteinen hiiren kanssa).
+	 * @param _signal Käytettävä InputSignal-olio.
+	 */
+	public void setSignal(InputSignal _signal) {
+		signal = _signal;
 	}
 
 	/**
@@ -37,6 +55,7 @@ public class Keyboard extends KeyAdapter {
 	 */
 	public void keyPressed(KeyEvent event) {
 		keyStates.put(event.getKeyCode(), true);
+		signal.signal();
 	}
 	
 	/**
@@ -44,6 +63,7 @@ public class Keyboard extends KeyAdapter {
 	 */
 	public void keyReleased(KeyEvent event) {
 		keyStates.put(event.getKeyCode(), false);
+		signal.signal();
 	}
 	
 	/**
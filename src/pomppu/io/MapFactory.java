@@ -13,7 +13,8 @@ import pomppu.game.Map;
 import pomppu.graphics.AnimationFactory;
 import pomppu.graphics.Drawable;
 import pomppu.graphics.Animation;
-import pomppu.graphics.ImageFactory;
+import pomppu.graphics.AnimationClock;
+import pomppu.graphics.AssetLoader;
 import pomppu.mechanics.*;
  
 /**
@@ -71,10 +72,11 @@ public final class MapFactory {
 	
 	/**
 	 * Kirjastoluokan metodi, joka avaa tiedoston, parsii sen merkki merkiltä ja rakentaa niistä kartan, joka koostuu sekä
-	 * staattisista (rakennuspalat, "tile") että dynaamisista objekteista (viholliset).
+	 * staattisista (rakennuspalat, "tile") että dynaamisista objekteista (viholliset). Kentän palojen kuvat ja animaatiot
+	 * haetaan nimen perusteella kartan resurssimanifestista (ks. getManifest).
 	 * @param filepath Karttatiedoston sijainti.
 	 * @return Map-olio.
-	 * @throws IOException Mikäli tiedostoa ei löydy, tai sitä ei voida avata.
+	 * @throws IOException Mikäli tiedostoa tai sen manifestia ei löydy, tai niitä ei voida avata.
 	 */
 	public static Map readMap(String filepath) throws IOException {
 	
@@ -83,56 +85,57 @@ public final class MapFactory {
 		i = j = 0;
 		pl_x = pl_y = -1;
 
-		// Viholliset
+		// Kentän palat haetaan manifestista, joka on myös esilatauksen lähde
 		
-		spikey = AnimationFactory.getAnimations("/resources/enemies/spikey.png", 60, 60, 0.3, true, false);
+		AssetLoader.Manifest assets = AssetLoader.readManifest(getManifest(filepath));
+
+		// Viholliset
 		
-		if (spikey == null || spikey.size() < 1)
-			throw new IOException("Error! Nonplayer-object \"spikey's\" animations don't exist!");
+		spikey = assets.getAnimations("spikey");
 		
 		// Maa
 		
-		ground_top_left 		= ImageFactory.getImage("/resources/ground/ground_top_left.png");
-		ground_top_left_inv		= ImageFactory.getImage("/resources/ground/ground_top_left_inv.png");
-		ground_top 				= ImageFactory.getImage("/resources/ground/ground_top.png");
-		ground_top_right_inv	= ImageFactory.getImage("/resources/ground/ground_top_right_inv.png");
-		ground_top_right 		= ImageFactory.getImage("/resources/ground/ground_top_right.png");
-		ground_left 			= ImageFactory.getImage("/resources/ground/ground_left.png");
-		ground_center 			= ImageFactory.getImage("/resources/ground/ground_center.png");
-		ground_right 			= ImageFactory.getImage("/resources/ground/ground_right.png");
-		ground_bottom_left 		= ImageFactory.getImage("/resources/ground/ground_bottom_left.png");
-		ground_bottom_left_inv	= ImageFactory.getImage("/resources/ground/ground_bottom_left_inv.png");
-		ground_bottom			= ImageFactory.getImage("/resources/ground/ground_bottom.png");
-		ground_bottom_right_inv	= ImageFactory.getImage("/resources/ground/ground_bottom_right_inv.png");
-		ground_bottom_right 	= ImageFactory.getImage("/resources/ground/ground_bottom_right.png");
+		ground_top_left 		= assets.getImage("ground_top_left");
+		ground_top_left_inv		= assets.getImage("ground_top_left_inv");
+		ground_top 				= assets.getImage("ground_top");
+		ground_top_right_inv	= assets.getImage("ground_top_right_inv");
+		ground_top_right 		= assets.getImage("ground_top_right");
+		ground_left 			= assets.getImage("ground_left");
+		ground_center 			= assets.getImage("ground_center");
+		ground_right 			= assets.getImage("ground_right");
+		ground_bottom_left 		= assets.getImage("ground_bottom_left");
+		ground_bottom_left_inv	= assets.getImage("ground_bottom_left_inv");
+		ground_bottom			= assets.getImage("ground_bottom");
+		ground_bottom_right_inv	= assets.getImage("ground_bottom_right_inv");
+		ground_bottom_right 	= assets.getImage("ground_bottom_right");
 
 		// Vesi
 		
-		water_platform 	= ImageFactory.getImage("/resources/water/water_platform.png");
-		water_top 		= ImageFactory.getImage("/resources/water/water_top.png");
-		water 			= ImageFactory.getImage("/resources/water/water.png");
+		water_platform 	= assets.getImage("water_platform");
+		water_top 		= assets.getImage("water_top");
+		water 			= assets.getImage("water");
 		
-		waterfall_platform = getSingleAnimation("/resources/water/waterfall_platform.png", 32, 32, 0.5, false);
-		waterfall_top = getSingleAnimation("/resources/water/waterfall_top.png", 32, 32, 0.5, false);
-		waterfall = getSingleAnimation("/resources/water/waterfall.png", 32, 32, 0.5, false);
-		geyser_top = getSingleAnimation("/resources/water/geyser_top.png", 32, 32, 0.5, true);
-		geyser = getSingleAnimation("/resources/water/geyser.png", 32, 32, 0.5, true);
+		waterfall_platform = getSingleAnimation(assets, "waterfall_platform");
+		waterfall_top = getSingleAnimation(assets, "waterfall_top");
+		waterfall = getSingleAnimation(assets, "waterfall");
+		geyser_top = getSingleAnimation(assets, "geyser_top");
+		geyser = getSingleAnimation(assets, "geyser");
 		
 		// Maali
 		
-		win	= ImageFactory.getImage("/resources/objects/win.png");
+		win	= assets.getImage("win");
 				
 		// Kolikko
 
-		coin = getSingleAnimation("/resources/objects/coin.png", 32, 32, 0.33, false);
+		coin = getSingleAnimation(assets, "coin");
 		
 		// Laatikko
 		
-		crate = ImageFactory.getImage("/resources/objects/crate.png");
+		crate = assets.getImage("crate");
 
 		// Kivi
 		
-		stone = ImageFactory.getImage("/resources/objects/stone.png");
+		stone = assets.getImage("stone");
 
 		ArrayList<ArrayList<StaticObject>> staticObjects = new ArrayList<ArrayList<StaticObject>>();
 		ArrayList<DynamicObject> dynamicObjects = new ArrayList<DynamicObject>();
@@ -140,7 +143,7 @@ public final class MapFactory {
 		URL url = null;
 		
 		if (filepath != null)
-			url = staticObjects.getClass().getResource(filepath);
+			url = MapFactory.class.getResource(filepath);
 
 		if(url == null)
 			throw new IOException("Error! File not found: \"" + filepath + "\"");
@@ -226,16 +229,16 @@ public final class MapFactory {
 						tileList.add( new StaticObject( waterfall_platform, i, j, 105, true ) );
 						break;
 					case 'f':
-						tileList.add( new StaticObject( waterfall.clone(), i, j, 103, true ) );
+						tileList.add( new StaticObject( waterfall, i, j, 103, true ) );
 						break;
 					case 'F':
-						tileList.add( new StaticObject( waterfall_top.clone(), i, j, 106, true ) );
+						tileList.add( new StaticObject( waterfall_top, i, j, 106, true ) );
 						break;
 					case 'g':
-						tileList.add( new StaticObject( geyser.clone(), i, j, 104, true ) );
+						tileList.add( new StaticObject( geyser, i, j, 104, true ) );
 						break;
 					case 'G':
-						tileList.add( new StaticObject( geyser_top.clone(), i, j, 107, true ) );
+						tileList.add( new StaticObject( geyser_top, i, j, 107, true ) );
 						break;
 						
 					// Laatikko
@@ -247,7 +250,7 @@ public final class MapFactory {
 					// Raha
 						
 					case '$':
-						tileList.add( new StaticObject( coin.clone(), i, j, 56, true ) );
+						tileList.add( new StaticObject( coin, i, j, 56, true ) );
 						break;
 						
 					// Maali
@@ -274,22 +277,22 @@ public final class MapFactory {
 						
 					case 'à':
 						tileList.add( null );
-						dynamicObjects.add(createEnemy(AnimationFactory.cloneAnimations(spikey), 2, -1, i*32, j*32, 10.0));
+						dynamicObjects.add(createEnemy(spikey, 2, -1, i*32, j*32, 10.0));
 						break;
 
 					case 'á':
 						tileList.add( null );
-						dynamicObjects.add(createEnemy(AnimationFactory.cloneAnimations(spikey), 2, 1, i*32, j*32, 10.0));
+						dynamicObjects.add(createEnemy(spikey, 2, 1, i*32, j*32, 10.0));
 						break;
 						
 					case 'è':
 						tileList.add( null );
-						dynamicObjects.add(createEnemy(AnimationFactory.cloneAnimations(spikey), 3, -1, i*32, j*32, 10.0));
+						dynamicObjects.add(createEnemy(spikey, 3, -1, i*32, j*32, 10.0));
 						break;
 						
 					case 'é':
 						tileList.add( null );
-						dynamicObjects.add(createEnemy(AnimationFactory.cloneAnimations(spikey), 3, 1, i*32, j*32, 10.0));
+						dynamicObjects.add(createEnemy(spikey, 3, 1, i*32, j*32, 10.0));
 						break;
 						
 					// Jos ei mitään muuta niin ilmaa sitten! :)
@@ -311,9 +314,29 @@ public final class MapFactory {
 		return new Map(staticObjects, dynamicObjects, pl_x, pl_y);
 	}
 
+	/**
+	 * Kirjastoluokan metodi, joka palauttaa arvonaan kartan resurssimanifestin tiedostopolun. Manifesti sijaitsee
+	 * kartan vieressä samalla nimellä ja .assets-päätteellä (esim. level_1.map -> level_1.assets).
+	 * @param filepath Karttatiedoston sijainti.
+	 * @return Manifestin tiedostopolku.
+	 * @see pomppu.graphics.AssetLoader
+	 */
+	public static String getManifest(String filepath) {
+
+		if (filepath == null)
+			return null;
+
+		int dot = filepath.lastIndexOf('.');
+		if (dot <= filepath.lastIndexOf('/'))
+			return filepath + ".assets";
+
+		return filepath.substring(0, dot) + ".assets";
+	}
+
 	/**
 	 * Apumetodi, joka luo vihollistyyppisen dynaamisen objektin pelikarttaan.
-	 * @param anims Objektissa käytettävät animaatiot.
+	 * @param anims Objektissa käytettävät animaatiot. Animaatiot ovat yhteisiä kaikkien samantyyppisten
+	 * vihollisten kesken; jokainen objekti toistaa niitä omalla kursorillaan.
 	 * @param type Objektin tyyppi.
 	 * @param direction Objektin aloitussuunta (-1 tai 1).
 	 * @param x Objektin x-aloituskoordinaatti.
@@ -334,22 +357,20 @@ public final class MapFactory {
 	}
 
 	/**
-	 * Apumetodi, joka luo tiedostosta vain yhden animaation.
-	 * @param filepath Tiedostopolku kuvatiedostolle, joka sisältää animaation.
-	 * @param width Yhden animaatioframen leveys (pikseliä).
-	 * @param height Yhdein animaatioframen korkeus (pikseliä).
-	 * @param speed Animaation nopeus (speed/frame).
-	 * @param _mirrored True, mikäli animaation halutaan etenevän päinvastaisessa järjestyksessä (vain jos autoAnim on päällä), muuten false.
-	 * @return Luotu Animation-olio.
+	 * Apumetodi, joka hakee manifestista vain yhden animaation.
+	 * @param assets Kentän manifesti.
+	 * @param name Animaation nimi manifestissa.
+	 * @return Luotu Animation-olio, joka on rekisteröity AnimationClock-kelloon.
 	 * @throws IOException Mikäli animaatiota ei voitu luoda, tai luotu animaatio ei ole validi.
 	 */
-	private static Animation getSingleAnimation(String filepath, int width, int height, double speed, boolean _mirrored) throws IOException {
+	private static Animation getSingleAnimation(AssetLoader.Manifest assets, String name) throws IOException {
+		
+		Animation animation = assets.getAnimations(name).get(0);
 		
-		ArrayList<Animation> temp = AnimationFactory.getAnimations(filepath, width, height, speed, false, _mirrored); 
-		if (temp == null || temp.size() < 1)
-			throw new IOException("Error! Nonplayer-object \"" + filepath + "\" animations don't exist!");
+		// Kaikki saman tyypin palat jakavat animaation, joten kello edistää sitä kerran
+		AnimationClock.register(animation);
 		
-		return temp.get(0);
+		return animation;
 	}
 	
 	/**
@@ -395,9 +416,16 @@ public final class MapFactory {
 			// Yksittäisen animaation lataaminen apumetodilla
 			
 			System.out.println("Testing the getSingleAnimation-helper method..");
-			geyser = getSingleAnimation("/resources/player/player.png", 32, 50, 0.5, false);
+			AssetLoader.Manifest assets = AssetLoader.readManifest(getManifest("/resources/maps/testmap.map"));
+			geyser = getSingleAnimation(assets, "player");
 			if (geyser == null || geyser.getFrames().size() != 5)
 				failedTest("getSingleAnimation-method didn't return a valid animation!");
+			try {
+				getSingleAnimation(assets, "ground_top");
+				failedTest("getSingleAnimation-method returned an image as an animation!");
+			}
+			catch (IOException e) {
+			}
 			System.out.println("..OK!");
 
 			// Vihollisen dynaamisen objektin lataaminen apumetodilla
@@ -18,6 +18,8 @@ public class Mouse {
 	private MouseKeys mouseKeys;
 	private MouseMotion mouseMotion;
 	private Dimension insets;
+	private double scaleX, scaleY;
+	private InputSignal signal;
 	
 	/**
 	 * Sisäinen apuluokka, joka laajentaa MouseAdapter-luokkaa tallentaen hiiren näppäimien 
@@ -37,6 +39,7 @@ public class Mouse {
 				case MouseEvent.BUTTON3:
 					keyStates[2] = true;
 			}
+			signal.signal();
 		}
 		
 		public void mouseReleased(MouseEvent event) {
@@ -50,6 +53,7 @@ public class Mouse {
 				case MouseEvent.BUTTON3:
 					keyStates[2] = false;
 			}
+			signal.signal();
 		}
 	}
 
@@ -62,11 +66,12 @@ public class Mouse {
 		public void mouseMoved(MouseEvent event) {
 			x = event.getX();
 			y = event.getY();
+			signal.signal();
 		}
 		public void mouseDragged(MouseEvent event) {
 			x = event.getX();
 			y = event.getY();
-			
+			signal.signal();
 		}
 	}
 	
@@ -87,6 +92,24 @@ public class Mouse {
 		mouseMotion = new MouseMotion();
 		
 		insets = _insets;
+		scaleX = scaleY = 1.0;
+		signal = new InputSignal();
+	}
+	
+	/**
+	 * Aksessori, joka palauttaa arvonaan ilmoittimen, jolle hiiren tapahtumat välitetään.
+	 * @return Käytettävä InputSignal-olio.
+	 */
+	public InputSignal getSignal() {
+		return signal;
+	}
+
+	/**
+	 * Aksessori, joka asettaa ilmoittimen, jolle hiiren tapahtumat välitetään (esim. yhteinen näppäimistön kanssa).
+	 * @param _signal Käytettävä InputSignal-olio.
+	 */
+	public void setSignal(InputSignal _signal) {
+		signal = _signal;
 	}
 	
 	/**
@@ -105,6 +128,19 @@ public class Mouse {
 		return mouseMotion;
 	}
 
+	/**
+	 * Aksessori, joka asettaa ikkunan skaalauskertoimet, jotta hiiren koordinaatit saadaan muunnettua pelin
+	 * sisäiseen resoluutioon.
+	 * @param _scaleX Vaakasuuntainen skaalauskerroin (ikkunan koko / sisäinen resoluutio).
+	 * @param _scaleY Pystysuuntainen skaalauskerroin (ikkunan koko / sisäinen resoluutio).
+	 */
+	public void setScale(double _scaleX, double _scaleY) {
+		if (_scaleX > 0 && _scaleY > 0) {
+			scaleX = _scaleX;
+			scaleY = _scaleY;
+		}
+	}
+
 	/**
 	 * Aksessori, jonka avulla tarkistetaan, mikäli hiiren nappi on painettuna.
 	 * @param button Haluttu nappi (0-2).
@@ -132,19 +168,19 @@ public class Mouse {
 	}
 
 	/**
-	 * Aksessoti, joka palauttaa arvonaan hiiren x-koordinaatin.
+	 * Aksessoti, joka palauttaa arvonaan hiiren x-koordinaatin pelin sisäisessä resoluutiossa.
 	 * @return Hiiren x-koordinaatti.
 	 */
 	public int get_x() {
-		return x-insets.width;
+		return (int)((x-insets.width) / scaleX);
 	}
 	
 	/**
-	 * Aksessori, joka palauttaa arvonaan hiiren y-koordinaatin.
+	 * Aksessori, joka palauttaa arvonaan hiiren y-koordinaatin pelin sisäisessä resoluutiossa.
 	 * @return Hiiren y-koordinaatti.
 	 */
 	public int get_y() {
-		return y-insets.height;
+		return (int)((y-insets.height) / scaleY);
 	}
 	
 	/**
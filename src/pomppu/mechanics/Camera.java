@@ -3,12 +3,22 @@
  */
 package pomppu.mechanics;
 
+import java.awt.Rectangle;
+import java.awt.Transparency;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import pomppu.graphics.*;
 
 /**
  * Camera-luokka. Vastaa pelilogiikan tulkitsemisesta ja sen välittämisestä Canvas-rajapinnan toteuttavalle 
- * oliolle (tässä tapauksessa Screen) renderoimista varten.
+ * oliolle (tässä tapauksessa Screen) renderoimista varten.<br><br>
+ * Kamera pitää jokaisesta piirtokerroksesta (tausta, taustan palat, dynaamiset objektit, edustan palat ja GUI)
+ * oman pysyvän puskurin. Kerros lähetetään Canvas-oliolle uudelleen vain, kun sen sisältö tai kameran sijainti
+ * on muuttunut.<br><br>
+ * Taustakuvaa ei piirretä niiden ruutujen alle, jotka läpinäkymättömät kenttäpalat peittävät kokonaan, vaan vain
+ * peittämättömät alueet piirretään taustakuvan näkymistä (Image.getRegion). Mikäli tausta ja palat yhdessä
+ * peittävät koko ruudun, taustakerros merkitään peittäväksi, eikä ruutua tyhjennetä ennen piirtoa.
  * @author arkivika
  */
 public class Camera {
@@ -17,13 +27,49 @@ public class Camera {
 	static final double FOLLOW_BORDER_SIZE = 0.4;
 	static final double FOLLOW_SPEED = 6.0;
 
+	public static final int LAYER_BACKGROUND = 0;
+	public static final int LAYER_BACK_TILES = 1;
+	public static final int LAYER_ENTITIES = 2;
+	public static final int LAYER_FRONT_TILES = 3;
+	public static final int LAYER_HUD = 4;
+	static final int LAYER_COUNT = 5;
+	
+	/**
+	 * Peliruudun ympärille laskettava reunus (pikseleinä), jonka sisällä olevat dynaamiset objektit pidetään aktiivisina.
+	 */
+	static final int ACTIVATION_MARGIN = 256;
+	
+	/**
+	 * Peliruudun ympärille laskettava reunus (pikseleinä), jonka sisällä olevat objektit otetaan mukaan tilannekuvaan,
+	 * jotta ruudun reunalle liikkuvat objektit voidaan interpoloida näkyviin.
+	 */
+	static final int SNAPSHOT_MARGIN = 64;
+	
+	/**
+	 * Taustakuvan alueista luotujen näkymien enimmäismäärä välimuistissa.
+	 */
+	static final int MAX_REGIONS = 128;
+
 	private Canvas screen;
 	private GUI gui;
 	private ArrayList<DynamicObject> dynamicObjects;
+	private SpatialGrid grid;
+	private ArrayList<DynamicObject> nearby, active, wasActive, visible;
+	private int stamp;
 	private ArrayList<ArrayList<StaticObject>> staticObjects;
+	private TileCache tiles;
+	private DrawBuffer[] layers;
+	private DrawBuffer scratch;
+	private boolean[] dirty;
+	private int tiles_x, tiles_y, tiles_w, tiles_h;
 	private int x, y;
 	private boolean show_background;
 	private static Drawable background;
+	private LinkedHashMap<Long, Image> regions;
+	private int[] runs, bandRuns;
+	private int backgroundArea;
+	private boolean backgroundOpaque;
+	private long frames, skippedClears, drawnArea, screenArea;
 	
 	/**
 	 * Konstruktori, joka ottaa parametrikseen käytettävän Canvas-rajapinnan toteuttavan olion (Screen), sekä GUI-olion.
@@ -34,11 +80,30 @@ public class Camera {
 	public Camera(Canvas _screen, GUI _gui) {
 		
 		dynamicObjects = new ArrayList<DynamicObject>();
+		grid = new SpatialGrid(0, 0);
+		nearby = new ArrayList<DynamicObject>();
+		active = new ArrayList<DynamicObject>();
+		wasActive = new ArrayList<DynamicObject>();
+		visible = new ArrayList<DynamicObject>();
+		stamp = 0;
 		staticObjects = new ArrayList<ArrayList<StaticObject>>(); 
+		layers = new DrawBuffer[LAYER_COUNT];
+		for (int i=0; i<LAYER_COUNT; i++)
+			layers[i] = new DrawBuffer();
+		scratch = new DrawBuffer();
+		dirty = new boolean[LAYER_COUNT];
 		screen = _screen;
+		screen.setOverlayLayer(LAYER_HUD);
 		gui = _gui;
 		x = y = 0;
 		show_background = false;
+		regions = new LinkedHashMap<Long, Image>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<Long, Image> eldest) {
+				return size() > MAX_REGIONS;
+			}
+		};
+		runs = new int[0];
+		bandRuns = new int[0];
 	}
 	
 	/**
@@ -52,69 +117,182 @@ public class Camera {
 			background = ImageFactory.getImage(path); 
 		}
 		show_background = true;
+		dirty[LAYER_BACKGROUND] = true;
+		regions.clear();
 	}
 	
 	/**
-	 * Aksessori, joka lisää dynaamisen objektin piirrettävien objektien listaan.
+	 * Aksessori, joka palauttaa arvonaan kameran käyttämän Canvas-rajapinnan toteuttavan olion.
+	 * @return Käytettävä Canvas-rajapinnan toteuttava olio (Screen).
+	 */
+	public Canvas getCanvas() {
+		return screen;
+	}
+
+	/**
+	 * Aksessori, joka lisää dynaamisen objektin piirrettävien objektien listaan. Myöhemmin lisätyt objektit
+	 * piirretään aiemmin lisättyjen päälle.
 	 * @param obj Haluttu dynaaminen objekti.
 	 */
 	public void addDynamicObject(DynamicObject obj) {
 		dynamicObjects.add(obj);
+		grid.add(obj);
 	}
 
 	/**
-	 * Aksessori, jolla lisätään staattiset objektit piirrettävien objektien joukkoon.
+	 * Aksessori, jolla lisätään staattiset objektit piirrettävien objektien joukkoon. Staattiset objektit
+	 * jaetaan lohkoihin (TileCache), jotka piirretään valmiiksi ennen ensimmäistä käyttöä.
 	 * @param obj Haluttu lista, joka sisältää listat piirrettävistä staattisista objekteista. Sisäkkäiset listat, 
 	 * koska staattiset objektit muodostavat keskenään 2-ulotteisen taulun (pelikenttä).
 	 */
 	public void addStaticObjects(ArrayList<ArrayList<StaticObject>> obj) {
+		
+		if (obj != staticObjects || tiles == null) {
+			if (tiles != null)
+				tiles.dispose();
+			tiles = new TileCache(obj);
+			dirty[LAYER_BACK_TILES] = dirty[LAYER_FRONT_TILES] = true;
+			
+			// Ruudukko mitoitetaan kentän mukaan, jo lisätyt objektit siirretään uuteen ruudukkoon
+			grid.clear();
+			grid = new SpatialGrid((obj.isEmpty()) ? 0 : obj.get(0).size()*32, obj.size()*32);
+			for (int i=0; i<dynamicObjects.size(); i++)
+				grid.add(dynamicObjects.get(i));
+		}
 		staticObjects = obj;
 	}
 
+	/**
+	 * Aksessori, joka vapauttaa kameran valmiiksi piirtämien kenttälohkojen kuvat. Staattiset objektit on
+	 * annettava uudelleen (addStaticObjects), mikäli kameraa käytetään tämän jälkeen.
+	 */
+	public void dispose() {
+		
+		if (tiles != null)
+			tiles.dispose();
+		tiles = null;
+		dirty[LAYER_BACK_TILES] = dirty[LAYER_FRONT_TILES] = true;
+	}
+
 	/**
 	 * Aksessori, joka tyhjentää dynaamisten objektien listan.
 	 */
 	public void clearObjects() {
 		dynamicObjects.clear();
+		grid.clear();
+		active.clear();
+		wasActive.clear();
 	}
 	
 	/**
-	 * Aksessori, joka lisää GUI:n elementit piirrettävien elementtien listaan.
+	 * Aksessori, joka päivittää GUI-kerroksen (mikäli sen elementit ovat muuttuneet) ja piirtää framen.
 	 */
 	public void renderGUI() {
 		
-		ArrayList<VisibleElement> guiElements = gui.render();
-
-		for (VisibleElement elem : guiElements)
-			screen.addElement(elem);
+		gui.render(scratch);
+		submitIfChanged(LAYER_HUD);
 		
 		screen.draw();
 	}
 	
 	/**
-	 * Aksessori, joka tyhjentää GUI-olion, jotta se voidaan piirtää uudelleen.
+	 * Aksessori, joka päivittää GUI-kerroksen ja piirtää ruudulta vain annetun alueen.
+	 * @param area Päivitettävä alue, tai null, mikäli piirretään koko ruutu.
+	 */
+	public void renderGUI(Rectangle area) {
+		
+		if (area == null) {
+			renderGUI();
+			return;
+		}
+		
+		gui.render(scratch);
+		submitIfChanged(LAYER_HUD);
+		
+		screen.draw(area);
+	}
+	
+	/**
+	 * Aksessori, joka tyhjentää GUI-kerroksen, jotta se voidaan piirtää uudelleen.
 	 */
 	public void clearGUI() {
-		screen.clearTop(gui.size());
+		
+		scratch.clear();
+		submitIfChanged(LAYER_HUD);
 	}
 	
 	/**
-	 * Aksessori, joka tyhjentää Screen-olion, lisää taustakuvan piirrettävien elementtien joukkoon (mikäli
-	 * halutaan), piirtää taustalla olevat objektit (staattiset), dynaamiset objektit, sekä edustalla olevat 
-	 * objektit (staattiset).
+	 * Aksessori, joka päivittää taustakuvan, taustalla olevien objektien (staattiset), dynaamisten objektien sekä
+	 * edustalla olevien objektien (staattiset) kerrokset. Kerros lähetetään Screen-oliolle vain, mikäli sen
+	 * sisältö tai kameran sijainti on muuttunut edellisestä framesta.
 	 */
 	public void render() {
 		
-		screen.clear();
+		renderStatic(x, y);
 		
-		if (show_background)
-			screen.addElement(new VisibleElement( background, 0, 0 ));
+		renderDynamics(scratch);
+		submitIfChanged(LAYER_ENTITIES);
+	}
+	
+	/**
+	 * Aksessori, joka päivittää kerrokset kahden tilannekuvan välisestä tilasta. Kameran ja objektien sijainnit
+	 * interpoloidaan lineaarisesti edellisen ja nykyisen tilannekuvan välillä; objektit, joita ei ole edellisessä
+	 * tilannekuvassa, piirretään nykyiseen sijaintiinsa. Kutsutaan piirtävästä säikeestä, joka ei käsittele
+	 * dynaamisia objekteja suoraan.
+	 * @param previous Edellinen tilannekuva, tai null.
+	 * @param current Nykyinen tilannekuva.
+	 * @param alpha Interpoloinnin kerroin väliltä [0, 1] (0 = edellinen, 1 = nykyinen tilannekuva).
+	 * @see pomppu.mechanics.Snapshot
+	 */
+	public void render(Snapshot previous, Snapshot current, double alpha) {
+		
+		if (previous == null)
+			previous = current;
+		
+		int view_x = lerp(previous.camera_x, current.camera_x, alpha);
+		int view_y = lerp(previous.camera_y, current.camera_y, alpha);
 		
-		renderBehind();
+		renderStatic(view_x, view_y);
 		
-		renderDynamics();
+		scratch.clear();
 		
-		renderFront();			
+		// Molemmat tilannekuvat ovat lisäysjärjestyksessä, joten vastinparit löytyvät yhdellä läpikäynnillä
+		int j = 0;
+		for (int i=0; i<current.count; i++) {
+			
+			int id = current.ids[i];
+			while (j < previous.count && previous.ids[j] < id)
+				j++;
+			
+			int obj_x = current.xs[i];
+			int obj_y = current.ys[i];
+			if (j < previous.count && previous.ids[j] == id) {
+				obj_x = lerp(previous.xs[j], obj_x, alpha);
+				obj_y = lerp(previous.ys[j], obj_y, alpha);
+			}
+			
+			// Tilannekuvan reunukselta ruudun ulkopuolelle jäävät objektit ohitetaan
+			if (obj_x+current.widths[i] <= view_x || obj_x >= view_x+screen.getWidth() ||
+				obj_y+current.heights[i] <= view_y || obj_y >= view_y+screen.getHeight())
+				continue;
+			
+			scratch.add(current.drawables[i], obj_x-view_x, obj_y-view_y);
+		}
+		
+		submitIfChanged(LAYER_ENTITIES);
+	}
+	
+	/**
+	 * Aksessori, joka päivittää dynaamisten objektien aktiivisuuden ja palauttaa arvonaan tilannekuvan kameran ja
+	 * ruudun läheisyydessä olevien objektien tämänhetkisestä tilasta. Kutsutaan simulaatiosäikeestä jokaisen
+	 * simulaatioaskeleen jälkeen.
+	 * @return Uusi tilannekuva.
+	 * @see pomppu.mechanics.Snapshot
+	 */
+	public Snapshot snapshot() {
+		
+		cull(visible, SNAPSHOT_MARGIN);
+		return new Snapshot(System.nanoTime(), x, y, visible);
 	}
 	
 	/**
@@ -122,9 +300,26 @@ public class Camera {
 	 * @param show True, mikäli taustakuva halutaan piirtää, muuten false.
 	 */
 	public void showBackground(boolean show) {
+		
+		if (show != show_background)
+			dirty[LAYER_BACKGROUND] = true;
 		show_background = show;
 	}
 	
+	/**
+	 * Aksessori, joka palauttaa arvonaan yhteenvedon taustakuvan piirrosta: kuinka suuri osa ruudusta piirrettiin
+	 * taustakuvasta ja kuinka monella framella ruudun tyhjentäminen jätettiin väliin.
+	 * @return Yhteenveto merkkijonona.
+	 */
+	public String getStatistics() {
+		
+		if (frames == 0)
+			return "Background: no frames";
+		
+		return "Background: " + (100 * drawnArea / Math.max(1, screenArea)) + "% of the screen drawn, clear skipped on " +
+			skippedClears + "/" + frames + " frames";
+	}
+	
 	/**
 	 * Aksessori, jonka avulla kamera voidaan sijoittaa tiettyyn x,y-koordinaattiin.
 	 * @param _x Haluttu x-koordinaatti.
@@ -159,64 +354,391 @@ public class Camera {
 	}
 
 	/**
-	 * Apumetodi, joka piirtää dynaamiset objektit, mikäli ne ovat peliruudun alueella.
+	 * Apumetodi, joka lähettää kerroksen Screen-oliolle ja merkitsee sen ajantasaiseksi.
+	 * @param layer Kerroksen indeksi.
 	 */
-	private void renderDynamics() {
+	private void submit(int layer) {
+		screen.setLayer(layer, layers[layer]);
+		dirty[layer] = false;
+	}
+	
+	/**
+	 * Apumetodi, joka vertaa apupuskuriin rakennettua kerrosta edelliseen. Mikäli kerros on muuttunut, puskurit
+	 * vaihdetaan keskenään ja kerros lähetetään Screen-oliolle.
+	 * @param layer Kerroksen indeksi.
+	 */
+	private void submitIfChanged(int layer) {
+		
+		if (!dirty[layer] && scratch.contentEquals(layers[layer]))
+			return;
+		
+		DrawBuffer tmp = layers[layer];
+		layers[layer] = scratch;
+		scratch = tmp;
+		
+		submit(layer);
+	}
+	
+	/**
+	 * Apumetodi, joka päivittää taustakuvan sekä taustalla ja edustalla olevien palojen kerrokset annettuun
+	 * kameran sijaintiin. Kerrokset lähetetään vain, mikäli ne ovat muuttuneet. Taustakuvan peittämättömät alueet
+	 * riippuvat paloista, joten taustakerros päivitetään aina palojen kerrosten mukana.
+	 * @param view_x Kameran x-koordinaatti.
+	 * @param view_y Kameran y-koordinaatti.
+	 */
+	private void renderStatic(int view_x, int view_y) {
+		
+		boolean moved = dirty[LAYER_BACK_TILES] || (tiles != null && tiles.changed) || view_x != tiles_x ||
+			view_y != tiles_y || screen.getWidth() != tiles_w || screen.getHeight() != tiles_h;
+		
+		if (moved) {
+			renderTiles(view_x, view_y);
+			submit(LAYER_BACK_TILES);
+			submit(LAYER_FRONT_TILES);
+		}
+		
+		if (moved || dirty[LAYER_BACKGROUND]) {
+			renderBackground();
+			submit(LAYER_BACKGROUND);
+		}
+		
+		frames++;
+		screenArea += (long)tiles_w * tiles_h;
+		drawnArea += backgroundArea;
+		if (backgroundOpaque)
+			skippedClears++;
+	}
+	
+	/**
+	 * Apumetodi, joka rakentaa taustakuvan kerroksen. Jokaiselta peliruudun ruuturiviltä haetaan ne vaakasuuntaiset
+	 * jaksot, joita läpinäkymättömät palat eivät peitä, ja peräkkäiset samanlaiset rivit yhdistetään yhdeksi
+	 * kaistaksi. Kaistan jaksot piirretään taustakuvan näkymistä. Kerros merkitään peittäväksi, mikäli jokainen
+	 * peittämätön jakso piirrettiin läpinäkymättömästä taustakuvasta.
+	 */
+	private void renderBackground() {
+		
+		DrawBuffer layer = layers[LAYER_BACKGROUND];
+		layer.clear();
+		backgroundArea = 0;
+		backgroundOpaque = false;
+		
+		if (show_background && background != null && !(background instanceof Image)) {
+			layer.add(background, 0, 0);
+			return;
+		}
+		
+		int size = TileCache.TILE_SIZE;
+		int first_col = floorDiv(tiles_x, size);
+		int last_col = floorDiv(tiles_x + tiles_w - 1, size);
+		int first_row = floorDiv(tiles_y, size);
+		int last_row = floorDiv(tiles_y + tiles_h - 1, size);
+		
+		if (runs.length < 2*(last_col-first_col+1)) {
+			runs = new int[2*(last_col-first_col+1)];
+			bandRuns = new int[runs.length];
+		}
+		
+		boolean opaque = true;
+		int bandTop = 0, bandCount = 0;
 		
-		for (DynamicObject obj : dynamicObjects) {
+		for (int row = first_row; row <= last_row; row++) {
 			
-			if (obj.getX() > x-obj.getAnimation().getWidth() && obj.getX() < x+screen.getWidth() &&
-				obj.getY() > y-obj.getAnimation().getHeight() && obj.getY() < y+screen.getHeight() ) {
-				obj.setActive(true);
-				screen.addElement(new VisibleElement(obj.getAnimation(), obj.getX()-x, obj.getY()-y));
+			// Rivin peittämättömät jaksot ruudun koordinaatistossa
+			int count = 0;
+			for (int col = first_col; col <= last_col; col++) {
+				
+				if (tiles != null && tiles.isOpaque(col, row))
+					continue;
+				
+				int left = Math.max(0, col*size - tiles_x);
+				int right = Math.min(tiles_w, (col+1)*size - tiles_x);
+				
+				if (count > 0 && runs[2*count-1] == left)
+					runs[2*count-1] = right;
+				else {
+					runs[2*count] = left;
+					runs[2*count+1] = right;
+					count++;
+				}
 			}
+			
+			if (row > first_row && count == bandCount && equalRuns(runs, bandRuns, count))
+				continue;
+			
+			int top = Math.max(0, row*size - tiles_y);
+			opaque &= addBackground(layer, bandRuns, bandCount, bandTop, top);
+			
+			int[] tmp = bandRuns;
+			bandRuns = runs;
+			runs = tmp;
+			bandCount = count;
+			bandTop = top;
 		}
+		
+		opaque &= addBackground(layer, bandRuns, bandCount, bandTop, tiles_h);
+		
+		backgroundOpaque = opaque;
+		layer.setOpaque(opaque);
 	}
 	
 	/**
-	 * Apumetodi, joka piirtää taustalla olevat staattiset objektit, mikäli ne ovat peliruudun alueella.
+	 * Apumetodi, joka lisää kaistan jaksot taustakuvan näkyminä taustakerrokseen.
+	 * @param layer Taustakerros.
+	 * @param spans Jaksojen alku- ja loppukoordinaatit pareittain.
+	 * @param count Jaksojen määrä.
+	 * @param top Kaistan yläreuna.
+	 * @param bottom Kaistan alareunan jälkeinen rivi.
+	 * @return True, mikäli jaksot peitettiin kokonaan läpinäkymättömällä taustakuvalla, muuten false.
 	 */
-	private void renderBehind() {
+	private boolean addBackground(DrawBuffer layer, int[] spans, int count, int top, int bottom) {
+		
+		if (count == 0 || bottom <= top)
+			return true;
 		
-		for(int list_y = y/32; list_y <= (y + screen.getHeight())/32; list_y++) {
+		if (!show_background || background == null)
+			return false;
+		
+		Image image = (Image)background;
+		boolean opaque = (image.getOpacity() == Transparency.OPAQUE);
+		
+		for (int i=0; i<count; i++) {
 			
-			ArrayList<StaticObject> list = null;	
-			if(list_y >= 0 && list_y < staticObjects.size())
-				list = staticObjects.get(list_y);
-			else
-				continue;
+			int left = spans[2*i];
+			int width = spans[2*i+1] - left;
 			
-			for(int list_x = x/32; list_x <= (x + screen.getWidth())/32; list_x++) {
-				if(list_x >= 0 && list_x < list.size()) {
-					StaticObject obj = list.get(list_x);
-					if (obj != null && obj.active && obj.get_type() <= 99)
-						screen.addElement(new VisibleElement(obj.getDrawable(), obj.get_x()-x, obj.get_y()-y));
-				}
+			Image region = getRegion(image, left, top, width, bottom-top);
+			if (region == null) {
+				opaque = false;
+				continue;
 			}
+			
+			if (region.getWidth() != width || region.getHeight() != bottom-top)
+				opaque = false;
+			
+			layer.add(region, left, top);
+			backgroundArea += region.getWidth() * region.getHeight();
+		}
+		
+		return opaque;
+	}
+	
+	/**
+	 * Apumetodi, joka palauttaa arvonaan taustakuvan alueen näkymän välimuistista, tai luo sen, mikäli sitä ei
+	 * vielä ole. Paikallaan pysyvä tai vaakasuunnassa liikkuva kamera käyttää samoja alueita framesta toiseen.
+	 * @param image Taustakuva.
+	 * @param left Alueen x-koordinaatti.
+	 * @param top Alueen y-koordinaatti.
+	 * @param width Alueen leveys.
+	 * @param height Alueen korkeus.
+	 * @return Alueen näkymä, tai null, mikäli alue on taustakuvan ulkopuolella.
+	 */
+	private Image getRegion(Image image, int left, int top, int width, int height) {
+		
+		Long key = Long.valueOf(((long)left << 48) | ((long)top << 32) | ((long)width << 16) | height);
+		Image region = regions.get(key);
+		
+		if (region == null && !regions.containsKey(key)) {
+			region = image.getRegion(left, top, width, height);
+			regions.put(key, region);
+		}
+		
+		return region;
+	}
+	
+	/**
+	 * Apumetodi, joka vertaa kahden rivin jaksoja toisiinsa.
+	 * @param a Ensimmäisen rivin jaksot.
+	 * @param b Toisen rivin jaksot.
+	 * @param count Jaksojen määrä.
+	 * @return True, mikäli jaksot ovat samat, muuten false.
+	 */
+	private static boolean equalRuns(int[] a, int[] b, int count) {
+		
+		for (int i=0; i<2*count; i++)
+			if (a[i] != b[i])
+				return false;
+		
+		return true;
+	}
+	
+	/**
+	 * Apumetodi, joka jakaa kokonaisluvun pyöristäen kohti negatiivista ääretöntä.
+	 * @param a Jaettava.
+	 * @param b Jakaja (> 0).
+	 * @return Osamäärä.
+	 */
+	private static int floorDiv(int a, int b) {
+		return (a >= 0) ? a/b : -((-a-1)/b)-1;
+	}
+	
+	/**
+	 * Apumetodi, joka lisää peliruudun alueella olevat dynaamiset objektit annettuun puskuriin.
+	 * @param buffer Puskuri, johon objektit lisätään. Puskuri tyhjennetään ensin.
+	 */
+	private void renderDynamics(DrawBuffer buffer) {
+		
+		buffer.clear();
+		cull(visible, 0);
+		
+		for (int i=0; i<visible.size(); i++) {
+			DynamicObject obj = visible.get(i);
+			buffer.add(obj.getAnimation(), obj.getX()-x, obj.getY()-y);
 		}
 	}
 	
 	/**
-	 * Apumetodi, joka piirtää edustalla olevat staattiset objektit, mikäli ne ovat peliruudun alueella.
+	 * Apumetodi, joka hakee peliruudun läheisyydessä olevat dynaamiset objektit. Objektit haetaan ruudukosta
+	 * (SpatialGrid), joten työmäärä riippuu ruudun lähellä olevien objektien määrästä eikä kentän kaikista
+	 * objekteista. Reunuksen (ACTIVATION_MARGIN) sisällä olevat objektit aktivoidaan, ja reunukselta poistuneet
+	 * objektit deaktivoidaan.
+	 * @param result Lista, johon annetulla reunuksella laajennetun peliruudun alueella olevat objektit lisätään
+	 * lisäysjärjestyksessä. Lista tyhjennetään ensin.
+	 * @param border Peliruudun ympärille laskettava reunus (pikseleinä).
 	 */
-	private void renderFront() {
+	private void cull(ArrayList<DynamicObject> result, int border) {
+		
+		result.clear();
+		stamp++;
+		
+		int width = screen.getWidth();
+		int height = screen.getHeight();
 		
-		for(int list_y = y/32; list_y <= (y + screen.getHeight())/32; list_y++) {
+		grid.query(x-ACTIVATION_MARGIN, y-ACTIVATION_MARGIN, width+2*ACTIVATION_MARGIN, height+2*ACTIVATION_MARGIN, nearby);
+		
+		active.clear();
+		for (int i=0; i<nearby.size(); i++) {
+			
+			DynamicObject obj = nearby.get(i);
+			int obj_w = obj.getAnimation().getWidth();
+			int obj_h = obj.getAnimation().getHeight();
 			
-			ArrayList<StaticObject> list = null;	
-			if(list_y >= 0 && list_y < staticObjects.size())
-				list = staticObjects.get(list_y);
-			else
+			if (obj.getX() <= x-obj_w-ACTIVATION_MARGIN || obj.getX() >= x+width+ACTIVATION_MARGIN ||
+				obj.getY() <= y-obj_h-ACTIVATION_MARGIN || obj.getY() >= y+height+ACTIVATION_MARGIN)
 				continue;
 			
-			for(int list_x = x/32; list_x <= (x + screen.getWidth())/32; list_x++) {
-				if(list_x >= 0 && list_x < list.size()) {
-					StaticObject obj = list.get(list_x);
-					if (obj != null && obj.active && obj.get_type() > 99)
-						screen.addElement(new VisibleElement(obj.getDrawable(), obj.get_x()-x, obj.get_y()-y));
+			obj.setActive(true);
+			obj.seen = stamp;
+			active.add(obj);
+			
+			if (obj.getX() > x-obj_w-border && obj.getX() < x+width+border &&
+				obj.getY() > y-obj_h-border && obj.getY() < y+height+border)
+				result.add(obj);
+		}
+		
+		// Edellisellä framella aktiiviset objektit, joita ei enää löytynyt reunuksen sisältä
+		for (int i=0; i<wasActive.size(); i++) {
+			DynamicObject obj = wasActive.get(i);
+			if (obj.seen != stamp)
+				obj.setActive(false);
+		}
+		
+		ArrayList<DynamicObject> tmp = wasActive;
+		wasActive = active;
+		active = tmp;
+	}
+
+	/**
+	 * Apumetodi, joka rakentaa peliruudun alueella olevien lohkojen taustalla ja edustalla olevien palojen
+	 * kerrokset yhdellä läpikäynnillä. Muuttumattomat palat lisätään lohkoittain valmiina kuvina, animoidut
+	 * palat yksitellen.
+	 * @param view_x Kameran x-koordinaatti.
+	 * @param view_y Kameran y-koordinaatti.
+	 */
+	private void renderTiles(int view_x, int view_y) {
+		
+		DrawBuffer back = layers[LAYER_BACK_TILES];
+		DrawBuffer front = layers[LAYER_FRONT_TILES];
+		back.clear();
+		front.clear();
+		
+		tiles_x = view_x;
+		tiles_y = view_y;
+		tiles_w = screen.getWidth();
+		tiles_h = screen.getHeight();
+		
+		if (tiles == null)
+			return;
+		
+		// Nollataan ennen lohkojen läpikäyntiä, jotta tämän aikana valmistuvat lohkot huomataan seuraavalla framella
+		tiles.changed = false;
+		
+		int first_x = tiles_x/TileCache.CHUNK_PIXELS;
+		int first_y = tiles_y/TileCache.CHUNK_PIXELS;
+		int last_x = (tiles_x + tiles_w)/TileCache.CHUNK_PIXELS;
+		int last_y = (tiles_y + tiles_h)/TileCache.CHUNK_PIXELS;
+		
+		for (int chunk_y = first_y; chunk_y <= last_y; chunk_y++) {
+			for (int chunk_x = first_x; chunk_x <= last_x; chunk_x++) {
+				
+				TileCache.Chunk chunk = tiles.getChunk(chunk_x, chunk_y);
+				if (chunk == null)
+					continue;
+				
+				if (!chunk.isReady())
+					addPlaceholderTiles(chunk.baked, back, front);
+				else {
+					if (chunk.back != null)
+						back.add(chunk.back, chunk.x-tiles_x, chunk.y-tiles_y);
+					if (chunk.front != null)
+						front.add(chunk.front, chunk.x-tiles_x, chunk.y-tiles_y);
 				}
+				
+				addLiveTiles(chunk.liveBack, back);
+				addLiveTiles(chunk.liveFront, front);
 			}
 		}
+		
+		// Palat eivät ole päällekkäin, joten ne voidaan piirtää atlassivuittain
+		back.sortByPage();
+		front.sortByPage();
+		
+		// Ruudun ympäriltä rasteroidaan lohkot etukäteen
+		tiles.prefetch(first_x-1, first_y-1, last_x+1, last_y+1);
+	}
+	
+	/**
+	 * Apumetodi, joka lisää rasteroimattoman lohkon muuttumattomista paloista peliruudun alueella olevat yksitellen
+	 * taustan tai edustan kerrokseen, kunnes lohkon kuvat valmistuvat.
+	 * @param baked Lohkon muuttumattomat palat.
+	 * @param back Taustalla olevien palojen kerros.
+	 * @param front Edustalla olevien palojen kerros.
+	 */
+	private void addPlaceholderTiles(ArrayList<StaticObject> baked, DrawBuffer back, DrawBuffer front) {
+		
+		for (int i=0; i<baked.size(); i++) {
+			
+			StaticObject obj = baked.get(i);
+			if (obj.active && obj.get_x() > tiles_x-TileCache.TILE_SIZE && obj.get_x() <= tiles_x+tiles_w &&
+				obj.get_y() > tiles_y-TileCache.TILE_SIZE && obj.get_y() <= tiles_y+tiles_h)
+				((obj.get_type() <= 99) ? back : front).add(obj.getDrawable(), obj.get_x()-tiles_x, obj.get_y()-tiles_y);
+		}
+	}
+	
+	/**
+	 * Apumetodi, joka lisää lohkon elävistä paloista aktiiviset ja peliruudun alueella olevat annettuun kerrokseen.
+	 * @param live Lohkon elävät palat.
+	 * @param layer Kerros, johon palat lisätään.
+	 */
+	private void addLiveTiles(ArrayList<StaticObject> live, DrawBuffer layer) {
+		
+		for (int i=0; i<live.size(); i++) {
+			
+			StaticObject obj = live.get(i);
+			if (obj.active && obj.get_x() > tiles_x-TileCache.TILE_SIZE && obj.get_x() <= tiles_x+tiles_w &&
+				obj.get_y() > tiles_y-TileCache.TILE_SIZE && obj.get_y() <= tiles_y+tiles_h)
+				layer.add(obj.getDrawable(), obj.get_x()-tiles_x, obj.get_y()-tiles_y);
+		}
+	}
+
+	/**
+	 * Apumetodi, joka interpoloi lineaarisesti kahden koordinaatin välillä ja pyöristää tuloksen lähimpään pikseliin.
+	 * @param from Lähtöarvo.
+	 * @param to Kohdearvo.
+	 * @param alpha Kerroin väliltä [0, 1].
+	 * @return Interpoloitu koordinaatti.
+	 */
+	private static int lerp(int from, int to, double alpha) {
+		return (int)Math.round(from + (to-from)*alpha);
 	}
 
 	/**
@@ -38,9 +38,15 @@ public class DynamicObject {
 	private double x, y, vel_x, vel_y, old_x;
 	private int state, type, direction;
 
-	// Objektin animaatiot
+	// Objektin animaatiot (jaetut) sekä objektin oma toistokohta niissä
 	
 	private ArrayList<Animation> animations;
+	private Animation cursor;
+
+	// Sijainti kameran ruudukossa (SpatialGrid)
+	
+	SpatialGrid grid;
+	int cell, order, seen;
 	
 	/**
 	 * Alustaa dynaamisen objektin animaation sekä vakioarvot. Alustettavat fysiikka-vakioarvot 
@@ -51,11 +57,13 @@ public class DynamicObject {
 	 * vakioarvo on johtuen esimerkiksi siitä, että sisäinen törmäyksentarkistus kertoo 
 	 * objektin olevan vedessä. Näinollen jokaisella päivityskerralla kokeillaan, ollaanko
 	 * vedessä, säädetään sisäinen arvo kohdalle, toimitaan ja lopuksi säädetään se normaaliasentoonsa.
-	 * @param _animations Dynaamiselle objektille välitettävät animaatiot.
+	 * @param _animations Dynaamiselle objektille välitettävät animaatiot. Animaatioita ei muuteta, joten samoja
+	 * animaatioita voidaan jakaa useamman objektin kesken; objekti toistaa niitä omalla kursorillaan.
 	 */
 	public DynamicObject(ArrayList<Animation> _animations) {
 	
 		animations = _animations;
+		cursor = _animations.get(0).clone();
 		
 		x = y = old_x = vel_x = vel_y = state = type = direction = 0;
 
@@ -180,6 +188,8 @@ public class DynamicObject {
 		validatePosition();
 
 		resetValues();
+		
+		moved();
 	}
 
 	/**
@@ -199,38 +209,38 @@ public class DynamicObject {
 		switch(part) {
 		
 			case TOP_COLLIDE:
-				if ( ( ( obj.getX()			>= x && obj.getX()			<= x+animations.get(state).getWidth() ) || 
-					   ( obj.getX()+end_x	>= x && obj.getX()+end_x	<= x+animations.get(state).getWidth() ) ||
-					   ( obj.getX()			<= x && obj.getX()+end_x	>= x+animations.get(state).getWidth() ) ) &&  
-					   ( obj.getY()			>= y && obj.getY()			<= y+animations.get(state).getHeight() ) ) {
+				if ( ( ( obj.getX()			>= x && obj.getX()			<= x+cursor.getWidth() ) || 
+					   ( obj.getX()+end_x	>= x && obj.getX()+end_x	<= x+cursor.getWidth() ) ||
+					   ( obj.getX()			<= x && obj.getX()+end_x	>= x+cursor.getWidth() ) ) &&  
+					   ( obj.getY()			>= y && obj.getY()			<= y+cursor.getHeight() ) ) {
 				//	vel_x = 0;
 					return true;
 				}
 		
 			case BOTTOM_COLLIDE:
-				if ( ( ( obj.getX()			>= x && obj.getX()			<= x+animations.get(state).getWidth() ) || 
-					   ( obj.getX()+end_x	>= x && obj.getX()+end_x	<= x+animations.get(state).getWidth() ) ||
-					   ( obj.getX()			<= x && obj.getX()+end_x	>= x+animations.get(state).getWidth() ) ) &&  
-					   ( obj.getY()+real_y	>= y && obj.getY()+real_y	<= y+animations.get(state).getHeight() ) ) { 
+				if ( ( ( obj.getX()			>= x && obj.getX()			<= x+cursor.getWidth() ) || 
+					   ( obj.getX()+end_x	>= x && obj.getX()+end_x	<= x+cursor.getWidth() ) ||
+					   ( obj.getX()			<= x && obj.getX()+end_x	>= x+cursor.getWidth() ) ) &&  
+					   ( obj.getY()+real_y	>= y && obj.getY()+real_y	<= y+cursor.getHeight() ) ) { 
 				//	vel_x = 0;
 					return true;
 			}
 				
 			case LEFT_COLLIDE:
-				if ( ( obj.getX() 			>= x && obj.getX() 			<= x+animations.get(state).getWidth()  ) &&  
-				   ( ( obj.getY()+start_y 	>= y && obj.getY()+start_y	<= y+animations.get(state).getHeight() ) || 
-					 ( obj.getY()+end_y 	>= y && obj.getY()+end_y 	<= y+animations.get(state).getHeight() ) || 
-					 ( obj.getY()+start_y 	<= y && obj.getY()+end_y 	>= y+animations.get(state).getHeight() ) ) ) {
+				if ( ( obj.getX() 			>= x && obj.getX() 			<= x+cursor.getWidth()  ) &&  
+				   ( ( obj.getY()+start_y 	>= y && obj.getY()+start_y	<= y+cursor.getHeight() ) || 
+					 ( obj.getY()+end_y 	>= y && obj.getY()+end_y 	<= y+cursor.getHeight() ) || 
+					 ( obj.getY()+start_y 	<= y && obj.getY()+end_y 	>= y+cursor.getHeight() ) ) ) {
 					//x = old_x;
 					//vel_x = 0;
 					return true;
 				}
 			
 			case RIGHT_COLLIDE:
-				if ( ( obj.getX()+an_width	>= x && obj.getX()+an_width <= x+animations.get(state).getWidth()  ) &&  
-				   ( ( obj.getY()+start_y	>= y && obj.getY()+start_y 	<= y+animations.get(state).getHeight() ) || 
-					 ( obj.getY()+end_y		>= y && obj.getY()+end_y 	<= y+animations.get(state).getHeight() ) || 
-					 ( obj.getY()+start_y	<= y && obj.getY()+end_y 	>= y+animations.get(state).getHeight() ) ) ) {
+				if ( ( obj.getX()+an_width	>= x && obj.getX()+an_width <= x+cursor.getWidth()  ) &&  
+				   ( ( obj.getY()+start_y	>= y && obj.getY()+start_y 	<= y+cursor.getHeight() ) || 
+					 ( obj.getY()+end_y		>= y && obj.getY()+end_y 	<= y+cursor.getHeight() ) || 
+					 ( obj.getY()+start_y	<= y && obj.getY()+end_y 	>= y+cursor.getHeight() ) ) ) {
 					//x = old_x;
 					//vel_x = 0;
 					return true;
@@ -297,7 +307,7 @@ public class DynamicObject {
 					  retValue[BOTTOM_COLLIDE][i] == 105) && 
 					 (retValue[BOTTOM_COLLIDE][i] != 4 && retValue[BOTTOM_COLLIDE][i] != 5 && retValue[BOTTOM_COLLIDE][i] != 6)) {
 					if (!dead) {
-						y = (int)((((int)y + animations.get(state).getHeight())/32)*32 - animations.get(state).getHeight());
+						y = (int)((((int)y + cursor.getHeight())/32)*32 - cursor.getHeight());
 						vel_y = 0;
 						airborne = false;
 					}
@@ -348,6 +358,7 @@ public class DynamicObject {
 			}
 		
 		validatePosition();
+		moved();
 
 		return retValue;
 	}
@@ -475,6 +486,7 @@ public class DynamicObject {
 	public void setPos(int _x, int _y) {
 		x = _x;
 		y = _y;
+		moved();
 	}
 
 	/**
@@ -495,17 +507,16 @@ public class DynamicObject {
 
 	/**
 	 * Aksessori, jonka avulla on mahdollista säätää objektin animaation tilan, eli käytännössä sen,
-	 * mitä animaatiota on tarkoitus käyttää.
+	 * mitä animaatiota on tarkoitus käyttää. Tilan vaihtuessa objektin kursori alkaa toistaa uutta animaatiota alusta.
 	 * @param _state Haluttu tila.
 	 */
 	public void setState(int _state) {
 		
-		if (state < 0 || state >= animations.size())
+		if (_state < 0 || _state >= animations.size() || _state == state)
 			return;
-		if (state != _state) {
-			animations.get(state).reset();
-			state = _state;
-		}
+
+		state = _state;
+		cursor.select(animations.get(state));
 	}
 
 	/**
@@ -521,21 +532,21 @@ public class DynamicObject {
 	 * @param _speed Haluttu nopeus (x framea / ruudunpäivitys [50 krt. / sek.]).
 	 */
 	public void setAnimationSpeed(double _speed) {
-		animations.get(state).setSpeed(_speed);
+		cursor.setSpeed(_speed);
 	}
 
 	/**
 	 * Aksessori, jota kutsuttaessa tämänhetkinen animaatio etenee yhdellä framella.
 	 */
 	public void advanceFrame() {
-		animations.get(state).advanceFrame();
+		cursor.advanceFrame();
 	}
 	
 	/**
 	 * Aksessori, joka resetoi tämänhetkisen animaation.
 	 */
 	public void resetAnimation() {
-		animations.get(state).reset();
+		cursor.reset();
 	}
 
 	/**
@@ -543,8 +554,7 @@ public class DynamicObject {
 	 * @param _auto True, mikäli halutaan animaation etenevän itsenäisesti. Muuten false.
 	 */
 	public void setAutoAnimation(boolean _auto) {
-		for (Animation anim : animations)
-			anim.setAutoAnimation(_auto);
+		cursor.setAutoAnimation(_auto);
 	}
 
 	/**
@@ -552,7 +562,7 @@ public class DynamicObject {
 	 * @return Tämänhetkinen animaatio.
 	 */
 	public Animation getAnimation() {
-		return animations.get(state);
+		return cursor;
 	}
 
 	/**
@@ -562,6 +572,14 @@ public class DynamicObject {
 	public boolean offScreen() {
 		return offmap;
 	}
+
+	/**
+	 * Apumetodi, joka ilmoittaa sijainnin muutoksesta ruudukolle (SpatialGrid), johon objekti kuuluu.
+	 */
+	private void moved() {
+		if (grid != null)
+			grid.update(this);
+	}
 	
 	/**
 	 * Aksessori, jonka avulla voidaan asettaa objektin aktiivisuuden tila.
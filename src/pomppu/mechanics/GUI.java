@@ -3,7 +3,8 @@
  */
 package pomppu.mechanics;
 
-import java.util.*;
+import java.awt.Rectangle;
+import java.util.ArrayList;
 import pomppu.graphics.*;
 
 /**
@@ -12,30 +13,32 @@ import pomppu.graphics.*;
  * GUI:n elementit ovat jaettu yhdeksään osaan seuraavasti:<br><br>
  * [0,0][1,0][2,0]<br>
  * [0,1][1,1][2,1] = ruutu jaettuna 3*3 matriisiksi.<br>
- * [0,2][1,2][2,2]<br>
+ * [0,2][1,2][2,2]<br><br>
+ * Osioita voidaan muokata eri säikeestä kuin GUI piirretään (ks. RenderThread), joten metodit ovat synkronoituja.
+ * Useamman kutsun muutokset voidaan tehdä yhtenäisesti synkronoimalla GUI-olion avulla.
  * @author arkivika
  */
 public class GUI {
 	
-	private ArrayList<ArrayList<Queue<Drawable>>> drawables;
+	private ArrayList<ArrayList<ArrayList<Drawable>>> drawables;
 	private int padding;
-	private Screen screen;
+	private Canvas screen;
 	
 	/**
-	 * Rakentaa 3*3 matriisin jonoista (Queue) eri osioiden Drawable-rajapinna toteuttavien olioiden (teksti, kuva, animaatio..) säilyttämiseksi.
-	 * @see java.util.Queue	
+	 * Rakentaa 3*3 matriisin listoista (ArrayList) eri osioiden Drawable-rajapinna toteuttavien olioiden (teksti, kuva, animaatio..) säilyttämiseksi.
+	 * @see java.util.ArrayList
 	 */
-	public GUI(Screen _screen) {
+	public GUI(Canvas _screen) {
 	
 		padding = 0;
-		drawables = new ArrayList<ArrayList<Queue<Drawable>>>();
+		drawables = new ArrayList<ArrayList<ArrayList<Drawable>>>();
 
 		screen = _screen;
 			
 		for (int i=0; i<3; i++) {
-			drawables.add(new ArrayList<Queue<Drawable>>());
+			drawables.add(new ArrayList<ArrayList<Drawable>>());
 			for (int j=0; j<3; j++)
-				drawables.get(i).add(new LinkedList<Drawable>());
+				drawables.get(i).add(new ArrayList<Drawable>());
 		}
 	}
 	
@@ -44,7 +47,7 @@ public class GUI {
 	 * @param x Halutun osion x-koordinaatti.
 	 * @param y Halutun osion y-koordinaatti.
 	 */
-	public void clearSection(int x, int y) {
+	public synchronized void clearSection(int x, int y) {
 		drawables.get(x).get(y).clear();		
 	}
 	
@@ -54,7 +57,7 @@ public class GUI {
 	 * @param x Halutun osion x-koordinaatti.
 	 * @param y Halutun osion y-koordinaatti.
 	 */
-	public void addToSection(Drawable drawable, int x, int y) {
+	public synchronized void addToSection(Drawable drawable, int x, int y) {
 		drawables.get(x).get(y).add(drawable);		
 	}
 	
@@ -85,7 +88,7 @@ public class GUI {
 	 * @param y Haluttu y-koordinaattiarvo.
 	 * @return Elementin indeksi, johon osutaan määritellyllä x,y-koordinaatilla, -1 mikäli osumaa ei tapahdu.
 	 */
-	public int touchesElement(int i, int j, int x, int y) {
+	public synchronized int touchesElement(int i, int j, int x, int y) {
 
 		int num = 0;
 		int offset = 0;
@@ -109,11 +112,32 @@ public class GUI {
 		return -1; 
 	}
 
+	/**
+	 * Aksessori, joka palauttaa arvonaan GUI:n tietyn osion tietyn elementin alueen ruudulla.
+	 * @param i GUI:n osion vaakatasoinen indeksi.
+	 * @param j GUI:n osion pystysuuntainen indeksi.
+	 * @param num Elementin indeksi osiossa.
+	 * @return Elementin alue, tai null, mikäli elementtiä ei ole.
+	 */
+	public synchronized Rectangle getElementBounds(int i, int j, int num) {
+
+		ArrayList<Drawable> section = drawables.get(i).get(j);
+		if (num < 0 || num >= section.size())
+			return null;
+
+		int offset = 0;
+		for (int k=0; k<num; k++)
+			offset += section.get(k).getHeight() + 2;
+
+		Drawable drawable = section.get(num);
+		return new Rectangle(getRealX(i, drawable), getRealY(j, drawable)+offset, drawable.getWidth(), drawable.getHeight());
+	}
+
 	/**
 	 * Aksessori, joka kertoo tietyn GUI-olion elementtien määrän.
 	 * @return GUI-olion elementtien määrä.
 	 */
-	public int size() {
+	public synchronized int size() {
 		
 		int size=0;
 		
@@ -125,30 +149,31 @@ public class GUI {
 	}
 	
 	/**
-	 * Käy läpi GUI-olion ja palauttaa arvonaan listan sen sisältämistä elementeistä.
-	 * @return Lista GUI-olion sisältämistä elementeistä.  
+	 * Käy läpi GUI-olion ja kirjoittaa sen sisältämät elementit annettuun piirtokomentopuskuriin.
+	 * Puskuri tyhjennetään ensin, joten samaa puskuria voidaan käyttää joka framella.
+	 * @param elements Puskuri, johon GUI-olion elementit kirjoitetaan.
 	 */
-	public ArrayList<VisibleElement> render() {
+	public synchronized void render(DrawBuffer elements) {
 		
-		ArrayList<VisibleElement> elements = new ArrayList<VisibleElement>();
+		elements.clear();
 
 		for (int i=0; i<3; i++)
 			for (int j=0; j<3; j++) {
 
 				int offset = 0;
+				ArrayList<Drawable> section = drawables.get(i).get(j);
 				
-				for (Drawable drawable : drawables.get(i).get(j)) {
+				for (int k=0; k<section.size(); k++) {
 
+					Drawable drawable = section.get(k);
 					int temp_x = getRealX(i, drawable);
 					int temp_y = getRealY(j, drawable);
 					
-					elements.add(new VisibleElement(drawable, temp_x, temp_y+offset));
+					elements.add(drawable, temp_x, temp_y+offset);
 					
 					offset += drawable.getHeight() + 2;			
 				}
 			}
-		
-		return elements;
 	}
 	
 	/**
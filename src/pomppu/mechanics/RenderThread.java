@@ -0,0 +1,171 @@
+/**
+ * Pelimoottorin pakkaus, sisältää 2d-pelille ominaiset geneeriset toiminnallisuudet.
+ */
+package pomppu.mechanics;
+
+import java.awt.DisplayMode;
+import java.awt.GraphicsEnvironment;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import pomppu.graphics.AnimationClock;
+
+/**
+ * Piirtävä säie, joka erottaa piirtämisen simulaatiosta. Simulaatiosäie julkaisee jokaisen simulaatioaskeleen jälkeen
+ * tilannekuvan (publish), ja piirtävä säie piirtää näytön virkistystaajuudella interpoloiden kahden viimeisimmän
+ * tilannekuvan välillä. Näin hidas piirtäminen ei hidasta fysiikkaa eikä päinvastoin, ja liike on sulavaa myös
+ * muilla virkistystaajuuksilla kuin simulaation taajuudella.<br><br>
+ * Piirtäminen tapahtuu viivästettynä yhden simulaatioaskeleen verran: interpoloinnin kerroin lasketaan nykyisen
+ * tilannekuvan iästä suhteessa askeleen kestoon.<br><br>
+ * Piirtävä säie edistää myös jaettuja animaatioita (AnimationClock), joten niitä muutetaan ja luetaan samassa
+ * säikeessä. Muut piirrettävään tilaan kohdistuvat muutokset (esim. GUI:n tekstit tai piirtoresoluutio) annetaan
+ * säikeelle invokeLater-kutsulla, ja ne suoritetaan ennen seuraavan framen piirtämistä.
+ * @see pomppu.mechanics.Snapshot
+ * @see pomppu.mechanics.Camera
+ * @author arkivika
+ */
+public class RenderThread extends Thread {
+
+	/**
+	 * Virkistystaajuus (Hz), jota käytetään, mikäli näytön virkistystaajuutta ei saada selville.
+	 */
+	static final int DEFAULT_REFRESH_RATE = 60;
+
+	/**
+	 * Sisäinen apuluokka, joka sisältää kaksi viimeisintä tilannekuvaa. Pari vaihdetaan kokonaisuutena, joten
+	 * piirtävä säie näkee aina yhtenäisen parin.
+	 * @author arkivika
+	 */
+	private static final class Frames {
+
+		final Snapshot previous, current;
+
+		/**
+		 * Konstruktori, joka luo tilannekuvaparin.
+		 * @param _previous Edellinen tilannekuva, tai null.
+		 * @param _current Nykyinen tilannekuva.
+		 */
+		Frames(Snapshot _previous, Snapshot _current) {
+			previous = _previous;
+			current = _current;
+		}
+	}
+
+	private Camera camera;
+	private long tickTime, frameTime;
+	private AtomicReference<Frames> frames;
+	private ConcurrentLinkedQueue<Runnable> tasks;
+	private volatile boolean running;
+
+	/**
+	 * Konstruktori, joka luo piirtävän säikeen. Säie käynnistetään start-kutsulla.
+	 * @param _camera Kamera, jonka avulla tilannekuvat piirretään.
+	 * @param _tickTime Simulaatioaskeleen kesto (ms).
+	 */
+	public RenderThread(Camera _camera, long _tickTime) {
+
+		super("Render");
+		setDaemon(true);
+
+		camera = _camera;
+		tickTime = _tickTime * 1000000L;
+		frameTime = 1000000000L / getRefreshRate();
+		frames = new AtomicReference<Frames>();
+		tasks = new ConcurrentLinkedQueue<Runnable>();
+		running = true;
+	}
+
+	/**
+	 * Aksessori, joka julkaisee uuden tilannekuvan piirrettäväksi. Kutsutaan simulaatiosäikeestä.
+	 * @param snapshot Uusi tilannekuva.
+	 */
+	public void publish(Snapshot snapshot) {
+
+		Frames last = frames.get();
+		frames.set(new Frames((last == null) ? null : last.current, snapshot));
+	}
+
+	/**
+	 * Aksessori, joka antaa tehtävän suoritettavaksi piirtävässä säikeessä ennen seuraavan framen piirtämistä.
+	 * Kutsutaan simulaatiosäikeestä, kun se haluaa muuttaa piirtävän säikeen käyttämää tilaa.
+	 * @param task Suoritettava tehtävä.
+	 */
+	public void invokeLater(Runnable task) {
+		tasks.add(task);
+	}
+
+	/**
+	 * Aksessori, joka pysäyttää säikeen ja odottaa, että viimeinen frame on piirretty ja annetut tehtävät
+	 * suoritettu. Tämän jälkeen kameraa voidaan taas käyttää kutsuvasta säikeestä.
+	 */
+	public void stopRendering() {
+
+		running = false;
+
+		try {
+			join();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Säikeen pääsilmukka. Piirtää viimeisimmät tilannekuvat interpoloituna ja tasaa piirtonopeuden näytön
+	 * virkistystaajuuteen.
+	 */
+	public void run() {
+
+		while (running) {
+
+			long start = System.nanoTime();
+			Frames last = frames.get();
+
+			runTasks();
+			AnimationClock.tick();
+
+			if (last != null) {
+
+				Snapshot previous = last.previous;
+				Snapshot current = last.current;
+
+				long step = (previous == null) ? tickTime : current.time - previous.time;
+				double alpha = (step <= 0) ? 1.0 : Math.max(0.0, Math.min(1.0, (double)(start - current.time) / step));
+
+				camera.render(previous, current, alpha);
+				camera.renderGUI();
+			}
+
+			long sleep = frameTime - (System.nanoTime() - start);
+			if (sleep > 0)
+				try { Thread.sleep(sleep / 1000000L, (int)(sleep % 1000000L)); } catch (InterruptedException e) {}
+		}
+
+		runTasks();
+	}
+
+	/**
+	 * Apumetodi, joka suorittaa kaikki simulaatiosäikeen antamat tehtävät antojärjestyksessä.
+	 */
+	private void runTasks() {
+
+		Runnable task;
+		while ((task = tasks.poll()) != null)
+			task.run();
+	}
+
+	/**
+	 * Apumetodi, joka palauttaa arvonaan näytön virkistystaajuuden.
+	 * @return Virkistystaajuus (Hz).
+	 */
+	private static int getRefreshRate() {
+
+		try {
+			int rate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+			return (rate == DisplayMode.REFRESH_RATE_UNKNOWN) ? DEFAULT_REFRESH_RATE : rate;
+		}
+		catch (Exception e) {
+			return DEFAULT_REFRESH_RATE;
+		}
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ * Pelimoottorin pakkaus, sisältää 2d-pelille ominaiset geneeriset toiminnallisuudet.
+ */
+package pomppu.mechanics;
+
+import java.util.ArrayList;
+import pomppu.graphics.*;
+
+/**
+ * Muuttumaton tilannekuva pelimaailmasta yhden simulaatioaskeleen jälkeen: kameran sijainti sekä ruudun läheisyydessä
+ * olevien dynaamisten objektien sijainnit, koot ja animaatioiden tämänhetkiset kehykset. Simulaatiosäie luo
+ * tilannekuvan (Camera.snapshot) ja piirtävä säie interpoloi kahden peräkkäisen tilannekuvan välillä
+ * (Camera.render), joten säikeet eivät jaa muuttuvaa tilaa: tilannekuvaan tallennetaan objektin animaation
+ * sijaan sen kehys (Image), joka ei muutu simulaation edetessä.
+ * @see pomppu.mechanics.Camera
+ * @see pomppu.mechanics.RenderThread
+ * @author arkivika
+ */
+public final class Snapshot {
+
+	final long time;
+	final int camera_x, camera_y;
+	final int count;
+	final int[] ids;
+	final int[] xs, ys;
+	final int[] widths, heights;
+	final Drawable[] drawables;
+
+	/**
+	 * Konstruktori, joka kopioi annettujen objektien tämänhetkiset sijainnit, koot ja kehykset.
+	 * @param _time Simulaatioaskeleen aikaleima (System.nanoTime).
+	 * @param _camera_x Kameran x-koordinaatti.
+	 * @param _camera_y Kameran y-koordinaatti.
+	 * @param objects Objektit lisäysjärjestyksessä.
+	 */
+	Snapshot(long _time, int _camera_x, int _camera_y, ArrayList<DynamicObject> objects) {
+
+		time = _time;
+		camera_x = _camera_x;
+		camera_y = _camera_y;
+		count = objects.size();
+
+		ids = new int[count];
+		xs = new int[count];
+		ys = new int[count];
+		widths = new int[count];
+		heights = new int[count];
+		drawables = new Drawable[count];
+
+		for (int i=0; i<count; i++) {
+
+			DynamicObject obj = objects.get(i);
+			ids[i] = obj.order;
+			xs[i] = obj.getX();
+			ys[i] = obj.getY();
+
+			Animation animation = obj.getAnimation();
+			Image frame = animation.getCurrentFrame();
+			drawables[i] = (frame != null) ? frame : animation;
+			widths[i] = (frame != null) ? frame.getWidth() : 0;
+			heights[i] = (frame != null) ? frame.getHeight() : 0;
+		}
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan tilannekuvan aikaleiman.
+	 * @return Aikaleima (System.nanoTime).
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Aksessori, joka palauttaa arvonaan tilannekuvan objektien määrän.
+	 * @return Objektien määrä.
+	 */
+	public int size() {
+		return count;
+	}
+}
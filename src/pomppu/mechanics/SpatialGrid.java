@@ -0,0 +1,172 @@
+/**
+ * Pelimoottorin pakkaus, sisältää 2d-pelille ominaiset geneeriset toiminnallisuudet.
+ */
+package pomppu.mechanics;
+
+import java.util.ArrayList;
+
+/**
+ * Dynaamisten objektien tasavälinen ruudukko. Pelikenttä jaetaan CELL_SIZE*CELL_SIZE-kokoisiin soluihin, ja kukin
+ * dynaaminen objekti on sen solun listassa, jossa sen vasen yläkulma sijaitsee. Objekti siirretään solusta toiseen
+ * vain sen liikkuessa solun rajan yli (DynamicObject ilmoittaa liikkeistään itse), joten kameran ei tarvitse käydä
+ * läpi kaikkia objekteja, vaan ainoastaan näkyvän alueen solut. Kentän ulkopuolella olevat objektit kuuluvat
+ * lähimpään reunasoluun.
+ * @see pomppu.mechanics.DynamicObject
+ * @see pomppu.mechanics.Camera
+ * @author arkivika
+ */
+class SpatialGrid {
+
+	static final int CELL_SIZE = 128;
+
+	private ArrayList<ArrayList<DynamicObject>> cells;
+	private int rows, cols;
+	private int maxWidth, maxHeight;
+	private int nextOrder;
+
+	/**
+	 * Konstruktori, joka luo tyhjän ruudukon annetun kokoiselle kentälle.
+	 * @param width Kentän leveys pikseleinä.
+	 * @param height Kentän korkeus pikseleinä.
+	 */
+	SpatialGrid(int width, int height) {
+
+		cols = Math.max(1, (width + CELL_SIZE-1) / CELL_SIZE);
+		rows = Math.max(1, (height + CELL_SIZE-1) / CELL_SIZE);
+
+		cells = new ArrayList<ArrayList<DynamicObject>>(rows*cols);
+		for (int i=0; i<rows*cols; i++)
+			cells.add(new ArrayList<DynamicObject>());
+
+		maxWidth = maxHeight = 0;
+		nextOrder = 0;
+	}
+
+	/**
+	 * Lisää objektin ruudukkoon. Objektin lisäysjärjestys tallennetaan, jotta haun tulokset voidaan palauttaa
+	 * samassa järjestyksessä kuin objektit lisättiin (piirtojärjestys).
+	 * @param obj Lisättävä objekti.
+	 */
+	void add(DynamicObject obj) {
+
+		obj.grid = this;
+		obj.order = nextOrder++;
+		obj.cell = cellIndex(obj.getX(), obj.getY());
+		cells.get(obj.cell).add(obj);
+
+		updateExtent(obj);
+	}
+
+	/**
+	 * Siirtää objektin uuteen soluun, mikäli se on liikkunut solun rajan yli.
+	 * @param obj Liikkunut objekti.
+	 */
+	void update(DynamicObject obj) {
+
+		int cell = cellIndex(obj.getX(), obj.getY());
+
+		if (cell != obj.cell) {
+			cells.get(obj.cell).remove(obj);
+			cells.get(cell).add(obj);
+			obj.cell = cell;
+		}
+
+		updateExtent(obj);
+	}
+
+	/**
+	 * Tyhjentää ruudukon ja irrottaa objektit siitä.
+	 */
+	void clear() {
+
+		for (int i=0; i<cells.size(); i++) {
+
+			ArrayList<DynamicObject> cell = cells.get(i);
+			for (int j=0; j<cell.size(); j++)
+				cell.get(j).grid = null;
+			cell.clear();
+		}
+
+		maxWidth = maxHeight = 0;
+		nextOrder = 0;
+	}
+
+	/**
+	 * Hakee objektit, joiden vasen yläkulma voi olla annetun alueen kanssa päällekkäin (alueen vasenta ja yläreunaa
+	 * laajennetaan suurimman objektin koolla). Tulokset palautetaan lisäysjärjestyksessä.
+	 * @param x Alueen x-koordinaatti.
+	 * @param y Alueen y-koordinaatti.
+	 * @param width Alueen leveys.
+	 * @param height Alueen korkeus.
+	 * @param result Lista, johon tulokset kirjoitetaan. Lista tyhjennetään ensin.
+	 */
+	void query(int x, int y, int width, int height, ArrayList<DynamicObject> result) {
+
+		result.clear();
+
+		int first_col = clampCol((x - maxWidth) / CELL_SIZE);
+		int first_row = clampRow((y - maxHeight) / CELL_SIZE);
+		int last_col = clampCol((x + width) / CELL_SIZE);
+		int last_row = clampRow((y + height) / CELL_SIZE);
+
+		for (int j=first_row; j<=last_row; j++)
+			for (int i=first_col; i<=last_col; i++) {
+
+				ArrayList<DynamicObject> cell = cells.get(j*cols + i);
+				for (int k=0; k<cell.size(); k++)
+					insertOrdered(result, cell.get(k));
+			}
+	}
+
+	/**
+	 * Apumetodi, joka lisää objektin listaan lisäysjärjestyksen mukaiseen kohtaan (lisäyslajittelu). Näkyviä
+	 * objekteja on vähän, joten lajittelu on halvempaa kuin kaikkien objektien läpikäynti.
+	 * @param list Järjestetty lista.
+	 * @param obj Lisättävä objekti.
+	 */
+	private static void insertOrdered(ArrayList<DynamicObject> list, DynamicObject obj) {
+
+		int i = list.size();
+		while (i > 0 && list.get(i-1).order > obj.order)
+			i--;
+
+		list.add(i, obj);
+	}
+
+	/**
+	 * Apumetodi, joka päivittää suurimman objektin mitat.
+	 * @param obj Objekti.
+	 */
+	private void updateExtent(DynamicObject obj) {
+		maxWidth = Math.max(maxWidth, obj.getAnimation().getWidth());
+		maxHeight = Math.max(maxHeight, obj.getAnimation().getHeight());
+	}
+
+	/**
+	 * Apumetodi, joka palauttaa arvonaan pikselikoordinaattia vastaavan solun indeksin.
+	 * @param x Pikselin x-koordinaatti.
+	 * @param y Pikselin y-koordinaatti.
+	 * @return Solun indeksi.
+	 */
+	private int cellIndex(int x, int y) {
+		return clampRow(y / CELL_SIZE) * cols + clampCol(x / CELL_SIZE);
+	}
+
+	/**
+	 * Apumetodi, joka rajaa sarakeindeksin ruudukon sisälle.
+	 * @param col Sarakeindeksi.
+	 * @return Rajattu sarakeindeksi.
+	 */
+	private int clampCol(int col) {
+		return (col < 0) ? 0 : (col >= cols) ? cols-1 : col;
+	}
+
+	/**
+	 * Apumetodi, joka rajaa rivi-indeksin ruudukon sisälle.
+	 * @param row Rivi-indeksi.
+	 * @return Rajattu rivi-indeksi.
+	 */
+	private int clampRow(int row) {
+		return (row < 0) ? 0 : (row >= rows) ? rows-1 : row;
+	}
+}
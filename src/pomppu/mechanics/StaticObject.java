@@ -22,6 +22,8 @@ public class StaticObject {
 	protected int x, y, type;
 	protected boolean active;
 
+	TileCache.Chunk chunk;
+
 	/**
 	 * Konstruktori, joka tarvitsee parametreikseen Drawable-rajapinnan toteuttavan olion (kuva, teksti, animaatio..), objektin x- ja
 	 * y-koordinaatit, tyypin sekä tiedon siitä, onko objekti aktiivinen.
@@ -133,10 +135,14 @@ public class StaticObject {
 	}
 
 	/**
-	 * Aksessori, jonka avulla voidaan säätää staattisen objektin aktiivisuuden tilaa.
+	 * Aksessori, jonka avulla voidaan säätää staattisen objektin aktiivisuuden tilaa. Mikäli tila muuttuu ja
+	 * objekti on piirretty valmiiksi kenttälohkoon, lohko merkitään piirrettäväksi uudelleen.
 	 * @param _active True, mikäli objektin halutaan olevan aktiivinen, muuten false.
 	 */
 	public void setActive(boolean _active) {
+		
+		if (active != _active && chunk != null)
+			chunk.invalidate();
 		active = _active;
 	}
 }
\ No newline at end of file
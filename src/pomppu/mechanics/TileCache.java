@@ -0,0 +1,366 @@
+/**
+ * Pelimoottorin pakkaus, sisältää 2d-pelille ominaiset geneeriset toiminnallisuudet.
+ */
+package pomppu.mechanics;
+
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.concurrent.*;
+
+import pomppu.graphics.*;
+
+/**
+ * Staattisten objektien välimuisti. Jakaa pelikentän CHUNK_SIZE*CHUNK_SIZE-kokoisiin lohkoihin ("chunk"), ja
+ * piirtää kunkin lohkon muuttumattomat palat (Image) valmiiksi yhteen suureen kuvaan erikseen taustalla
+ * (tyyppi <= 99) ja edustalla (tyyppi > 99) olevista paloista. Näin kamera piirtää jokaisella framella
+ * muutaman suuren kuvan satojen pienten sijaan. Animoidut palat (Animation) jätetään lohkon "eläviin" listoihin
+ * ja piirretään joka framella erikseen. Lohko piirretään uudelleen vain, kun jonkin sen palan tila muuttuu.<br><br>
+ * Lohkot rasteroidaan rinnakkain taustasäikeissä, joten kentän latauksen tai kameran hypyn jälkeen kamera ei odota
+ * lohkojen valmistumista: keskeneräisen lohkon palat piirretään yksitellen ja muuttuneen lohkon edelliset kuvat
+ * ovat käytössä, kunnes uudet valmistuvat.<br><br>
+ * Rasteroinnin yhteydessä kirjataan, mitkä lohkon ruudut läpinäkymättömät palat peittävät kokonaan (isOpaque),
+ * jotta kamera voi jättää taustakuvan piirtämättä niiden alta.
+ * @see pomppu.mechanics.StaticObject
+ * @see pomppu.mechanics.Camera
+ * @author arkivika
+ */
+class TileCache {
+
+	static final int TILE_SIZE = 32;
+	static final int CHUNK_SIZE = 16;
+	static final int CHUNK_PIXELS = TILE_SIZE * CHUNK_SIZE;
+
+	/**
+	 * Sisäinen apuluokka, joka sisältää yhden lohkon valmiiksi piirretyt kuvat sekä sen elävät palat.
+	 * @author arkivika
+	 */
+	static class Chunk {
+
+		final TileCache owner;
+		final int x, y;
+		Image back, front;
+		int[] opaque = new int[CHUNK_SIZE];
+		final ArrayList<StaticObject> liveBack = new ArrayList<StaticObject>();
+		final ArrayList<StaticObject> liveFront = new ArrayList<StaticObject>();
+		final ArrayList<StaticObject> baked = new ArrayList<StaticObject>();
+		volatile boolean dirty;
+		private boolean ready;
+		private Raster pending;
+
+		/**
+		 * Konstruktori, joka luo tyhjän lohkon annettuun pikselikoordinaattiin.
+		 * @param _owner Välimuisti, johon lohko kuuluu.
+		 * @param _x Lohkon vasemman yläkulman x-koordinaatti.
+		 * @param _y Lohkon vasemman yläkulman y-koordinaatti.
+		 */
+		Chunk(TileCache _owner, int _x, int _y) {
+			owner = _owner;
+			x = _x;
+			y = _y;
+			dirty = true;
+			ready = false;
+		}
+
+		/**
+		 * Merkitsee lohkon piirrettäväksi uudelleen ennen seuraavaa käyttöä.
+		 */
+		void invalidate() {
+			dirty = true;
+			owner.changed = true;
+		}
+
+		/**
+		 * Palauttaa arvonaan true, mikäli lohkon kuvat on piirretty ainakin kerran. Muuten lohkon muuttumattomat
+		 * palat on piirrettävä yksitellen (ks. baked).
+		 * @return True, mikäli lohkon kuvat ovat käytettävissä, muuten false.
+		 */
+		boolean isReady() {
+			return ready;
+		}
+
+		/**
+		 * Ottaa valmistuneen rasteroinnin kuvat käyttöön ja käynnistää uuden rasteroinnin, mikäli lohko on
+		 * muuttunut. Ei koskaan odota rasterointia: sen ollessa kesken lohko piirretään edellisillä kuvillaan.
+		 */
+		void poll() {
+
+			if (pending != null && pending.isDone()) {
+
+				try {
+					BufferedImage[] layers = pending.get();
+					
+					// Edelliset kuvat vapautetaan heti, roskienkeruuta odottamatta
+					dispose();
+					
+					back = (layers[0] == null) ? null : ImageFactory.createImage(layers[0]);
+					front = (layers[1] == null) ? null : ImageFactory.createImage(layers[1]);
+					opaque = pending.opaque;
+					ready = true;
+				}
+				catch (Exception e) {
+					System.out.println("Error! Couldn't rasterize chunk at " + x + "," + y + ": " + e);
+					dirty = true;
+				}
+
+				pending = null;
+			}
+
+			if (dirty && pending == null) {
+
+				// Palojen tila luetaan vasta rasteroinnin aikana, joten sitä ennen tulleet muutokset ovat mukana
+				dirty = false;
+
+				if (baked.isEmpty()) {
+					ready = true;
+					return;
+				}
+
+				pending = new Raster(this, new int[CHUNK_SIZE]);
+				rasterizer.execute(pending);
+			}
+		}
+
+		/**
+		 * Vapauttaa lohkon kuvat.
+		 */
+		void dispose() {
+			
+			if (back != null)
+				back.dispose();
+			if (front != null)
+				front.dispose();
+			
+			back = front = null;
+		}
+
+		/**
+		 * Piirtää lohkon muuttumattomat palat uusiin kuviin erikseen taustalla ja edustalla olevista paloista.
+		 * Tyhjälle kerrokselle ei luoda kuvaa lainkaan. Suoritetaan rasterointisäikeessä, joten palat piirretään
+		 * suoraan kuvadatastaan (Image.drawSource) eikä vram:iin kosketa.
+		 * @param covered Ruuturivien bittimaskit, joihin läpinäkymättömien palojen kokonaan peittämät ruudut
+		 * merkitään (bitti i = rivin i:s ruutu).
+		 * @return Taustan ja edustan kuvat, tai null tyhjän kerroksen kohdalla.
+		 */
+		BufferedImage[] rasterize(int[] covered) {
+
+			BufferedImage[] layers = new BufferedImage[2];
+			Graphics2D[] g = new Graphics2D[2];
+
+			for (int i=0; i<baked.size(); i++) {
+
+				StaticObject obj = baked.get(i);
+				if (!obj.active)
+					continue;
+
+				int layer = (obj.get_type() <= 99) ? 0 : 1;
+				if (layers[layer] == null) {
+					layers[layer] = new BufferedImage(CHUNK_PIXELS, CHUNK_PIXELS, BufferedImage.TYPE_INT_ARGB);
+					g[layer] = layers[layer].createGraphics();
+				}
+
+				Image img = (Image)obj.getDrawable();
+				img.drawSource(g[layer], obj.get_x()-x, obj.get_y()-y);
+
+				if (img.getOpacity() == Transparency.OPAQUE)
+					cover(covered, obj.get_x()-x, obj.get_y()-y, img.getWidth(), img.getHeight());
+			}
+
+			for (int i=0; i<2; i++)
+				if (g[i] != null)
+					g[i].dispose();
+
+			return layers;
+		}
+	}
+
+	/**
+	 * Apumetodi, joka merkitsee annetun suorakulmion kokonaan peittämät ruudut lohkon bittimaskeihin.
+	 * @param covered Ruuturivien bittimaskit.
+	 * @param x Suorakulmion x-koordinaatti lohkon sisällä.
+	 * @param y Suorakulmion y-koordinaatti lohkon sisällä.
+	 * @param w Suorakulmion leveys.
+	 * @param h Suorakulmion korkeus.
+	 */
+	private static void cover(int[] covered, int x, int y, int w, int h) {
+
+		int first_i = Math.max(0, (x + TILE_SIZE-1) / TILE_SIZE);
+		int first_j = Math.max(0, (y + TILE_SIZE-1) / TILE_SIZE);
+		int last_i = Math.min(CHUNK_SIZE, (x + w) / TILE_SIZE);
+		int last_j = Math.min(CHUNK_SIZE, (y + h) / TILE_SIZE);
+
+		for (int j=first_j; j<last_j; j++)
+			for (int i=first_i; i<last_i; i++)
+				covered[j] |= 1 << i;
+	}
+
+	/**
+	 * Sisäinen apuluokka, joka sisältää yhden lohkon keskeneräisen rasteroinnin. Valmistuessaan merkitsee
+	 * välimuistin muuttuneeksi, jotta kamera ottaa lohkon kuvat käyttöön seuraavalla framella.
+	 * @author arkivika
+	 */
+	private static class Raster extends FutureTask<BufferedImage[]> {
+
+		private final TileCache owner;
+		final int[] opaque;
+
+		/**
+		 * Konstruktori, joka luo lohkon rasterointitehtävän.
+		 * @param chunk Rasteroitava lohko.
+		 * @param covered Ruuturivien bittimaskit, joihin peitetyt ruudut merkitään.
+		 */
+		Raster(final Chunk chunk, final int[] covered) {
+
+			super(new Callable<BufferedImage[]>() {
+				public BufferedImage[] call() {
+					return chunk.rasterize(covered);
+				}
+			});
+
+			owner = chunk.owner;
+			opaque = covered;
+		}
+
+		/**
+		 * Merkitsee välimuistin muuttuneeksi rasteroinnin valmistuttua.
+		 */
+		protected void done() {
+			owner.changed = true;
+		}
+	}
+
+	/**
+	 * Lohkoja rasteroivat säikeet, yksi jokaista prosessoria kohden (vähintään yksi). Säikeet ovat daemon-säikeitä,
+	 * joten ne eivät estä ohjelman sulkeutumista.
+	 */
+	private static final ExecutorService rasterizer = Executors.newFixedThreadPool(
+		Math.max(1, Runtime.getRuntime().availableProcessors()),
+		new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "TileCache rasterizer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+	private Chunk[][] chunks;
+	private int rows, cols;
+
+	volatile boolean changed;
+
+	/**
+	 * Konstruktori, joka jakaa annetut staattiset objektit lohkoihin. Lohkojen kuvat luodaan vasta, kun niitä
+	 * tarvitaan ensimmäisen kerran.
+	 * @param staticObjects Staattiset objektit 2-ulotteisena listana (pelikenttä).
+	 */
+	TileCache(ArrayList<ArrayList<StaticObject>> staticObjects) {
+
+		int width = 0;
+		for (int j=0; j<staticObjects.size(); j++)
+			width = Math.max(width, staticObjects.get(j).size());
+
+		rows = (staticObjects.size() + CHUNK_SIZE-1) / CHUNK_SIZE;
+		cols = (width + CHUNK_SIZE-1) / CHUNK_SIZE;
+		chunks = new Chunk[rows][cols];
+
+		for (int j=0; j<rows; j++)
+			for (int i=0; i<cols; i++)
+				chunks[j][i] = new Chunk(this, i*CHUNK_PIXELS, j*CHUNK_PIXELS);
+
+		changed = true;
+
+		for (int j=0; j<staticObjects.size(); j++) {
+
+			ArrayList<StaticObject> list = staticObjects.get(j);
+
+			for (int i=0; i<list.size(); i++) {
+
+				StaticObject obj = list.get(i);
+				if (obj == null)
+					continue;
+
+				Chunk chunk = chunks[j/CHUNK_SIZE][i/CHUNK_SIZE];
+
+				// Vain lohkoon piirretyt palat merkitsevät lohkon muuttuneeksi. Eläviä paloja ei piirretä
+				// lohkoon, vaan niiden aktiivisuus tarkistetaan jokaisessa framessa.
+				if (obj.getDrawable() instanceof Image) {
+					chunk.baked.add(obj);
+					obj.chunk = chunk;
+				}
+				else if (obj.get_type() <= 99)
+					chunk.liveBack.add(obj);
+				else
+					chunk.liveFront.add(obj);
+			}
+		}
+	}
+
+	/**
+	 * Palauttaa arvonaan lohkon annetussa lohkoindeksissä, tai null, mikäli indeksi on kentän ulkopuolella.
+	 * Lohkon rasterointi käynnistetään, mikäli se on merkitty muuttuneeksi.
+	 * @param i Lohkon vaakasuuntainen indeksi.
+	 * @param j Lohkon pystysuuntainen indeksi.
+	 * @return Lohko, tai null.
+	 */
+	Chunk getChunk(int i, int j) {
+
+		if (i < 0 || j < 0 || i >= cols || j >= rows)
+			return null;
+
+		Chunk chunk = chunks[j][i];
+		chunk.poll();
+
+		return chunk;
+	}
+
+	/**
+	 * Palauttaa arvonaan true, mikäli annetun ruudun peittää kokonaan läpinäkymätön muuttumaton pala. Vain
+	 * valmiiksi rasteroidut lohkot huomioidaan, sillä keskeneräisen lohkon paloja ei välttämättä piirretä.
+	 * Lohkon rasterointia ei käynnistetä.
+	 * @param col Ruudun vaakasuuntainen indeksi.
+	 * @param row Ruudun pystysuuntainen indeksi.
+	 * @return True, mikäli ruutu on peitetty, muuten false.
+	 */
+	boolean isOpaque(int col, int row) {
+
+		if (col < 0 || row < 0 || col >= cols*CHUNK_SIZE || row >= rows*CHUNK_SIZE)
+			return false;
+
+		Chunk chunk = chunks[row/CHUNK_SIZE][col/CHUNK_SIZE];
+
+		return chunk.ready && (chunk.opaque[row%CHUNK_SIZE] & (1 << (col%CHUNK_SIZE))) != 0;
+	}
+
+	/**
+	 * Vapauttaa kaikkien lohkojen kuvat ja peruu keskeneräiset rasteroinnit. Kutsutaan, kun välimuisti korvataan
+	 * uudella (esim. kentän vaihtuessa).
+	 */
+	void dispose() {
+
+		for (int j=0; j<rows; j++)
+			for (int i=0; i<cols; i++) {
+
+				Chunk chunk = chunks[j][i];
+				if (chunk.pending != null) {
+					chunk.pending.cancel(false);
+					chunk.pending = null;
+				}
+				chunk.dispose();
+			}
+	}
+
+	/**
+	 * Käynnistää annetun alueen lohkojen rasteroinnin etukäteen, jotta ne ovat valmiita kameran saapuessa.
+	 * @param first_i Ensimmäisen lohkon vaakasuuntainen indeksi.
+	 * @param first_j Ensimmäisen lohkon pystysuuntainen indeksi.
+	 * @param last_i Viimeisen lohkon vaakasuuntainen indeksi.
+	 * @param last_j Viimeisen lohkon pystysuuntainen indeksi.
+	 */
+	void prefetch(int first_i, int first_j, int last_i, int last_j) {
+
+		for (int j=Math.max(0, first_j); j<=Math.min(rows-1, last_j); j++)
+			for (int i=Math.max(0, first_i); i<=Math.min(cols-1, last_i); i++)
+				chunks[j][i].poll();
+	}
+}